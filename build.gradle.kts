@@ -24,7 +24,26 @@ application { mainClass.set("com.oogle.vaultpro.VaultProApp") }
 
 java { toolchain { languageVersion.set(JavaLanguageVersion.of(21)) } }
 
-tasks.test { useJUnitPlatform() }
+tasks.test { useJUnitPlatform { excludeTags("benchmark") } }
+
+// Timing checks (FuzzyIndexBenchmark, ...): run them on a quiet machine, they assert on wall-clock budgets
+tasks.register<Test>("benchmark") {
+    group = "verification"
+    description = "Runs the @Tag(\"benchmark\") tests"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform { includeTags("benchmark") }
+    testLogging { showStandardStreams = true }
+    outputs.upToDateWhen { false }
+}
+
+// Dynamic class-data sharing: the JVM writes the archive on the first run where it is missing or stale
+tasks.named<JavaExec>("run") {
+    jvmArgs(
+        "-XX:SharedArchiveFile=${layout.buildDirectory.file("run.jsa").get().asFile.absolutePath}",
+        "-XX:+AutoCreateSharedArchive"
+    )
+}
 
 tasks.named<Jar>("jar") {
     manifest { attributes["Main-Class"] = application.mainClass.get() }
@@ -32,7 +51,10 @@ tasks.named<Jar>("jar") {
 }
 
 val inputDir = layout.buildDirectory.dir("jpackage/input")
+val imageDir = layout.buildDirectory.dir("jpackage/image")
 val outputDir = layout.buildDirectory.dir("jpackage")
+val cdsArchiveName = "myvault.jsa"
+val cliLauncherProps = layout.buildDirectory.file("jpackage/myvault-cli.properties")
 
 tasks.register<Copy>("stageJars") {
     dependsOn(tasks.named("jar"))
@@ -46,25 +68,32 @@ fun jpackageExePath(): String {
     return File(home, "bin/jpackage.exe").absolutePath
 }
 
-fun commonJpackageArgs(
-    type: String,
-    mainJar: String,
-    iconFile: File?,
-    input: File,
-    dest: File
-): MutableList<String> {
-    val args = mutableListOf(
-        "--type", type,
-        "--name", "MyVault",
-        "--app-version", project.version.toString(),
-        "--vendor", "Oogle",
-        "--description", "Local, encrypted password vault",
-        "--win-dir-chooser",
-        "--win-menu", "--win-menu-group", "MyVault",
+fun identityArgs(): MutableList<String> = mutableListOf(
+    "--name", "MyVault",
+    "--app-version", project.version.toString(),
+    "--vendor", "Oogle",
+    "--description", "Local, encrypted password vault"
+)
+
+/**
+ * The app image carries a class-data sharing archive next to the jars, pre-built by cdsArchive. With
+ * AutoCreateSharedArchive the JVM rewrites it whenever it doesn't match: after a runtime update, or if it doesn't
+ * validate once the installer has copied the image elsewhere. That needs $APPDIR to be writable, which is why
+ * the installers are per-user (see installerArgs); under Program Files every start would stay cold. The jlinked
+ * runtime gets its own base archive (--generate-cds-archive), which the dynamic one builds on.
+ */
+fun appImageArgs(mainJar: String, iconFile: File?, input: File, dest: File, cliLauncher: File): MutableList<String> {
+    val args = mutableListOf("--type", "app-image")
+    args += identityArgs()
+    args += listOf(
         "--dest", dest.absolutePath,
         "--input", input.absolutePath,
         "--main-jar", mainJar,
-        "--main-class", application.mainClass.get()
+        "--main-class", application.mainClass.get(),
+        "--java-options", "-XX:SharedArchiveFile=\$APPDIR/$cdsArchiveName",
+        "--java-options", "-XX:+AutoCreateSharedArchive",
+        "--jlink-options", "--strip-native-commands --strip-debug --no-man-pages --no-header-files --generate-cds-archive",
+        "--add-launcher", "myvault-cli=${cliLauncher.absolutePath}"
     )
     if (iconFile != null && iconFile.exists()) {
         args += listOf("--icon", iconFile.absolutePath)
@@ -72,28 +101,90 @@ fun commonJpackageArgs(
     return args
 }
 
-tasks.register<Exec>("winExe") {
+/** Per-user install (under %LOCALAPPDATA%): no elevation, and the JVM can refresh the CDS archive in $APPDIR. */
+fun installerArgs(type: String, appImage: File, dest: File): MutableList<String> {
+    val args = mutableListOf("--type", type)
+    args += identityArgs()
+    args += listOf(
+        "--win-per-user-install",
+        "--win-dir-chooser",
+        "--win-menu", "--win-menu-group", "MyVault",
+        "--dest", dest.absolutePath,
+        "--app-image", appImage.absolutePath
+    )
+    return args
+}
+
+tasks.register<Exec>("winAppImage") {
     group = "distribution"
-    description = "Build Windows EXE installer via jpackage"
+    description = "Build the Windows app image (launcher, jlinked runtime, jars) via jpackage"
     dependsOn("stageJars")
-    outputs.dir(outputDir)
+    outputs.dir(imageDir)
 
     doFirst {
         val jpkg = File(jpackageExePath())
         require(jpkg.exists()) {
-            "jpackage.exe not found at ${jpkg.absolutePath}. Install a full JDK 17+ and/or set JPACKAGE_HOME."
+            "jpackage.exe not found at ${jpkg.absolutePath}. Install a full JDK 21+ and/or set JPACKAGE_HOME."
         }
 
         val input = inputDir.get().asFile
-        val dest = outputDir.get().asFile
+        val dest = imageDir.get().asFile
         val mainJar = tasks.named<Jar>("jar").get().archiveFileName.get()
         require(File(input, mainJar).exists()) {
             "Main jar not staged: ${File(input, mainJar).absolutePath}. Did 'stageJars' run?"
         }
+        delete(dest) // jpackage refuses to overwrite an existing image
+
+        // MyVault.exe is a GUI-subsystem program: no console, so commands get no stdout or password prompt.
+        // myvault-cli.exe is the same app built as a console program, for the command line only.
+        val cli = cliLauncherProps.get().asFile
+        cli.parentFile.mkdirs()
+        cli.writeText("win-console=true\nwin-shortcut=false\nwin-menu=false\n")
 
         val ico = project.layout.projectDirectory.file("icons/app-icon.ico").asFile
         val cmd = mutableListOf(jpkg.absolutePath)
-        cmd += commonJpackageArgs("exe", mainJar, ico, input, dest)
+        cmd += appImageArgs(mainJar, ico, input, dest, cli)
+
+        commandLine(cmd)
+        println(">> Running jpackage app image:\n${cmd.joinToString(" ")}")
+    }
+}
+
+tasks.register<Exec>("cdsArchive") {
+    group = "distribution"
+    description = "Start the app image once up to the password prompt so its CDS archive ships pre-built"
+    dependsOn("winAppImage")
+
+    doFirst {
+        val launcher = File(imageDir.get().asFile, "MyVault/MyVault.exe")
+        require(launcher.exists()) { "Launcher not found: ${launcher.absolutePath}. Did 'winAppImage' run?" }
+        // the launcher ignores JDK_JAVA_OPTIONS, but the JVM itself reads JAVA_TOOL_OPTIONS
+        environment("JAVA_TOOL_OPTIONS", "-Dvaultpro.cdsTraining=true")
+        commandLine(launcher.absolutePath)
+    }
+
+    doLast {
+        val jsa = File(imageDir.get().asFile, "MyVault/app/$cdsArchiveName")
+        if (jsa.exists()) println("✅ CDS archive: ${jsa.absolutePath} (${jsa.length() / 1024} KiB)")
+        else println("⚠️  No CDS archive was written; the first start after install will create it.")
+    }
+}
+
+tasks.register<Exec>("winExe") {
+    group = "distribution"
+    description = "Build Windows EXE installer via jpackage"
+    dependsOn("cdsArchive")
+    outputs.dir(outputDir)
+
+    doFirst {
+        val jpkg = File(jpackageExePath())
+        require(jpkg.exists()) {
+            "jpackage.exe not found at ${jpkg.absolutePath}. Install a full JDK 21+ and/or set JPACKAGE_HOME."
+        }
+
+        val dest = outputDir.get().asFile
+        val cmd = mutableListOf(jpkg.absolutePath)
+        cmd += installerArgs("exe", File(imageDir.get().asFile, "MyVault"), dest)
 
         commandLine(cmd)
         println(">> Running jpackage EXE:\n${cmd.joinToString(" ")}")
@@ -108,13 +199,13 @@ tasks.register<Exec>("winExe") {
 tasks.register<Exec>("winMsi") {
     group = "distribution"
     description = "Build Windows MSI installer via jpackage (WiX required)"
-    dependsOn("stageJars")
+    dependsOn("cdsArchive")
     outputs.dir(outputDir)
 
     doFirst {
         val jpkg = File(jpackageExePath())
         require(jpkg.exists()) {
-            "jpackage.exe not found at ${jpkg.absolutePath}. Install a full JDK 17+ and/or set JPACKAGE_HOME."
+            "jpackage.exe not found at ${jpkg.absolutePath}. Install a full JDK 21+ and/or set JPACKAGE_HOME."
         }
 
         try {
@@ -124,16 +215,9 @@ tasks.register<Exec>("winMsi") {
             println("⚠️  WiX Toolset not detected on PATH. Install WiX 3.x and ensure its 'bin' is on PATH.")
         }
 
-        val input = inputDir.get().asFile
         val dest = outputDir.get().asFile
-        val mainJar = tasks.named<Jar>("jar").get().archiveFileName.get()
-        require(File(input, mainJar).exists()) {
-            "Main jar not staged: ${File(input, mainJar).absolutePath}. Did 'stageJars' run?"
-        }
-
-        val ico = project.layout.projectDirectory.file("icons/app-icon.ico").asFile
         val cmd = mutableListOf(jpkg.absolutePath)
-        cmd += commonJpackageArgs("msi", mainJar, ico, input, dest)
+        cmd += installerArgs("msi", File(imageDir.get().asFile, "MyVault"), dest)
 
         commandLine(cmd)
         println(">> Running jpackage MSI:\n${cmd.joinToString(" ")}")
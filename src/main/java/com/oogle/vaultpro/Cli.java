@@ -0,0 +1,189 @@
+package com.oogle.vaultpro;
+
+import com.oogle.vaultpro.model.Entry;
+import com.oogle.vaultpro.model.VaultData;
+import com.oogle.vaultpro.service.BatchGenerator;
+import com.oogle.vaultpro.service.BreachList;
+import com.oogle.vaultpro.service.DomainIndex;
+import com.oogle.vaultpro.service.VaultStore;
+
+import java.io.BufferedReader;
+import java.io.Console;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.prefs.Preferences;
+
+/**
+ * Command line entry point for scripts and integrations ({@code myvault-cli <command> ...}; the windowed MyVault launcher has no console).
+ * Without arguments the app starts the UI as before.
+ * <pre>
+ *   lookup &lt;url&gt; [--vault path] [--with-password] [--password-stdin]
+ *   breach-filter &lt;sha1-list.txt&gt; &lt;out.bloom&gt; [--fp 0.01]
+ *   generate [--count n] [--length n] [--min-upper|--min-lower|--min-digits|--min-symbols n] [--no-symbols ...]
+ *            [--no-ambiguous] | [--passphrase words [--separator s] [--capitalize] [--digit] [--wordlist file]]
+ * </pre>
+ * Output is tab-separated, one entry per line.
+ */
+final class Cli {
+
+    private Cli() {}
+
+    static int run(String[] args) {
+        PrintStream out = System.out, err = System.err;
+        List<String> rest = new ArrayList<>(Arrays.asList(args));
+        String cmd = rest.remove(0);
+        try {
+            switch (cmd) {
+                case "lookup" -> { return lookup(rest, out); }
+                case "breach-filter" -> { return breachFilter(rest, out); }
+                case "generate" -> { return generate(rest, out); }
+                case "help", "--help", "-h" -> { usage(out); return 0; }
+                default -> { err.println("Unknown command: " + cmd); usage(err); return 2; }
+            }
+        } catch (IllegalArgumentException ex) {
+            err.println(ex.getMessage());
+            return 2;
+        } catch (Exception ex) {
+            err.println("Error: " + ex.getMessage());
+            return 1;
+        }
+    }
+
+    private static void usage(PrintStream p) {
+        p.println("Usage: myvault-cli <command> [options]");
+        p.println("  lookup <url> [--vault path] [--with-password] [--password-stdin]");
+        p.println("      entries for a site: exact host, parent hosts, then the rest of the registrable domain");
+        p.println("  breach-filter <sha1-list.txt> <out.bloom> [--fp 0.01]");
+        p.println("      compacts a HIBP SHA-1 list into a Bloom filter for Vault > Breach List");
+        p.println("  generate [--count 1] [--length 20] [--min-upper|--min-lower|--min-digits|--min-symbols n]");
+        p.println("           [--no-upper|--no-lower|--no-digits|--no-symbols] [--no-ambiguous]");
+        p.println("  generate --passphrase <words> [--count 1] [--separator -] [--capitalize] [--digit] [--wordlist file]");
+        p.println("      random passwords or passphrases, one per line; no vault needed");
+    }
+
+    private static int lookup(List<String> args, PrintStream out) throws Exception {
+        boolean withPassword = args.remove("--with-password");
+        boolean stdin = args.remove("--password-stdin");
+        Path vault = vaultPath(option(args, "--vault"));
+        String url = positional(args, "lookup needs a URL or host");
+        VaultData data = unlock(vault, stdin);
+        List<Entry> hits = DomainIndex.build(data.entries).lookup(url);
+        for (Entry e : hits) {
+            out.println(String.join("\t", ns(e.label), ns(e.username), ns(e.url)) + (withPassword ? "\t" + ns(e.password) : ""));
+        }
+        return hits.isEmpty() ? 3 : 0;
+    }
+
+    private static int breachFilter(List<String> args, PrintStream out) throws Exception {
+        String fp = option(args, "--fp");
+        Path list = Paths.get(positional(args, "breach-filter needs the SHA-1 list"));
+        Path dest = Paths.get(positional(args, "breach-filter needs an output file"));
+        BreachList.buildBloom(list, dest, fp == null ? 0.01 : Double.parseDouble(fp));
+        out.println("Wrote " + dest + " (" + java.nio.file.Files.size(dest) + " bytes)");
+        return 0;
+    }
+
+    private static int generate(List<String> args, PrintStream out) throws Exception {
+        int count = intOption(args, "--count", 1);
+        if (count < 1) throw new IllegalArgumentException("--count must be at least 1");
+        BatchGenerator gen = new BatchGenerator();
+        StringBuilder buf = new StringBuilder(8192);
+        String words = option(args, "--passphrase");
+        if (words != null) {
+            String sep = option(args, "--separator");
+            String list = option(args, "--wordlist");
+            var policy = new BatchGenerator.PassphrasePolicy(Integer.parseInt(words), sep == null ? "-" : sep,
+                    args.remove("--capitalize"), args.remove("--digit"));
+            List<String> dict = list != null ? BatchGenerator.loadWords(Paths.get(list)) : BatchGenerator.defaultWords();
+            noLeftovers(args);
+            for (int i = 0; i < count; i++) flushing(buf.append(gen.passphrase(policy, dict)).append('\n'), out);
+        } else {
+            int length = intOption(args, "--length", 20);
+            var policy = new BatchGenerator.Policy(length,
+                    args.remove("--no-upper") ? -1 : intOption(args, "--min-upper", 1),
+                    args.remove("--no-lower") ? -1 : intOption(args, "--min-lower", 1),
+                    args.remove("--no-digits") ? -1 : intOption(args, "--min-digits", 1),
+                    args.remove("--no-symbols") ? -1 : intOption(args, "--min-symbols", 1),
+                    args.remove("--no-ambiguous"));
+            noLeftovers(args);
+            for (int done = 0; done < count; done += 1024) {
+                for (String pw : gen.passwords(policy, Math.min(1024, count - done))) flushing(buf.append(pw).append('\n'), out);
+            }
+        }
+        out.print(buf);
+        out.flush();
+        return 0;
+    }
+
+    private static void flushing(StringBuilder buf, PrintStream out) {
+        if (buf.length() < 8000) return;
+        out.print(buf);
+        buf.setLength(0);
+    }
+
+    /* ---- shared option handling ---- */
+
+    static VaultData unlock(Path vault, boolean passwordFromStdin) throws Exception {
+        char[] mpw = readMasterPassword(passwordFromStdin);
+        try {
+            return new VaultStore().load(vault, mpw);
+        } finally {
+            Arrays.fill(mpw, '\0');
+        }
+    }
+
+    /** {@code --vault} if given, else the vault the UI used last, else the default location. */
+    static Path vaultPath(String explicit) {
+        if (explicit != null) return Paths.get(explicit);
+        String prev = Preferences.userNodeForPackage(VaultProApp.class).get("vaultPath", "");
+        if (!prev.isBlank()) return Paths.get(prev);
+        return Paths.get(System.getProperty("user.home"), ".vault", "vault.dat");
+    }
+
+    private static char[] readMasterPassword(boolean fromStdin) throws Exception {
+        Console c = System.console();
+        if (!fromStdin && c != null) {
+            char[] pw = c.readPassword("Master password: ");
+            if (pw == null) throw new IllegalArgumentException("No master password given");
+            return pw;
+        }
+        String line = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+        if (line == null) throw new IllegalArgumentException("No master password on stdin");
+        return line.toCharArray();
+    }
+
+    static String option(List<String> args, String name) {
+        int i = args.indexOf(name);
+        if (i < 0) return null;
+        if (i + 1 >= args.size()) throw new IllegalArgumentException(name + " needs a value");
+        args.remove(i);
+        return args.remove(i);
+    }
+
+    static int intOption(List<String> args, String name, int dflt) {
+        String v = option(args, name);
+        if (v == null) return dflt;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(name + " needs a number, got " + v);
+        }
+    }
+
+    static void noLeftovers(List<String> args) {
+        if (!args.isEmpty()) throw new IllegalArgumentException("Unexpected argument: " + args.get(0));
+    }
+
+    static String positional(List<String> args, String missing) {
+        for (int i = 0; i < args.size(); i++) {
+            if (!args.get(i).startsWith("--")) return args.remove(i);
+        }
+        throw new IllegalArgumentException(missing);
+    }
+
+    private static String ns(String s) { return s == null ? "" : s; }
+}
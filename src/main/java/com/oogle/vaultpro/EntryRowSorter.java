@@ -0,0 +1,33 @@
+package com.oogle.vaultpro;
+
+import javax.swing.DefaultRowSorter;
+import javax.swing.table.TableModel;
+import java.util.Comparator;
+
+/**
+ * Sorts and filters the {@link EntryTableModel} on its precomputed {@link EntryTableModel#sortKey sort keys}, so
+ * a comparison never collates. Ties keep model order, which makes every sort stable. Edits re-sort too: a
+ * single inserted, removed or changed row is moved into place by binary search instead of sorting all rows.
+ * Row filters see the sort keys as values; the filters here only use the row identifier.
+ */
+final class EntryRowSorter extends DefaultRowSorter<TableModel, Integer> {
+
+    private static final Comparator<Comparable<Object>> NATURAL = Comparator.naturalOrder();
+
+    EntryRowSorter(EntryTableModel model) {
+        setModelWrapper(new ModelWrapper<>() {
+            @Override public TableModel getModel() { return model; }
+            @Override public int getColumnCount() { return model.getColumnCount(); }
+            @Override public int getRowCount() { return model.getRowCount(); }
+            @Override public Object getValueAt(int row, int column) { return model.sortKey(row, column); }
+            @Override public Integer getIdentifier(int row) { return row; }
+        });
+        setSortsOnUpdates(true);
+    }
+
+    @Override
+    public Comparator<?> getComparator(int column) { return NATURAL; }
+
+    @Override
+    protected boolean useToString(int column) { return false; }
+}
@@ -0,0 +1,123 @@
+package com.oogle.vaultpro;
+
+import com.oogle.vaultpro.model.Entry;
+
+import javax.swing.table.AbstractTableModel;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The main entry table, one row per entry in vault order. Besides what the cells show, each row holds what
+ * {@link EntryRowSorter} sorts on: a {@link CollationKey} per text column, made on the first sort that needs it
+ * and kept until the entry changes, and the modification time. Header clicks and re-sorts then compare
+ * precomputed keys instead of collating both strings on every comparison.
+ */
+final class EntryTableModel extends AbstractTableModel {
+
+    static final int FAVORITE = 0, LABEL = 1, USERNAME = 2, URL = 3, TAGS = 4, MODIFIED = 5, RANK = 6;
+    private static final String[] NAMES = {"★", "Label", "Username", "URL", "Tags", "Modified", "Rank"};
+    private static final DateTimeFormatter MODIFIED_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final Collator collator = Collator.getInstance(); // same order TableRowSorter used for strings
+    private final IntUnaryOperator rank;
+    private final List<Row> rows = new ArrayList<>();
+
+    /** {@code rank} gives the hidden rank column of a model row, lower first. */
+    EntryTableModel(IntUnaryOperator rank) { this.rank = rank; }
+
+    /** One entry's cells, taken when the row is built; only {@link #shows} reads the entry again. */
+    private final class Row {
+        final Entry entry;
+        final Boolean favorite;
+        final String[] text; // LABEL..TAGS
+        final Long modified; // boxed once here rather than on every comparison
+        final CollationKey[] keys = new CollationKey[TAGS];
+
+        Row(Entry e) {
+            entry = e;
+            favorite = e.favorite;
+            text = new String[]{ e.label, e.username, e.url, String.join(",", e.tags) };
+            modified = e.updatedAt;
+        }
+
+        CollationKey key(int col) {
+            CollationKey k = keys[col - LABEL];
+            if (k == null && text[col - LABEL] != null) keys[col - LABEL] = k = collator.getCollationKey(text[col - LABEL]);
+            return k;
+        }
+
+        /** Whether this row still matches {@code e}, so its sort keys can be kept. */
+        boolean shows(Entry e) {
+            return entry == e && favorite == e.favorite && modified == e.updatedAt && Objects.equals(text[0], e.label)
+                    && Objects.equals(text[1], e.username) && Objects.equals(text[2], e.url)
+                    && text[3].equals(String.join(",", e.tags));
+        }
+    }
+
+    /**
+     * Replaces every row with one event, so the sorter sorts once instead of placing rows one by one. Rows of
+     * entries that are still there unchanged are kept with their keys: a refresh doesn't mean collating again.
+     */
+    void setEntries(List<Entry> entries) {
+        Map<Entry, Row> old = new IdentityHashMap<>(rows.size());
+        for (Row r : rows) old.put(r.entry, r);
+        rows.clear();
+        for (Entry e : entries) {
+            Row r = old.get(e);
+            rows.add(r != null && r.shows(e) ? r : new Row(e));
+        }
+        fireTableDataChanged();
+    }
+
+    void insert(int row, Entry e) {
+        rows.add(row, new Row(e));
+        fireTableRowsInserted(row, row);
+    }
+
+    void remove(int row) {
+        rows.remove(row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    /** Rebuilds one row from its entry, dropping its sort keys; the sorter moves just that row. */
+    void update(int row, Entry e) {
+        rows.set(row, new Row(e));
+        fireTableRowsUpdated(row, row);
+    }
+
+    /** What {@link EntryRowSorter} compares: collation keys, the modification time, the favorite flag or the rank. */
+    Comparable<?> sortKey(int row, int col) {
+        Row r = rows.get(row);
+        return switch (col) {
+            case FAVORITE -> r.favorite;
+            case MODIFIED -> r.modified;
+            case RANK -> rank.applyAsInt(row);
+            default -> r.key(col);
+        };
+    }
+
+    @Override public int getRowCount() { return rows.size(); }
+    @Override public int getColumnCount() { return NAMES.length; }
+    @Override public String getColumnName(int col) { return NAMES[col]; }
+    @Override public Class<?> getColumnClass(int col) { return col == FAVORITE ? Boolean.class : col == RANK ? Integer.class : String.class; }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        Row r = rows.get(row);
+        return switch (col) {
+            case FAVORITE -> r.favorite;
+            case MODIFIED -> r.modified == 0 ? "" : MODIFIED_FMT.format(Instant.ofEpochMilli(r.modified));
+            case RANK -> rank.applyAsInt(row);
+            default -> r.text[col - LABEL];
+        };
+    }
+}
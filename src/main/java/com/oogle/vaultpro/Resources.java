@@ -0,0 +1,57 @@
+package com.oogle.vaultpro;
+
+import com.formdev.flatlaf.extras.FlatSVGIcon;
+
+import javax.swing.*;
+import java.awt.*;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Icons shared by every window and dialog, loaded once on first use. The app icon PNGs can be decoded ahead
+ * of time by {@link #prefetch} on a background thread while the look and feel is being set up.
+ */
+final class Resources {
+
+    private static final int[] APP_ICON_SIZES = {16, 24, 32, 48, 64, 128, 256, 512};
+    private static final Map<String, Icon> SVG = new ConcurrentHashMap<>();
+
+    private Resources() {}
+
+    private static final class AppIcons {
+        static final List<Image> LIST = load();
+
+        private static List<Image> load() {
+            List<Image> list = new ArrayList<>();
+            ClassLoader cl = Resources.class.getClassLoader();
+            for (int s : APP_ICON_SIZES) {
+                URL url = cl.getResource("icons/app-icon-" + s + ".png");
+                if (url != null) list.add(new ImageIcon(url).getImage());
+            }
+            return List.copyOf(list);
+        }
+    }
+
+    /** Starts decoding the app icons so the first dialog doesn't wait for them. */
+    static void prefetch() {
+        Thread t = new Thread(Resources::appIcons, "icon-prefetch");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** App icon in every size available, smallest first; empty if none are bundled. */
+    static List<Image> appIcons() { return AppIcons.LIST; }
+
+    static void applyAppIcons(Window w) {
+        List<Image> icons = appIcons();
+        if (!icons.isEmpty()) w.setIconImages(icons);
+    }
+
+    /** An SVG icon from the classpath; one instance per path and size, shared by every component using it. */
+    static Icon svg(String path, int width, int height) {
+        return SVG.computeIfAbsent(path + '@' + width + 'x' + height, k -> new FlatSVGIcon(path, width, height));
+    }
+}
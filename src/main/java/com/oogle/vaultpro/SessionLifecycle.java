@@ -0,0 +1,148 @@
+package com.oogle.vaultpro;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.AWTEventListener;
+import java.awt.event.InputEvent;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything an unlocked session schedules, owned in one place so {@link #close} on lock removes it all: the
+ * activity listener, the auto-lock deadline, the pending clipboard clear and one-shot tasks such as TOTP
+ * rollovers. Work is deadline-based on one daemon thread; nothing wakes up every second. Callbacks run on the EDT.
+ * <p>
+ * Deadlines are wall-clock times. The executor's delays run on a monotonic clock that stops while the machine
+ * sleeps, so no wait is longer than {@link #MAX_WAIT_MS} before the wall clock is compared again, and input or
+ * window focus after a wake-up locks at once if the idle period passed while asleep.
+ */
+final class SessionLifecycle implements AutoCloseable {
+
+    static final long MAX_WAIT_MS = 5_000;
+
+    private final long idleMs;
+    private final Runnable onIdle;
+    private final ScheduledThreadPoolExecutor exec;
+    private final AWTEventListener activity = this::onActivity;
+    private volatile long lastActivity = System.currentTimeMillis();
+    private volatile boolean closed, expiring;
+    private Future<?> clipboardClear;
+    private String clipboardText; // what we put on the clipboard and still have to clear
+
+    /** Starts watching for input; {@code onIdle} runs after {@code idleMs} without any, then the period restarts. */
+    SessionLifecycle(long idleMs, Runnable onIdle) {
+        this.idleMs = idleMs;
+        this.onIdle = onIdle;
+        this.exec = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "vault-lifecycle");
+            t.setDaemon(true);
+            return t;
+        });
+        exec.setRemoveOnCancelPolicy(true);
+        Toolkit.getDefaultToolkit().addAWTEventListener(activity, AWTEvent.MOUSE_EVENT_MASK | AWTEvent.KEY_EVENT_MASK
+                | AWTEvent.WINDOW_EVENT_MASK | AWTEvent.WINDOW_FOCUS_EVENT_MASK);
+        scheduleIdleCheck(Math.min(idleMs, MAX_WAIT_MS));
+    }
+
+    void touch() { lastActivity = System.currentTimeMillis(); }
+
+    /** Input or focus: starts a new idle period, unless the last one ran out (typically while asleep). */
+    private void onActivity(AWTEvent e) {
+        if (expiring) return; // a prompt shown by onIdle needs its input
+        if (System.currentTimeMillis() - lastActivity >= idleMs) {
+            if (e instanceof InputEvent in) in.consume(); // the first key after a wake-up mustn't act on the vault
+            expire();
+        } else {
+            touch();
+        }
+    }
+
+    /** Puts {@code text} on the clipboard and clears it after {@code delayMs}, unless something else was copied since. */
+    synchronized void copyWithAutoClear(String text, long delayMs) {
+        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(text), null);
+        if (clipboardClear != null) clipboardClear.cancel(false);
+        clipboardText = text;
+        clipboardClear = at(System.currentTimeMillis() + delayMs, this::clearClipboard);
+    }
+
+    /**
+     * Runs {@code task} on the EDT at {@code epochMs} (wall clock, so time spent asleep counts), unless cancelled
+     * through the returned future or the session ends first.
+     */
+    Future<?> at(long epochMs, Runnable task) {
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        whenDue(epochMs, f, () -> onEdt(() -> { if (f.complete(null)) task.run(); }));
+        return f;
+    }
+
+    private void whenDue(long epochMs, Future<?> f, Runnable r) {
+        if (closed || f.isDone()) return;
+        long wait = epochMs - System.currentTimeMillis();
+        if (wait <= 0) { r.run(); return; }
+        try {
+            exec.schedule(() -> whenDue(epochMs, f, r), Math.min(wait, MAX_WAIT_MS), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException closedMeanwhile) {
+            // the session ended
+        }
+    }
+
+    /** Removes the listener and drops every pending task; a copied secret is cleared now rather than later. */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        Toolkit.getDefaultToolkit().removeAWTEventListener(activity);
+        exec.shutdownNow();
+        clearClipboard();
+    }
+
+    private void scheduleIdleCheck(long delayMs) {
+        try {
+            if (!closed) exec.schedule(this::checkIdle, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException closedMeanwhile) {
+            // closed on the EDT while this check ran
+        }
+    }
+
+    private void checkIdle() {
+        long left = idleMs - (System.currentTimeMillis() - lastActivity);
+        if (left <= 0) { expire(); left = idleMs; }
+        scheduleIdleCheck(Math.min(left, MAX_WAIT_MS));
+    }
+
+    /** Runs {@code onIdle} once; the next period only starts once it returns: it may sit in a modal "unsaved changes" prompt. */
+    private void expire() {
+        if (expiring) return;
+        expiring = true;
+        onEdt(() -> {
+            try {
+                onIdle.run();
+            } finally {
+                touch();
+                expiring = false;
+            }
+        });
+    }
+
+    private synchronized void clearClipboard() {
+        String text = clipboardText;
+        clipboardText = null;
+        clipboardClear = null;
+        if (text == null) return;
+        try {
+            Clipboard cb = Toolkit.getDefaultToolkit().getSystemClipboard();
+            if (Objects.equals(cb.getData(DataFlavor.stringFlavor), text)) cb.setContents(new StringSelection(""), null);
+        } catch (Exception ignored) {}
+    }
+
+    private void onEdt(Runnable r) {
+        SwingUtilities.invokeLater(() -> { if (!closed) r.run(); });
+    }
+}
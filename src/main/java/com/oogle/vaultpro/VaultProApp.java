@@ -2,16 +2,34 @@
 package com.oogle.vaultpro;
 
 import com.formdev.flatlaf.FlatDarkLaf;
-import com.formdev.flatlaf.extras.FlatSVGIcon;
 import com.oogle.vaultpro.crypto.Kdf;
+import com.oogle.vaultpro.crypto.SectionKeys;
+import com.oogle.vaultpro.diag.Metrics;
 import com.oogle.vaultpro.model.Entry;
 import com.oogle.vaultpro.model.Settings;
+import com.oogle.vaultpro.model.SyncLedger;
+import com.oogle.vaultpro.model.VaultChanges;
 import com.oogle.vaultpro.model.VaultData;
+import com.oogle.vaultpro.service.AttachmentStore;
 import com.oogle.vaultpro.service.AuditService;
+import com.oogle.vaultpro.service.BatchGenerator;
+import com.oogle.vaultpro.service.BreachList;
+import com.oogle.vaultpro.service.DeltaSync;
+import com.oogle.vaultpro.service.FacetIndex;
 import com.oogle.vaultpro.service.Generator;
+import com.oogle.vaultpro.service.HistoryPolicy;
+import com.oogle.vaultpro.service.PasswordFingerprints;
+import com.oogle.vaultpro.service.PasswordRotation;
+import com.oogle.vaultpro.service.Query;
+import com.oogle.vaultpro.service.SnapshotStore;
+import com.oogle.vaultpro.service.StrengthEstimator;
+import com.oogle.vaultpro.service.TotpEngine;
+import com.oogle.vaultpro.service.VaultMerger;
 import com.oogle.vaultpro.service.VaultStore;
-import com.oogle.vaultpro.util.TotpUtil;
+import com.oogle.vaultpro.service.VaultWatcher;
+import com.oogle.vaultpro.service.Workspace;
 
+import javax.crypto.SecretKey;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.DocumentEvent;
@@ -19,58 +37,62 @@ import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
+import java.io.IOException;
     import java.nio.file.*;
 import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.Future;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
 
 public class VaultProApp {
 
-    static {
-        try { FlatDarkLaf.setup(); } catch (Exception ignored) {}
-        UIManager.put("Component.arc", 16);
-        UIManager.put("Button.arc", 16);
-        UIManager.put("TextComponent.arc", 12);
-        UIManager.put("Table.showHorizontalLines", Boolean.FALSE);
-        UIManager.put("Table.showVerticalLines", Boolean.FALSE);
-        UIManager.put("Table.intercellSpacing", new Dimension(0, 8));
-        UIManager.put("ScrollBar.thumbArc", 999);
-        UIManager.put("ScrollBar.showButtons", Boolean.FALSE);
-        UIManager.put("TabbedPane.tabSeparatorsFullHeight", Boolean.TRUE);
-    }
+    /** Set by the build's CDS task: show the first prompt as a normal start would, then exit (see {@link #trainStartup}). */
+    static final String CDS_TRAINING = "vaultpro.cdsTraining";
 
     private final Settings settings = new Settings();
     private final VaultStore store = new VaultStore();
     private final Generator generator = new Generator();
+    private final TotpEngine totp = new TotpEngine();
+    private JDialog totpDialog;
 
     private JFrame frame;
     private JTable table;
-    private DefaultTableModel model;
-    private TableRowSorter<TableModel> sorter;
+    private EntryTableModel model;
+    private EntryRowSorter sorter;
+    private static final int RANK_COL = EntryTableModel.RANK;
+    private static final int RANKED_LIMIT = 500;
+    private int[] rank; // fuzzy relevance per model row (0 = best) while a plain-text search is active
     private JTextField search;
     private JList<String> sidebar;
     private DefaultListModel<String> sidebarModel;
+    private final FacetIndex facets = new FacetIndex();
 
     private char[] masterPassword;
     private VaultData data;
 
-    private long lastInteraction = System.currentTimeMillis();
-    private javax.swing.Timer idleTimer;
+    // All unlocked vaults; the fields above mirror the active session
+    private final Workspace workspace = new Workspace();
+    private Workspace.Session session;
+
+    // Auto-lock, clipboard clearing and TOTP rollovers of the unlocked session
+    private SessionLifecycle lifecycle;
 
     // Unsaved changes
     private boolean dirty = false;
 
     // Icons and early owner
-    private List<Image> appIcons;
     private JFrame loginOwner;
 
     // Preferences (persist last vault path and dir)
@@ -81,11 +103,36 @@ public class VaultProApp {
     // Status bar labels
     private JLabel statusLabel;
 
+    // External changes (cloud-synced folders)
+    private VaultWatcher watcher; // of the active vault; the others are compared with their stamp on switching back
+    private SyncLedger ledger;
+    private boolean applyingExternal; // merged changes are already on disk, so they don't make the vault dirty
+
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new VaultProApp().start());
+        if (args.length > 0) System.exit(Cli.run(args));
+        Resources.prefetch(); // decodes the app icons while the EDT sets up the look and feel
+        SwingUtilities.invokeLater(() -> {
+            setupLookAndFeel();
+            new VaultProApp().start();
+        });
+    }
+
+    /** Only the GUI pays for FlatLaf; the command line never loads it. */
+    private static void setupLookAndFeel() {
+        try { FlatDarkLaf.setup(); } catch (Exception ignored) {}
+        UIManager.put("Component.arc", 16);
+        UIManager.put("Button.arc", 16);
+        UIManager.put("TextComponent.arc", 12);
+        UIManager.put("Table.showHorizontalLines", Boolean.FALSE);
+        UIManager.put("Table.showVerticalLines", Boolean.FALSE);
+        UIManager.put("Table.intercellSpacing", new Dimension(0, 8));
+        UIManager.put("ScrollBar.thumbArc", 999);
+        UIManager.put("ScrollBar.showButtons", Boolean.FALSE);
+        UIManager.put("TabbedPane.tabSeparatorsFullHeight", Boolean.TRUE);
     }
 
     private void start() {
+        if (Boolean.getBoolean(CDS_TRAINING)) { trainStartup(); return; }
         try {
             String prev = prefs.get("vaultPath", "");
             if (prev != null && !prev.isBlank()) {
@@ -98,34 +145,47 @@ public class VaultProApp {
                 lastDir = def.getParent();
             }
         } catch (Exception ignored) {}
+        workspace.setHistoryPolicy(HistoryPolicy.load(prefs));
+        workspace.addChangeListener(this::onVaultChanges);
         setTaskbarIcon();
         if (Files.exists(vaultPath)) unlockExisting(); else createNew();
     }
 
+    /** Short random id naming this install in per-entry version vectors. */
+    private String deviceId() {
+        String id = prefs.get("deviceId", "");
+        if (id.isBlank()) {
+            byte[] b = new byte[4];
+            new SecureRandom().nextBytes(b); // generateSeed can block on an entropy-starved machine
+            id = HexFormat.of().formatHex(b);
+            prefs.put("deviceId", id);
+        }
+        return id;
+    }
+
     private Path getDefaultVaultPath() {
         return Paths.get(System.getProperty("user.home"), ".vault", "vault.dat");
     }
 
-    /* ================== Icons ================== */
-
-    private List<Image> loadAppIcons() {
-        List<Image> list = new ArrayList<>();
-        int[] sizes = {16, 24, 32, 48, 64, 128, 256, 512};
-        ClassLoader cl = getClass().getClassLoader();
-        for (int s : sizes) {
-            String path = String.format("icons/app-icon-%d.png", s);
-            java.net.URL url = cl.getResource(path);
-            if (url != null) list.add(new ImageIcon(url).getImage());
-        }
-        return list;
+    /**
+     * The startup path up to the master password prompt, run once when the installer is built so the classes it
+     * loads go into the class-data sharing archive. Touches no preferences and no vault, and exits by itself.
+     */
+    private void trainStartup() {
+        setTaskbarIcon();
+        javax.swing.Timer quit = new javax.swing.Timer(1500, e -> System.exit(0)); // once the prompt has painted
+        quit.setRepeats(false);
+        quit.start();
+        showConfirmWithIcon(ensureOwnerFrame(), "Enter Master Password", new JPasswordField());
+        System.exit(0);
     }
 
+    /* ================== Icons ================== */
+
     private void setTaskbarIcon() {
         try {
-            if (java.awt.Taskbar.isTaskbarSupported()) {
-                if (appIcons == null || appIcons.isEmpty()) appIcons = loadAppIcons();
-                if (!appIcons.isEmpty()) java.awt.Taskbar.getTaskbar().setIconImage(appIcons.get(appIcons.size()-1));
-            }
+            List<Image> icons = Resources.appIcons();
+            if (java.awt.Taskbar.isTaskbarSupported() && !icons.isEmpty()) java.awt.Taskbar.getTaskbar().setIconImage(icons.get(icons.size()-1));
         } catch (Exception ignored) {}
     }
 
@@ -134,8 +194,7 @@ public class VaultProApp {
         if (loginOwner == null) {
             loginOwner = new JFrame();
             loginOwner.setUndecorated(true);
-            if (appIcons == null) appIcons = loadAppIcons();
-            loginOwner.setIconImages(appIcons);
+            Resources.applyAppIcons(loginOwner);
             loginOwner.setType(Window.Type.UTILITY);
             loginOwner.setLocationRelativeTo(null);
         }
@@ -145,14 +204,35 @@ public class VaultProApp {
     private int showConfirmWithIcon(Window owner, String title, JComponent content) {
         JOptionPane pane = new JOptionPane(content, JOptionPane.PLAIN_MESSAGE, JOptionPane.OK_CANCEL_OPTION);
         JDialog dlg = pane.createDialog(owner, title);
-        if (appIcons == null) appIcons = loadAppIcons();
-        if (!appIcons.isEmpty()) dlg.setIconImages(appIcons);
+        Resources.applyAppIcons(dlg);
         dlg.setResizable(true);
         dlg.setVisible(true);
         Object v = pane.getValue();
         return (v instanceof Integer) ? (Integer) v : JOptionPane.CLOSED_OPTION;
     }
 
+    /**
+     * Unlocks a vault into a new workspace session. Its sync state describes the file as read, stamped before
+     * reading, so a write that lands meanwhile is merged on the next check rather than missed.
+     */
+    private Workspace.Session openSession(Path path, char[] mpw) throws Exception {
+        VaultWatcher.Stamp before = VaultWatcher.Stamp.of(path);
+        VaultData opened = loadVault(path, mpw);
+        Workspace.Session s = workspace.open(path, opened, mpw);
+        s.seen = before;
+        s.syncBase = VaultMerger.snapshot(opened);
+        return s;
+    }
+
+    /** {@link VaultStore#load}, timed: key derivation, decryption and parsing all happen in there. */
+    private VaultData loadVault(Path path, char[] mpw) throws Exception {
+        return Metrics.time("vault.load", () -> store.load(path, mpw));
+    }
+
+    private void writeVault(Path path, char[] mpw, Kdf.Params kdf) throws Exception {
+        Metrics.run("vault.save", () -> store.saveV2(path, mpw, data, kdf));
+    }
+
     /* ================== Auth ================== */
 
     private void unlockExisting() {
@@ -161,7 +241,8 @@ public class VaultProApp {
         if (ok != JOptionPane.OK_OPTION) return;
         char[] mpw = pf.getPassword();
         try {
-            this.data = store.load(vaultPath, mpw);
+            this.session = openSession(vaultPath, mpw);
+            this.data = session.data;
             this.masterPassword = mpw;
             buildUI();
         } catch (Exception ex) {
@@ -187,8 +268,11 @@ public class VaultProApp {
             this.data = new VaultData();
             data.vaultName = name.getText().trim().isBlank() ? "MyVault" : name.getText().trim();
             Kdf.Params kdf = Kdf.newParamsPBKDF2(new SecureRandom(), settings.pbkdf2Iters, 16);
-            store.saveV2(vaultPath, mpw, data, kdf);
+            writeVault(vaultPath, mpw, kdf);
             this.masterPassword = mpw;
+            this.session = workspace.open(vaultPath, data, mpw);
+            session.ensureSectionKey(); // made with the vault, so no other device can be making one for it
+            markSynced();
             buildUI();
         } catch (Exception ex) {
             Arrays.fill(mpw, '\0');
@@ -199,9 +283,9 @@ public class VaultProApp {
     /* ================== UI ================== */
 
     private void buildUI() {
+        Metrics.Timer timer = Metrics.start("ui.build");
         frame = new JFrame();
-        if (appIcons == null) appIcons = loadAppIcons();
-        if (!appIcons.isEmpty()) frame.setIconImages(appIcons);
+        Resources.applyAppIcons(frame);
         updateTitle();
         frame.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
         frame.setSize(1180, 720);
@@ -218,7 +302,7 @@ public class VaultProApp {
         JButton auditBtn = iconButton("icons/audit.svg", "Audit"); auditBtn.addActionListener(a -> runAudit());
         JButton saveBtn = iconButton("icons/save.svg", "Save (Ctrl+S)"); saveBtn.addActionListener(a -> saveVault());
         JButton lockBtn = iconButton("icons/lock.svg", "Lock"); lockBtn.addActionListener(a -> lock());
-        search = new JTextField(); search.putClientProperty("JTextField.placeholderText","Search…");
+        search = new JTextField(); search.putClientProperty("JTextField.placeholderText","Search…  (tag:work user:bob url:*.example.com weak age>180d fav)");
         tb.add(addBtn); tb.addSeparator(); tb.add(genBtn); tb.add(auditBtn);
         tb.add(Box.createHorizontalGlue()); tb.add(search); tb.add(Box.createHorizontalStrut(12));
         tb.add(saveBtn); tb.add(lockBtn);
@@ -228,24 +312,24 @@ public class VaultProApp {
         sidebar = new JList<>(sidebarModel);
         sidebar.setBorder(new EmptyBorder(8,8,8,8));
         sidebar.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        sidebar.setCellRenderer(new FacetRenderer());
         refreshSidebar();
         sidebar.addListSelectionListener(e -> { if (!e.getValueIsAdjusting()) applySearchFilter(); });
 
         // Table
-        model = new DefaultTableModel(new Object[]{"★","Label","Username","URL","Tags"},0){
-            @Override public boolean isCellEditable(int r, int c){ return false; }
-            @Override public Class<?> getColumnClass(int c){ return c==0?Boolean.class:String.class; }
-        };
+        model = new EntryTableModel(r -> rank != null && r < rank.length ? rank[r] : Integer.MAX_VALUE);
         table = new JTable(model);
         table.setRowHeight(28);
         table.setFillsViewportHeight(true);
         table.setShowGrid(false);
-        sorter = new TableRowSorter<>(model);
+        sorter = new EntryRowSorter(model);
         table.setRowSorter(sorter);
         table.getColumnModel().getColumn(0).setMaxWidth(50);
         table.getColumnModel().getColumn(4).setPreferredWidth(250);
+        table.getColumnModel().getColumn(EntryTableModel.MODIFIED).setPreferredWidth(130);
         table.getColumnModel().getColumn(0).setCellRenderer(new StarRenderer());
         table.getColumnModel().getColumn(4).setCellRenderer(new TagRenderer());
+        table.removeColumn(table.getColumnModel().getColumn(RANK_COL)); // sort key only
         refreshTable();
 
         // Layout
@@ -308,20 +392,18 @@ public class VaultProApp {
         frame.getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("F1"), "help");
         frame.getRootPane().getActionMap().put("help", new AbstractAction(){ public void actionPerformed(java.awt.event.ActionEvent e){ showHelp(); }});
 
-        // Auto-lock + activity
-        idleTimer = new javax.swing.Timer(1000, ev -> { if (System.currentTimeMillis()-lastInteraction > settings.autoLockMs) lock(); });
-        idleTimer.start();
-        Toolkit.getDefaultToolkit().addAWTEventListener(e -> lastInteraction = System.currentTimeMillis(),
-                AWTEvent.MOUSE_EVENT_MASK | AWTEvent.KEY_EVENT_MASK);
+        // Auto-lock + activity (one listener per unlocked session, removed on lock)
+        if (lifecycle != null) lifecycle.close();
+        lifecycle = new SessionLifecycle(settings.autoLockMs, this::lock);
+
+        // External changes
+        startWatcher();
 
         // Confirm close handler
         frame.addWindowListener(new java.awt.event.WindowAdapter() {
-            @Override public void windowClosing(java.awt.event.WindowEvent e) {
-                if (confirmCloseIfDirty()) {
-                    frame.dispose();
-                }
-            }
+            @Override public void windowClosing(java.awt.event.WindowEvent e) { exitApp(); }
         });
+        timer.stop();
     }
 
     private JMenuBar createMenuBar() {
@@ -331,17 +413,48 @@ public class VaultProApp {
         JMenuItem miOpen = new JMenuItem("Open Vault…"); miOpen.setAccelerator(KeyStroke.getKeyStroke("control O"));
         JMenuItem miSaveAs = new JMenuItem("Save As…");  miSaveAs.setAccelerator(KeyStroke.getKeyStroke("control shift S"));
         JMenuItem miExit = new JMenuItem("Exit");
+        JMenu mOpenVaults = new JMenu("Switch Vault");
+        JMenuItem miSearchAll = new JMenuItem("Search All Vaults…"); miSearchAll.setAccelerator(KeyStroke.getKeyStroke("control shift F"));
+        JMenuItem miClose = new JMenuItem("Close Vault");
+        JMenuItem miBreach = new JMenuItem("Breach List…");
+        JMenuItem miRotate = new JMenuItem("Rotate Passwords…");
+        JMenuItem miRetention = new JMenuItem("History Retention…");
+        JMenuItem miMaster = new JMenuItem("Change Master Password…");
+        JMenuItem miSnapshots = new JMenuItem("Restore Snapshot…");
+        JMenuItem miTotp = new JMenuItem("TOTP Codes…"); miTotp.setAccelerator(KeyStroke.getKeyStroke("control T"));
+        mOpenVaults.addMenuListener(new javax.swing.event.MenuListener() {
+            @Override public void menuSelected(javax.swing.event.MenuEvent e) {
+                mOpenVaults.removeAll();
+                for (Workspace.Session s : workspace.sessions()) {
+                    JRadioButtonMenuItem mi = new JRadioButtonMenuItem(s.name(), s == session);
+                    mi.addActionListener(a -> switchTo(s));
+                    mOpenVaults.add(mi);
+                }
+            }
+            @Override public void menuDeselected(javax.swing.event.MenuEvent e) {}
+            @Override public void menuCanceled(javax.swing.event.MenuEvent e) {}
+        });
         miOpen.addActionListener(e -> openVault());
+        miSearchAll.addActionListener(e -> showWorkspaceSearch());
+        miClose.addActionListener(e -> closeVault());
+        miBreach.addActionListener(e -> chooseBreachList());
+        miRotate.addActionListener(e -> showRotation());
+        miRetention.addActionListener(e -> showHistoryRetention());
+        miMaster.addActionListener(e -> changeMasterPassword());
+        miSnapshots.addActionListener(e -> showSnapshots());
+        miTotp.addActionListener(e -> showTotpPanel());
         miSaveAs.addActionListener(e -> saveAs());
-        miExit.addActionListener(e -> { if (confirmCloseIfDirty()) frame.dispose(); });
-        mVault.add(miOpen); mVault.add(miSaveAs); mVault.addSeparator(); mVault.add(miExit);
+        miExit.addActionListener(e -> exitApp());
+        mVault.add(miOpen); mVault.add(mOpenVaults); mVault.add(miSearchAll); mVault.add(miTotp); mVault.add(miClose); mVault.add(miSaveAs); mVault.add(miMaster); mVault.add(miSnapshots); mVault.addSeparator(); mVault.add(miBreach); mVault.add(miRotate); mVault.add(miRetention); mVault.addSeparator(); mVault.add(miExit);
 
         JMenu mHelp = new JMenu("Help");
         JMenuItem miHelp = new JMenuItem("Help"); miHelp.setAccelerator(KeyStroke.getKeyStroke("F1"));
+        JMenuItem miDiag = new JMenuItem("Diagnostics…");
         JMenuItem miAbout = new JMenuItem("About");
         miHelp.addActionListener(e -> showHelp());
+        miDiag.addActionListener(e -> showDiagnostics());
         miAbout.addActionListener(e -> showAbout());
-        mHelp.add(miHelp); mHelp.addSeparator(); mHelp.add(miAbout);
+        mHelp.add(miHelp); mHelp.add(miDiag); mHelp.addSeparator(); mHelp.add(miAbout);
 
         mb.add(mVault);
         mb.add(mHelp);
@@ -351,7 +464,6 @@ public class VaultProApp {
     /* ================== Menu actions ================== */
 
     private void openVault() {
-        if (!confirmCloseIfDirty()) return;
         JFileChooser fc = new JFileChooser(lastDir != null ? lastDir.toFile() : new File(System.getProperty("user.home")));
         fc.setDialogTitle("Open Vault (.dat)");
         fc.setFileSelectionMode(JFileChooser.FILES_ONLY);
@@ -360,20 +472,15 @@ public class VaultProApp {
             lastDir = sel.getParentFile().toPath();
             prefs.put("lastDir", lastDir.toString());
             Path newPath = sel.toPath();
+            Workspace.Session already = workspace.find(newPath);
+            if (already != null) { switchTo(already); return; }
             JPasswordField pf = new JPasswordField();
             int ok = showConfirmWithIcon(frame, "Enter Master Password", pf);
             if (ok != JOptionPane.OK_OPTION) return;
             char[] mpw = pf.getPassword();
             try {
-                // switch
-                this.data = store.load(newPath, mpw);
-                this.masterPassword = mpw;
-                this.vaultPath = newPath;
-                prefs.put("vaultPath", vaultPath.toString());
-                dirty = false;
-                // rebuild UI
-                frame.dispose();
-                buildUI();
+                // keep the current vault unlocked alongside the new one
+                switchTo(openSession(newPath, mpw));
             } catch (Exception ex) {
                 Arrays.fill(mpw, '\0');
                 error("Failed to open: " + ex.getMessage());
@@ -381,6 +488,95 @@ public class VaultProApp {
         }
     }
 
+    /** Makes another unlocked vault the active one, keeping the state of the one we leave. */
+    private void switchTo(Workspace.Session s) {
+        if (s == session) return;
+        stashSession();
+        stopWatcher();
+        session = s;
+        data = s.data;
+        masterPassword = s.masterPassword;
+        vaultPath = s.path;
+        ledger = s.ledger;
+        dirty = s.dirty;
+        prefs.put("vaultPath", vaultPath.toString());
+        if (search != null) search.setText("");
+        refreshTable();
+        refreshSidebar();
+        updateTitle();
+        startWatcher();
+        if (statusLabel != null) statusLabel.setText("Active vault: " + s.name());
+    }
+
+    private void stashSession() {
+        if (session == null) return;
+        session.path = vaultPath;
+        session.ledger = ledger;
+        session.dirty = dirty;
+    }
+
+    private void closeVault() {
+        if (workspace.sessions().size() < 2) { lock(); return; }
+        if (!confirmCloseIfDirty()) return;
+        Workspace.Session closing = session;
+        Workspace.Session next = workspace.sessions().stream().filter(x -> x != closing).findFirst().orElseThrow();
+        switchTo(next);
+        workspace.close(closing);
+    }
+
+    private void showWorkspaceSearch() {
+        JTextField q = new JTextField(36);
+        q.putClientProperty("JTextField.placeholderText", "Search all open vaults…");
+        List<Workspace.Hit> hits = new ArrayList<>();
+        DefaultListModel<String> shown = new DefaultListModel<>();
+        JList<String> list = new JList<>(shown);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        q.getDocument().addDocumentListener(new DocumentListener() {
+            void run(){
+                stashSession();
+                hits.clear(); shown.clear();
+                if (q.getText().isBlank()) return;
+                for (Workspace.Hit h : workspace.search(q.getText())) {
+                    if (hits.size() == 500) break;
+                    hits.add(h);
+                    shown.addElement(h.session().data.vaultName + " — " + h.entry().label
+                            + (h.entry().username == null || h.entry().username.isBlank() ? "" : " (" + h.entry().username + ")"));
+                }
+                if (!hits.isEmpty()) list.setSelectedIndex(0);
+            }
+            @Override public void insertUpdate(DocumentEvent e){ run(); }
+            @Override public void removeUpdate(DocumentEvent e){ run(); }
+            @Override public void changedUpdate(DocumentEvent e){ run(); }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && list.getSelectedIndex() >= 0) {
+                    JOptionPane op = (JOptionPane) SwingUtilities.getAncestorOfClass(JOptionPane.class, list);
+                    if (op != null) op.setValue(JOptionPane.OK_OPTION);
+                }
+            }
+        });
+        JPanel p = new JPanel(new BorderLayout(8, 8));
+        p.setBorder(new EmptyBorder(10, 10, 10, 10));
+        JScrollPane sp = new JScrollPane(list);
+        sp.setPreferredSize(new Dimension(520, 320));
+        p.add(q, BorderLayout.NORTH);
+        p.add(sp, BorderLayout.CENTER);
+        if (showConfirmWithIcon(frame, "Search All Vaults", p) != JOptionPane.OK_OPTION) return;
+        int i = list.getSelectedIndex();
+        if (i < 0) return;
+        Workspace.Hit h = hits.get(i);
+        switchTo(h.session());
+        search.setText("");
+        sidebar.setSelectedIndex(0);
+        int row = data.entries.indexOf(h.entry());
+        if (row >= 0) {
+            int v = table.convertRowIndexToView(row);
+            table.setRowSelectionInterval(v, v);
+            table.scrollRectToVisible(table.getCellRect(v, 0, true));
+        }
+    }
+
     private void saveAs() {
         JFileChooser fc = new JFileChooser(lastDir != null ? lastDir.toFile() : new File(System.getProperty("user.home")));
         fc.setDialogTitle("Save Vault As");
@@ -396,14 +592,23 @@ public class VaultProApp {
                 int overwrite = JOptionPane.showConfirmDialog(frame, "File exists. Overwrite?", "Confirm", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
                 if (overwrite != JOptionPane.OK_OPTION) return;
             }
+            spillHistory();
             try {
                 Kdf.Params kdf = Kdf.newParamsPBKDF2(new SecureRandom(), settings.pbkdf2Iters, 16);
-                store.saveV2(newPath, masterPassword, data, kdf);
+                writeVault(newPath, masterPassword, kdf);
+                saveLedger(newPath);
+                session.moveTo(newPath); // history section and its key go along
+                saveIndexes();
+                pruneAttachments();
+                takeSnapshot();
                 this.vaultPath = newPath;
+                markSynced();
                 this.lastDir = newPath.getParent();
                 prefs.put("vaultPath", vaultPath.toString());
                 prefs.put("lastDir", lastDir.toString());
                 dirty = false;
+                stopWatcher();
+                startWatcher();
                 updateTitle();
                 info("Saved to: " + newPath);
             } catch (Exception ex) {
@@ -412,6 +617,73 @@ public class VaultProApp {
         }
     }
 
+    /**
+     * New master password for the active vault. The side sections keep their data key, which is only re-wrapped;
+     * the vault file itself is written once under the new password.
+     */
+    private void changeMasterPassword() {
+        JPasswordField current = new JPasswordField(), p1 = new JPasswordField(), p2 = new JPasswordField();
+        JPanel p = new JPanel(new GridLayout(0, 1, 8, 8));
+        p.setBorder(new EmptyBorder(10, 10, 10, 10));
+        p.add(new JLabel("Current master password:")); p.add(current);
+        p.add(new JLabel("New master password:"));     p.add(p1);
+        p.add(new JLabel("Confirm new password:"));    p.add(p2);
+        if (showConfirmWithIcon(frame, "Change Master Password", p) != JOptionPane.OK_OPTION) return;
+        char[] cur = current.getPassword(), n1 = p1.getPassword(), n2 = p2.getPassword();
+        boolean rewrapped = false, written = false;
+        try {
+            if (!Arrays.equals(cur, masterPassword)) { error("The current master password is wrong."); return; }
+            if (n1.length == 0 || !Arrays.equals(n1, n2)) { error("The new passwords do not match."); return; }
+            if (!mergeBeforeSave()) return;
+            spillHistory();
+            SecretKey sections = session.sectionKey(); // unwrapped with the old password
+            SectionKeys.rewrap(vaultPath, sections, n1);
+            rewrapped = true;
+            Kdf.Params kdf = Kdf.newParamsPBKDF2(new SecureRandom(), settings.pbkdf2Iters, 16);
+            data.lastModified = System.currentTimeMillis();
+            data.vaultRevision++;
+            writeVault(vaultPath, n1, kdf);
+            written = true;
+            SectionKeys.commitRewrap(vaultPath);
+            saveLedger(vaultPath);
+            saveIndexes();
+            pruneAttachments();
+            takeSnapshot();
+            markSynced();
+            session.setMasterPassword(n1.clone());
+            masterPassword = session.masterPassword;
+            dirty = false;
+            updateTitle();
+            info("Master password changed.");
+        } catch (Exception ex) {
+            String undo = "";
+            if (rewrapped && !written) {
+                // the vault is still under the old password: so must its section key be
+                try { SectionKeys.rollbackRewrap(vaultPath); }
+                catch (IOException rb) { undo = "\nThe section key file could not be restored either: " + rb.getMessage(); }
+            }
+            error("Could not change the master password: " + ex.getMessage() + undo);
+        } finally {
+            Arrays.fill(cur, '\0'); Arrays.fill(n1, '\0'); Arrays.fill(n2, '\0');
+        }
+    }
+
+    /** Local breached-password list used by Audit: a HIBP "ordered by hash" SHA-1 file or a filter made by breach-filter. */
+    private void chooseBreachList() {
+        String cur = prefs.get("breachList", "");
+        JFileChooser fc = new JFileChooser(!cur.isBlank() ? new File(cur).getParentFile() : lastDir != null ? lastDir.toFile() : null);
+        fc.setDialogTitle("Breached Password List (SHA-1 list or .bloom)");
+        if (fc.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+        Path p = fc.getSelectedFile().toPath();
+        try {
+            BreachList.open(p);
+            prefs.put("breachList", p.toString());
+            info("Audit will check passwords against:\n" + p);
+        } catch (Exception ex) {
+            error("Cannot use breach list: " + ex.getMessage());
+        }
+    }
+
     private void showHelp() {
         String html = """
                 <html>
@@ -420,8 +692,19 @@ public class VaultProApp {
                   <li>Click <b>Add</b> to create an entry (label, username, password, URL, tags).</li>
                   <li>Right‑click a row for <i>Copy Username/Password</i>, <i>Reveal</i>, or <i>Delete</i>.</li>
                   <li>Use the <b>Generator</b> for strong passwords (auto‑clears clipboard).</li>
-                  <li><b>Audit</b> flags weak, reused, and old passwords.</li>
-                  <li>Use <b>Vault → Save As…</b> to move your <code>.dat</code> file.</li>
+                  <li><b>Vault → TOTP Codes…</b> shows live one-time codes for the entries in view; double-click to copy.</li>
+                  <li><b>Audit</b> flags weak, reused, and old passwords; <b>Vault → Rotate Passwords…</b> replaces a whole group at once.</li>
+                  <li>The search box understands <code>tag:work</code>, <code>user:bob</code>, <code>url:*.example.com</code>,
+                      <code>weak</code>, <code>reused</code>, <code>old</code>, <code>fav</code>, <code>age&gt;180d</code>,
+                      <code>-term</code> to exclude and <code>OR</code> between alternatives.
+                      Plain words are matched fuzzily (typos allowed) and sorted best match first.</li>
+                  <li>Use <b>Vault → Save As…</b> to move your <code>.dat</code> file, and <b>Vault → Change Master Password…</b> to replace the password.</li>
+                  <li><b>Vault → Open Vault…</b> keeps the current vault unlocked; switch with <b>Vault → Switch Vault</b> and search all of them with <b>Ctrl+Shift+F</b>.</li>
+                  <li>Right-click an entry → <b>Attachments…</b> to keep key files or recovery codes with it (encrypted, outside the vault file).</li>
+                  <li>Every save keeps an encrypted restore point; <b>Vault → Restore Snapshot…</b> brings entries back from one.
+                      Restore points hold passwords as they were then and are kept for up to a year, or only as long as
+                      <b>Vault → History Retention…</b> keeps old passwords if that is shorter.</li>
+                  <li><b>Help → Diagnostics…</b> shows how long unlocking, saving, search and audit took in this session.</li>
                   <li>Press <b>Ctrl+S</b> to save, <b>Ctrl+O</b> to open another vault, <b>F1</b> for help.</li>
                 </ol>
                 <p>Your vault is end‑to‑end encrypted. The master password is never stored.</p>
@@ -430,6 +713,47 @@ public class VaultProApp {
         JOptionPane.showMessageDialog(frame, new JLabel(html), "Help", JOptionPane.INFORMATION_MESSAGE);
     }
 
+    /** Timings of this session (see {@link Metrics}); the same operations are Flight Recorder events. */
+    private void showDiagnostics() {
+        String[] cols = { "Operation", "Count", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms" };
+        DefaultTableModel m = new DefaultTableModel(cols, 0) {
+            @Override public boolean isCellEditable(int r, int c) { return false; }
+            @Override public Class<?> getColumnClass(int c) { return c == 0 ? String.class : c == 1 ? Long.class : Double.class; }
+        };
+        Runnable reload = () -> {
+            m.setRowCount(0);
+            for (Metrics.Stat s : Metrics.stats()) {
+                m.addRow(new Object[]{ s.operation(), s.count(), round(s.mean()), round(s.p50()), round(s.p90()), round(s.p99()), round(s.max()) });
+            }
+        };
+        reload.run();
+        JTable t = new JTable(m);
+        t.setAutoCreateRowSorter(true);
+        t.getColumnModel().getColumn(0).setPreferredWidth(180);
+
+        JButton refresh = new JButton("Refresh"), reset = new JButton("Reset");
+        refresh.addActionListener(e -> reload.run());
+        reset.addActionListener(e -> { Metrics.reset(); reload.run(); });
+        JLabel hint = new JLabel("<html>Percentiles are within 1/8. Flight Recorder: event <code>com.oogle.vaultpro.Operation</code>.</html>");
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 0));
+        buttons.add(refresh); buttons.add(reset);
+        JPanel south = new JPanel(new BorderLayout(6, 6));
+        south.setBorder(new EmptyBorder(6, 8, 6, 8));
+        south.add(hint, BorderLayout.CENTER);
+        south.add(buttons, BorderLayout.EAST);
+
+        JDialog dlg = new JDialog(frame, "Diagnostics", false);
+        dlg.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        dlg.add(new JScrollPane(t), BorderLayout.CENTER);
+        dlg.add(south, BorderLayout.SOUTH);
+        Resources.applyAppIcons(dlg);
+        dlg.setSize(720, 420);
+        dlg.setLocationRelativeTo(frame);
+        dlg.setVisible(true);
+    }
+
+    private static double round(double ms) { return Math.round(ms * 100) / 100.0; }
+
     private void showAbout() {
         String html = """
                 <html>
@@ -441,8 +765,7 @@ public class VaultProApp {
                 """;
         JOptionPane pane = new JOptionPane(new JLabel(html), JOptionPane.INFORMATION_MESSAGE, JOptionPane.DEFAULT_OPTION);
         JDialog dlg = pane.createDialog(frame, "About");
-        if (appIcons == null) appIcons = loadAppIcons();
-        if (!appIcons.isEmpty()) dlg.setIconImages(appIcons);
+        Resources.applyAppIcons(dlg);
         dlg.setResizable(true);
         dlg.setVisible(true);
     }
@@ -463,13 +786,13 @@ public class VaultProApp {
         return g;
     }
     private JButton iconButton(String resPath, String tooltip){
-        JButton b = new JButton(new FlatSVGIcon(resPath, 16,16));
+        JButton b = new JButton(Resources.svg(resPath, 16, 16));
         b.setToolTipText(tooltip);
         return b;
     }
 
     private static class StarRenderer extends DefaultTableCellRenderer {
-        private final Icon star = new FlatSVGIcon("icons/star.svg", 16,16);
+        private final Icon star = Resources.svg("icons/star.svg", 16, 16);
         @Override public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column){
             Component c = super.getTableCellRendererComponent(table, "", isSelected, hasFocus, row, column);
             setHorizontalAlignment(CENTER);
@@ -478,6 +801,12 @@ public class VaultProApp {
             return c;
         }
     }
+    private class FacetRenderer extends DefaultListCellRenderer {
+        @Override public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus){
+            String f = String.valueOf(value);
+            return super.getListCellRendererComponent(list, f + "  (" + facets.count(f) + ")", index, isSelected, cellHasFocus);
+        }
+    }
     private static class TagRenderer extends DefaultTableCellRenderer {
         @Override public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column){
             JLabel l = (JLabel) super.getTableCellRendererComponent(table, "", isSelected, hasFocus, row, column);
@@ -491,113 +820,303 @@ public class VaultProApp {
     /* ================== Filters ================== */
 
     private void refreshSidebar(){
+        if (session != null) Metrics.run("audit.facets", () -> facets.rebuild(data.entries, session.prints(), session.savedWeak()));
         sidebarModel.clear();
-        sidebarModel.addElement("All");
-        sidebarModel.addElement("Favorites");
-        sidebarModel.addElement("Weak");
-        sidebarModel.addElement("Reused");
-        sidebarModel.addElement("Old");
-        Set<String> tags = new TreeSet<>();
-        if (data != null) for (Entry e : data.entries) tags.addAll(e.tags);
-        for (String t : tags) sidebarModel.addElement("tag:" + t);
+        for (String f : FacetIndex.FIXED) sidebarModel.addElement(f);
+        for (String t : facets.tags()) sidebarModel.addElement(t);
         sidebar.setSelectedIndex(0);
     }
 
-    private void applySearchFilter(){
-        String q = search.getText().trim().toLowerCase();
-        String sel = sidebar.getSelectedValue();
-        AuditService.AuditResult audit = null;
-        if ("Weak".equals(sel) || "Reused".equals(sel) || "Old".equals(sel)) {
-            audit = new AuditService().run(data);
+    /** Repaints, inserts or drops only the sidebar items whose counts changed. */
+    private void updateFacets(Set<String> changed){
+        for (String f : changed) {
+            int i = sidebarModel.indexOf(f);
+            boolean live = FacetIndex.FIXED.contains(f) || facets.count(f) > 0;
+            if (i >= 0 && live) {
+                sidebarModel.set(i, f);
+            } else if (i >= 0) {
+                if (sidebar.getSelectedIndex() == i) sidebar.setSelectedIndex(0);
+                sidebarModel.remove(i);
+            } else if (live) {
+                int at = FacetIndex.FIXED.size();
+                while (at < sidebarModel.size() && String.CASE_INSENSITIVE_ORDER.compare(sidebarModel.get(at), f) < 0) at++;
+                sidebarModel.add(at, f);
+            }
         }
-        AuditService.AuditResult finalAudit = audit;
+    }
+
+    private void applySearchFilter(){ Metrics.run("search.filter", this::filterRows); }
+
+    private void filterRows(){
+        String sel = sidebar.getSelectedValue();
+        // live facet set: edits keep it current, so the filter stays valid across table refreshes
+        Set<Entry> only = (sel == null || FacetIndex.ALL.equals(sel)) ? null : facets.members(sel);
+        if (Query.isPlainText(search.getText())) { applyRankedFilter(search.getText(), only); return; }
+        clearRanking();
+        Predicate<Entry> q = Query.compile(search.getText(), facets, session::index);
+        if (only == null && q == null) { sorter.setRowFilter(null); return; }
+        Predicate<Entry> p = only == null ? q : q == null ? only::contains : e -> only.contains(e) && q.test(e);
         sorter.setRowFilter(new RowFilter<>(){
-            @Override public boolean include(Entry<? extends TableModel, ? extends Integer> ei){
-                int r = ei.getIdentifier();
-                String label = (String) model.getValueAt(r,1);
-                String user = (String) model.getValueAt(r,2);
-                String url = (String) model.getValueAt(r,3);
-                String tags = (String) model.getValueAt(r,4);
-                boolean matchesSearch = q.isEmpty() ||
-                        (label!=null && label.toLowerCase().contains(q)) ||
-                        (user!=null && user.toLowerCase().contains(q)) ||
-                        (url!=null && url.toLowerCase().contains(q)) ||
-                        (tags!=null && tags.toLowerCase().contains(q));
-                if (!matchesSearch) return false;
-
-                String s = sidebar.getSelectedValue();
-                if (s==null || "All".equals(s)) return true;
-                if ("Favorites".equals(s)) return Boolean.TRUE.equals(model.getValueAt(r,0));
-                if (s.startsWith("tag:")) {
-                    String t = s.substring(4).toLowerCase();
-                    return tags!=null && Arrays.stream(tags.split(",")).map(String::trim).anyMatch(x -> x.equalsIgnoreCase(t));
-                }
-                if (finalAudit != null) {
-                    com.oogle.vaultpro.model.Entry entry = data.entries.get(r);
-                    switch (s) {
-                        case "Weak" -> {
-                            return finalAudit.weak.contains(entry);
-                        }
-                        case "Reused" -> {
-                            for (var group : finalAudit.reused) if (group.contains(entry)) return true;
-                            return false;
-                        }
-                        case "Old" -> {
-                            return finalAudit.old.contains(entry);
-                        }
-                    }
-                }
-                return true;
+            @Override public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> ei){
+                return p.test(data.entries.get(ei.getIdentifier()));
+            }
+        });
+    }
+
+    /** Plain words: best fuzzy matches first, via the hidden rank column. */
+    private void applyRankedFilter(String text, Set<Entry> only){
+        int[] top = session.fuzzy().top(text, RANKED_LIMIT);
+        int[] r = new int[data.entries.size()];
+        Arrays.fill(r, Integer.MAX_VALUE);
+        for (int i = 0; i < top.length; i++) r[top[i]] = i;
+        rank = r;
+        sorter.setSortKeys(List.of(new RowSorter.SortKey(RANK_COL, SortOrder.ASCENDING)));
+        sorter.setRowFilter(new RowFilter<>(){
+            @Override public boolean include(RowFilter.Entry<? extends TableModel, ? extends Integer> ei){
+                int row = ei.getIdentifier();
+                return row < r.length && r[row] != Integer.MAX_VALUE && (only == null || only.contains(data.entries.get(row)));
             }
         });
     }
 
+    private void clearRanking(){
+        if (rank == null) return;
+        rank = null;
+        List<? extends RowSorter.SortKey> keys = sorter.getSortKeys();
+        if (!keys.isEmpty() && keys.get(0).getColumn() == RANK_COL) sorter.setSortKeys(null);
+    }
+
     /* ================== Data & dialogs ================== */
 
     private void refreshTable(){
-        model.setRowCount(0);
-        for (Entry e : data.entries) {
-            model.addRow(new Object[]{ e.favorite, e.label, e.username, e.url, String.join(",", e.tags) });
-        }
+        Metrics.run("table.refresh", () -> model.setEntries(data.entries));
     }
 
     private void showRowPopup(MouseEvent e, Entry entry){
         JPopupMenu m = new JPopupMenu();
-        JMenuItem copyUser = new JMenuItem("Copy Username", new FlatSVGIcon("icons/copy.svg",16,16));
-        JMenuItem copyPass = new JMenuItem("Copy Password", new FlatSVGIcon("icons/copy.svg",16,16));
+        JMenuItem copyUser = new JMenuItem("Copy Username", Resources.svg("icons/copy.svg", 16, 16));
+        JMenuItem copyPass = new JMenuItem("Copy Password", Resources.svg("icons/copy.svg", 16, 16));
         JMenuItem reveal = new JMenuItem("Reveal Password");
         JMenuItem totp = new JMenuItem("Copy TOTP (if set)");
+        JMenuItem files = new JMenuItem("Attachments…");
         JMenuItem delete = new JMenuItem("Delete");
-        m.add(copyUser); m.add(copyPass); m.add(reveal); m.add(totp); m.addSeparator(); m.add(delete);
+        m.add(copyUser); m.add(copyPass); m.add(reveal); m.add(totp); m.add(files); m.addSeparator(); m.add(delete);
         copyUser.addActionListener(a -> copyWithAutoClear(entry.username));
         copyPass.addActionListener(a -> copyWithAutoClear(entry.password));
         reveal.addActionListener(a -> JOptionPane.showMessageDialog(frame, entry.password, "Password", JOptionPane.INFORMATION_MESSAGE));
         totp.addActionListener(a -> copyTotp(entry.otpSecret));
-        delete.addActionListener(a -> { data.entries.remove(entry); refreshTable(); refreshSidebar(); markDirty(); });
+        files.addActionListener(a -> showAttachments(entry));
+        delete.addActionListener(a -> {
+            ledger.delete(entry.id, deviceId());
+            session.changes().remove(entry);
+        });
         m.show(table, e.getX(), e.getY());
     }
 
-    private void copyTotp(String base32){
-        if (base32 == null || base32.isBlank()) { info("No OTP secret set."); return; }
+    /** Files attached to one entry. Adding and saving run off the EDT; chunks stream through the store. */
+    private void showAttachments(Entry entry){
+        Workspace.Session owner = session;
+        AttachmentStore store = owner.attachments();
+        DefaultListModel<AttachmentStore.Attachment> items = new DefaultListModel<>();
+        Runnable reload = () -> {
+            items.clear();
+            try { store.of(entry).forEach(items::addElement); }
+            catch (Exception ex) { error("Could not read attachments: " + ex.getMessage()); }
+        };
+        JList<AttachmentStore.Attachment> list = new JList<>(items);
+        list.setCellRenderer(new DefaultListCellRenderer(){
+            @Override public Component getListCellRendererComponent(JList<?> l, Object v, int i, boolean sel, boolean focus){
+                AttachmentStore.Attachment a = (AttachmentStore.Attachment) v;
+                return super.getListCellRendererComponent(l, a.name() + "  (" + sizeText(a.size()) + ")", i, sel, focus);
+            }
+        });
+        JButton add = new JButton("Add…"), export = new JButton("Save As…"), remove = new JButton("Remove");
+        JLabel status = new JLabel("Files are encrypted and stored next to the vault, outside the vault file.");
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 0));
+        buttons.add(add); buttons.add(export); buttons.add(remove);
+        JPanel south = new JPanel(new BorderLayout(6, 6));
+        south.setBorder(new EmptyBorder(6, 8, 6, 8));
+        south.add(status, BorderLayout.CENTER);
+        south.add(buttons, BorderLayout.EAST);
+
+        JDialog dlg = new JDialog(frame, "Attachments — " + entry.label, true);
+        dlg.add(new JScrollPane(list), BorderLayout.CENTER);
+        dlg.add(south, BorderLayout.SOUTH);
+        Resources.applyAppIcons(dlg);
+
+        Consumer<String> busy = msg -> {
+            boolean idle = msg == null;
+            add.setEnabled(idle); export.setEnabled(idle); remove.setEnabled(idle);
+            dlg.setCursor(idle ? Cursor.getDefaultCursor() : Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            if (!idle) status.setText(msg);
+        };
+        add.addActionListener(a -> {
+            JFileChooser fc = new JFileChooser(lastDir != null ? lastDir.toFile() : new File(System.getProperty("user.home")));
+            if (fc.showOpenDialog(dlg) != JFileChooser.APPROVE_OPTION) return;
+            Path src = fc.getSelectedFile().toPath();
+            busy.accept("Encrypting " + src.getFileName() + "…");
+            new SwingWorker<AttachmentStore.Attachment, Void>(){
+                @Override protected AttachmentStore.Attachment doInBackground() throws Exception {
+                    owner.ensureSectionKey(); // a vault from before side sections gets its key with its first attachment
+                    return store.add(entry, src);
+                }
+                @Override protected void done(){
+                    busy.accept(null);
+                    try { status.setText("Added " + get().name() + "."); }
+                    catch (Exception ex) { status.setText("Add failed: " + rootMessage(ex)); }
+                    reload.run();
+                }
+            }.execute();
+        });
+        export.addActionListener(a -> {
+            AttachmentStore.Attachment sel = list.getSelectedValue();
+            if (sel == null) return;
+            JFileChooser fc = new JFileChooser(lastDir != null ? lastDir.toFile() : new File(System.getProperty("user.home")));
+            fc.setSelectedFile(new File(fc.getCurrentDirectory(), sel.name()));
+            if (fc.showSaveDialog(dlg) != JFileChooser.APPROVE_OPTION) return;
+            Path dst = fc.getSelectedFile().toPath();
+            busy.accept("Decrypting " + sel.name() + "…");
+            new SwingWorker<Void, Void>(){
+                @Override protected Void doInBackground() throws Exception { store.export(sel, dst); return null; }
+                @Override protected void done(){
+                    busy.accept(null);
+                    try { get(); status.setText("Saved to " + dst + "."); }
+                    catch (Exception ex) { status.setText("Save failed: " + rootMessage(ex)); }
+                }
+            }.execute();
+        });
+        remove.addActionListener(a -> {
+            AttachmentStore.Attachment sel = list.getSelectedValue();
+            if (sel == null) return;
+            try {
+                store.remove(entry, sel);
+                status.setText("Removed " + sel.name() + " (its data is deleted on the next save).");
+            } catch (Exception ex) {
+                error("Could not remove: " + ex.getMessage());
+            }
+            reload.run();
+        });
+        reload.run();
+        dlg.setSize(560, 340);
+        dlg.setLocationRelativeTo(frame);
+        dlg.setVisible(true);
+    }
+
+    private static String sizeText(long bytes){
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    private static String rootMessage(Throwable t){
+        while (t.getCause() != null) t = t.getCause();
+        return t.getMessage();
+    }
+
+    private void copyTotp(String secret){
+        if (!TotpEngine.isSet(secret)) { info("No OTP secret set."); return; }
         try {
-            int code = TotpUtil.totp(base32, System.currentTimeMillis(), 30, 6);
-            copyWithAutoClear(String.format("%06d", code));
-            info("TOTP copied to clipboard.");
+            TotpEngine.Code c = totp.code(secret, System.currentTimeMillis());
+            copyWithAutoClear(c.code());
+            info("TOTP copied to clipboard (" + c.secondsLeft() + "s left).");
         } catch (Exception ex) {
             error("TOTP error: " + ex.getMessage());
         }
     }
 
+    /**
+     * Non-modal list of the codes of every visible entry with an OTP secret. Codes are refreshed at the
+     * earliest rollover among them, not every second, so the last column shows when each one expires.
+     */
+    private void showTotpPanel(){
+        if (totpDialog != null) { totpDialog.toFront(); return; }
+        List<Entry> shown = new ArrayList<>();
+        DefaultTableModel codes = new DefaultTableModel(new Object[]{"Label", "Code", "Until"}, 0) {
+            @Override public boolean isCellEditable(int r, int c){ return false; }
+        };
+        JTable t = new JTable(codes);
+        t.setRowHeight(26);
+        t.getColumnModel().getColumn(1).setCellRenderer(new DefaultTableCellRenderer(){{
+            setFont(new Font(Font.MONOSPACED, Font.BOLD, 14));
+        }});
+        t.getColumnModel().getColumn(2).setMaxWidth(80);
+
+        DateTimeFormatter clock = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+        Future<?>[] rollover = { null };
+        Runnable[] tick = { null };
+        tick[0] = () -> {
+            long now = System.currentTimeMillis(), next = Long.MAX_VALUE;
+            for (int i = 0; i < shown.size(); i++) {
+                String code, until;
+                try {
+                    TotpEngine.Code c = totp.code(shown.get(i).otpSecret, now); // HMAC only when the step rolls over
+                    long end = (now / 1000 + c.secondsLeft()) * 1000;
+                    code = c.code(); until = clock.format(Instant.ofEpochMilli(end));
+                    next = Math.min(next, end);
+                } catch (Exception ex) {
+                    code = "invalid"; until = "";
+                }
+                if (!code.equals(codes.getValueAt(i, 1))) codes.setValueAt(code, i, 1);
+                if (!until.equals(codes.getValueAt(i, 2))) codes.setValueAt(until, i, 2);
+            }
+            if (rollover[0] != null) rollover[0].cancel(false);
+            // just after the boundary, so the new step is current when it runs
+            rollover[0] = next == Long.MAX_VALUE || lifecycle == null ? null : lifecycle.at(next + 5, tick[0]);
+        };
+        Runnable reload = () -> {
+            if (data == null || totpDialog == null) return; // locked or closed while a reload was queued
+            shown.clear();
+            for (int v = 0; v < table.getRowCount(); v++) {
+                Entry e = data.entries.get(table.convertRowIndexToModel(v));
+                if (TotpEngine.isSet(e.otpSecret)) shown.add(e);
+            }
+            codes.setRowCount(0);
+            for (Entry e : shown) codes.addRow(new Object[]{ e.label, "", "" });
+            tick[0].run();
+        };
+        boolean[] queued = { false };
+        javax.swing.event.RowSorterListener follow = ev -> { // a batch of edits fires one event per row; reload once
+            if (queued[0]) return;
+            queued[0] = true;
+            SwingUtilities.invokeLater(() -> { queued[0] = false; reload.run(); });
+        };
+        sorter.addRowSorterListener(follow);
+
+        t.addMouseListener(new MouseAdapter(){
+            @Override public void mouseClicked(MouseEvent e){
+                int v = t.getSelectedRow();
+                if (e.getClickCount() == 2 && v >= 0) copyTotp(shown.get(t.convertRowIndexToModel(v)).otpSecret);
+            }
+        });
+
+        JLabel hint = new JLabel("Double-click a row to copy its code. Follows the main list's search and filters.");
+        hint.setBorder(new EmptyBorder(6,8,6,8));
+        totpDialog = new JDialog(frame, "TOTP Codes", false);
+        totpDialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        totpDialog.add(new JScrollPane(t), BorderLayout.CENTER);
+        totpDialog.add(hint, BorderLayout.SOUTH);
+        Resources.applyAppIcons(totpDialog);
+        totpDialog.addWindowListener(new java.awt.event.WindowAdapter(){
+            @Override public void windowClosed(java.awt.event.WindowEvent e){
+                if (rollover[0] != null) rollover[0].cancel(false);
+                sorter.removeRowSorterListener(follow);
+                totpDialog = null;
+                if (data != null) totp.retain(data.entries.stream().map(x -> x.otpSecret).filter(TotpEngine::isSet).toList());
+            }
+        });
+        reload.run();
+        totpDialog.setSize(420, 360);
+        totpDialog.setLocationRelativeTo(frame);
+        totpDialog.setVisible(true);
+    }
+
     private void addEntryDialog(){
         Entry e = new Entry();
         e.id = UUID.randomUUID().toString();
         e.createdAt = e.updatedAt = System.currentTimeMillis();
         editEntryDialog(e);
         if (!data.entries.contains(e) && e.label != null) {
-            data.entries.add(e);
-            refreshTable();
-            refreshSidebar();
-            markDirty();
+            session.changes().add(e);
         }
     }
 
@@ -636,7 +1155,7 @@ public class VaultProApp {
         form.add(new JLabel("Password:"), gbc(g,2,1,1,1,0,GridBagConstraints.HORIZONTAL));
         form.add(pw,                      gbc(g,3,1,1,1,1,GridBagConstraints.HORIZONTAL));
 
-        form.add(new JLabel("OTP Secret (Base32):"), gbc(g,0,2,1,1,0,GridBagConstraints.HORIZONTAL));
+        form.add(new JLabel("OTP Secret (Base32 or otpauth://):"), gbc(g,0,2,1,1,0,GridBagConstraints.HORIZONTAL));
         form.add(otp,                             gbc(g,1,2,1,1,1,GridBagConstraints.HORIZONTAL));
         form.add(new JLabel("Tags (comma-separated):"), gbc(g,2,2,1,1,0,GridBagConstraints.HORIZONTAL));
         form.add(tags,                                gbc(g,3,2,1,1,1,GridBagConstraints.HORIZONTAL));
@@ -646,8 +1165,19 @@ public class VaultProApp {
         notesScroll.setPreferredSize(new Dimension(0, 140));
         form.add(notesScroll,          gbc(g,0,4,4,1,1,GridBagConstraints.BOTH));
 
+        JLabel strength = new JLabel();
+        pw.getDocument().addDocumentListener(new DocumentListener() {
+            void run(){ showStrength(strength, pw.getPassword()); }
+            @Override public void insertUpdate(DocumentEvent ev){ run(); }
+            @Override public void removeUpdate(DocumentEvent ev){ run(); }
+            @Override public void changedUpdate(DocumentEvent ev){ run(); }
+        });
+        showStrength(strength, pw.getPassword());
+
         JPanel favRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
         favRow.add(fav);
+        favRow.add(Box.createHorizontalStrut(24));
+        favRow.add(strength);
         form.add(favRow, gbc(g,0,5,4,1,0,GridBagConstraints.HORIZONTAL));
 
         JScrollPane scroller = new JScrollPane(form);
@@ -657,8 +1187,7 @@ public class VaultProApp {
 
         JOptionPane pane = new JOptionPane(scroller, JOptionPane.PLAIN_MESSAGE, JOptionPane.OK_CANCEL_OPTION);
         JDialog dlg = pane.createDialog(frame, "Edit Entry");
-        if (appIcons == null) appIcons = loadAppIcons();
-        if (!appIcons.isEmpty()) dlg.setIconImages(appIcons);
+        Resources.applyAppIcons(dlg);
         dlg.setResizable(true);
         dlg.pack();
         dlg.setSize(new Dimension(Math.max(820, dlg.getWidth()),
@@ -670,6 +1199,8 @@ public class VaultProApp {
         if (!(res instanceof Integer) || ((Integer) res) != JOptionPane.OK_OPTION) return;
 
         String newPw = new String(pw.getPassword());
+        if (!newPw.equals(e.password) && !confirmPasswordReuse(e, newPw)) return;
+        VaultChanges.Snapshot before = VaultChanges.Snapshot.of(e);
         if (e.password != null && !e.password.equals(newPw)) {
             Entry.PasswordHistory h = new Entry.PasswordHistory();
             h.password = e.password; h.changedAt = System.currentTimeMillis();
@@ -684,11 +1215,38 @@ public class VaultProApp {
         e.tags = Arrays.stream(tags.getText().split(",")).map(String::trim).filter(s->!s.isEmpty()).collect(Collectors.toList());
         e.notes = notes.getText();
         e.favorite = fav.isSelected();
+        int mask = before.diff(e);
+        if (mask == 0) return; // OK without edits
         e.updatedAt = System.currentTimeMillis();
+        ledger.touch(e.id, deviceId());
+        session.changes().changed(e, mask);
+    }
 
-        refreshTable();
-        refreshSidebar();
-        markDirty();
+    /** Warns when a new password is in use elsewhere, or was used before, in this vault. */
+    private boolean confirmPasswordReuse(Entry e, String newPw){
+        try {
+            session.loadHistory();
+        } catch (Exception ex) {
+            if (statusLabel != null) statusLabel.setText("Password history not loaded: " + ex.getMessage());
+        }
+        PasswordFingerprints prints = session.prints();
+        Set<String> others = prints.usedElsewhere(newPw, e.id);
+        boolean ownHistory = prints.usedBefore(newPw, e.id);
+        if (others.isEmpty() && !ownHistory) return true;
+        StringBuilder msg = new StringBuilder();
+        if (ownHistory) msg.append("This entry used this password before.\n");
+        if (!others.isEmpty()) {
+            msg.append("This password is (or was) used by:\n");
+            int shown = 0;
+            for (Entry o : data.entries) {
+                if (!others.contains(o.id)) continue;
+                if (shown++ == 8) { msg.append("  …\n"); break; }
+                msg.append("  • ").append(o.label).append("\n");
+            }
+        }
+        msg.append("\nSave it anyway?");
+        return JOptionPane.showConfirmDialog(frame, msg.toString(), "Password reuse",
+                JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) == JOptionPane.YES_OPTION;
     }
 
     // === Password Generator dialog ===
@@ -726,23 +1284,240 @@ public class VaultProApp {
         }
     }
 
+    private static final String[] STRENGTH_NAMES = { "very weak", "weak", "fair", "good", "strong" };
+
+    private static void showStrength(JLabel l, char[] pw){
+        int score = StrengthEstimator.score(java.nio.CharBuffer.wrap(pw));
+        Arrays.fill(pw, '\0');
+        l.setText("Strength: " + score + "/4 (" + STRENGTH_NAMES[score] + ")");
+        l.setForeground(score <= StrengthEstimator.WEAK_MAX_SCORE ? new Color(0xE06C75) : UIManager.getColor("Label.foreground"));
+    }
+
+    // === Bulk rotation ===
+    private void showRotation() {
+        List<Entry> selected = new ArrayList<>(), visible = new ArrayList<>();
+        for (int v : table.getSelectedRows()) selected.add(data.entries.get(table.convertRowIndexToModel(v)));
+        for (int v = 0; v < table.getRowCount(); v++) visible.add(data.entries.get(table.convertRowIndexToModel(v)));
+        Map<String, Collection<Entry>> scopes = new LinkedHashMap<>();
+        scopes.put("Weak", facets.members(FacetIndex.WEAK));
+        scopes.put("Reused", facets.members(FacetIndex.REUSED));
+        scopes.put("Old", facets.members(FacetIndex.OLD));
+        scopes.put("Weak, reused or old", concat(facets.members(FacetIndex.WEAK), facets.members(FacetIndex.REUSED), facets.members(FacetIndex.OLD)));
+        scopes.put("Selected rows", selected);
+        scopes.put("Visible rows", visible);
+        JComboBox<String> scope = new JComboBox<>(scopes.keySet().stream()
+                .map(k -> k + " (" + scopes.get(k).size() + ")").toArray(String[]::new));
+        scope.setSelectedIndex(selected.isEmpty() ? 3 : 4);
+
+        JSpinner len = new JSpinner(new SpinnerNumberModel(20, 8, 64, 1));
+        JCheckBox upper = new JCheckBox("Uppercase", true);
+        JCheckBox lower = new JCheckBox("Lowercase", true);
+        JCheckBox digits = new JCheckBox("Digits", true);
+        JCheckBox symbols = new JCheckBox("Symbols", true);
+        JCheckBox noAmbiguous = new JCheckBox("Avoid look-alike characters (l, 1, O, 0…)", false);
+
+        JPanel p = new JPanel(new GridLayout(0, 1, 8, 8));
+        p.setBorder(new EmptyBorder(10, 10, 10, 10));
+        p.add(new JLabel("Rotate:"));
+        p.add(scope);
+        p.add(new JLabel("New password length:"));
+        p.add(len);
+        p.add(upper); p.add(lower); p.add(digits); p.add(symbols); p.add(noAmbiguous);
+        if (showConfirmWithIcon(frame, "Rotate Passwords", p) != JOptionPane.OK_OPTION) return;
+
+        List<Entry> targets = new ArrayList<>(new ArrayList<>(scopes.values()).get(scope.getSelectedIndex())); // facet sets are live
+        if (targets.isEmpty()) { info("Nothing to rotate."); return; }
+        BatchGenerator.Policy policy;
+        try {
+            policy = new BatchGenerator.Policy((int) len.getValue(), upper.isSelected() ? 1 : -1, lower.isSelected() ? 1 : -1,
+                    digits.isSelected() ? 1 : -1, symbols.isSelected() ? 1 : -1, noAmbiguous.isSelected());
+        } catch (IllegalArgumentException ex) {
+            error(ex.getMessage()); return;
+        }
+        int ok = JOptionPane.showConfirmDialog(frame, "Replace the passwords of " + targets.size() + " entries?\n"
+                + "Old passwords are kept in each entry's history. Remember to change them on the sites too.",
+                "Rotate Passwords", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
+        if (ok != JOptionPane.OK_OPTION) return;
+
+        PasswordRotation.Result r = PasswordRotation.rotate(targets, new BatchGenerator(), policy, System.currentTimeMillis());
+        session.changes().batch(() -> {
+            for (Entry e : r.rotated()) {
+                ledger.touch(e.id, deviceId());
+                session.changes().changed(e, VaultChanges.PASSWORD);
+            }
+        });
+        boolean saved = saveVaultSilently();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Rotated: ").append(r.rotated().size()).append("\n");
+        if (!r.skipped().isEmpty()) sb.append("Skipped (no password): ").append(r.skipped().size()).append("\n");
+        sb.append(saved ? "Vault saved.\n" : "Not saved yet — use Save.\n");
+        sb.append("\nChange these on their sites:\n");
+        for (Entry e : r.rotated()) sb.append("  • ").append(e.label).append(e.url == null || e.url.isBlank() ? "" : "  (" + e.url + ")").append("\n");
+        JTextArea area = new JTextArea(sb.toString(), 16, 60);
+        area.setEditable(false);
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JOptionPane.showMessageDialog(frame, new JScrollPane(area), "Rotation Summary", JOptionPane.INFORMATION_MESSAGE);
+        if (statusLabel != null) statusLabel.setText("Rotated " + r.rotated().size() + " passwords");
+    }
+
+    private void showHistoryRetention() {
+        HistoryPolicy cur = session.history().policy();
+        JCheckBox keepAll = new JCheckBox("Keep all old passwords", cur.isUnlimited());
+        JSpinner count = new JSpinner(new SpinnerNumberModel(cur.isUnlimited() ? 20 : Math.min(cur.maxCount(), 500), 1, 500, 1));
+        JSpinner days = new JSpinner(new SpinnerNumberModel(cur.isUnlimited() ? 730 : Math.min(cur.maxAgeDays(), 36500), 1, 36500, 30));
+        Runnable limits = () -> { count.setEnabled(!keepAll.isSelected()); days.setEnabled(!keepAll.isSelected()); };
+        keepAll.addActionListener(a -> limits.run());
+        limits.run();
+        JPanel p = new JPanel(new GridLayout(0, 1, 8, 8));
+        p.setBorder(new EmptyBorder(10, 10, 10, 10));
+        p.add(keepAll);
+        p.add(new JLabel("Old passwords kept per entry (at most):"));
+        p.add(count);
+        p.add(new JLabel("Forget old passwords after (days):"));
+        p.add(days);
+        p.add(new JLabel("<html><small>The most recent old password is always kept. Restore points older than<br>the age limit are removed too.</small></html>"));
+        if (showConfirmWithIcon(frame, "History Retention", p) != JOptionPane.OK_OPTION) return;
+
+        HistoryPolicy policy = keepAll.isSelected() ? HistoryPolicy.UNLIMITED : new HistoryPolicy((int) count.getValue(), (int) days.getValue());
+        policy.save(prefs);
+        workspace.setHistoryPolicy(policy);
+        try {
+            session.loadHistory();
+            int dropped = session.history().compact(data.entries, System.currentTimeMillis());
+            if (dropped > 0) {
+                session.prints().reset(data.entries);
+                markDirty();
+            }
+            info(dropped == 0 ? "Nothing to remove." : "Removed " + dropped + " old passwords (written on the next save).");
+        } catch (Exception ex) {
+            error("Could not apply retention: " + ex.getMessage());
+        }
+    }
+
+    private void showSnapshots() {
+        List<SnapshotStore.Snapshot> all;
+        try {
+            all = session.snapshots().list();
+        } catch (Exception ex) {
+            error("Could not list snapshots: " + ex.getMessage()); return;
+        }
+        if (all.isEmpty()) { info("No snapshots yet. One is taken every time the vault is saved."); return; }
+        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+        JList<SnapshotStore.Snapshot> list = new JList<>(all.toArray(new SnapshotStore.Snapshot[0]));
+        list.setCellRenderer(new DefaultListCellRenderer(){
+            @Override public Component getListCellRendererComponent(JList<?> l, Object v, int i, boolean sel, boolean focus){
+                SnapshotStore.Snapshot s = (SnapshotStore.Snapshot) v;
+                return super.getListCellRendererComponent(l, fmt.format(Instant.ofEpochMilli(s.at())) + "   (revision " + s.revision() + ")", i, sel, focus);
+            }
+        });
+        list.setSelectedIndex(0);
+        JScrollPane scroller = new JScrollPane(list);
+        scroller.setPreferredSize(new Dimension(380, 260));
+        JPanel p = new JPanel(new BorderLayout(8, 8));
+        p.setBorder(new EmptyBorder(10, 10, 10, 10));
+        p.add(new JLabel("Restore the entries as they were at:"), BorderLayout.NORTH);
+        p.add(scroller, BorderLayout.CENTER);
+        p.add(new JLabel("<html><small>Unsaved changes are replaced. Save afterwards to keep the restored state.</small></html>"), BorderLayout.SOUTH);
+        if (showConfirmWithIcon(frame, "Restore Snapshot", p) != JOptionPane.OK_OPTION || list.getSelectedValue() == null) return;
+
+        VaultData then;
+        try {
+            then = session.snapshots().restore(list.getSelectedValue());
+        } catch (Exception ex) {
+            error("Could not read the snapshot: " + ex.getMessage()); return;
+        }
+        Map<String, Entry> byId = new LinkedHashMap<>();
+        for (Entry e : then.entries) byId.put(e.id, e);
+        int[] counts = new int[3]; // restored, changed back, removed
+        VaultChanges changes = session.changes();
+        changes.batch(() -> {
+            for (Entry e : new ArrayList<>(data.entries)) {
+                if (byId.containsKey(e.id)) continue;
+                ledger.delete(e.id, deviceId());
+                changes.remove(e);
+                counts[2]++;
+            }
+            for (int i = 0; i < data.entries.size(); i++) {
+                Entry now = data.entries.get(i), was = byId.remove(now.id);
+                if (VaultChanges.Snapshot.of(now).diff(was) == 0 && now.updatedAt == was.updatedAt) continue;
+                ledger.touch(was.id, deviceId());
+                changes.replace(i, was);
+                counts[1]++;
+            }
+            for (Entry e : byId.values()) {
+                ledger.touch(e.id, deviceId());
+                changes.add(e);
+                counts[0]++;
+            }
+        });
+        if (statusLabel != null) statusLabel.setText("Snapshot restored: +" + counts[0] + " ~" + counts[1] + " -" + counts[2]);
+    }
+
+    @SafeVarargs
+    private static Collection<Entry> concat(Set<Entry>... sets){
+        Set<Entry> all = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Set<Entry> s : sets) all.addAll(s);
+        return all;
+    }
+
     // === Security Audit dialog ===
     private void runAudit() {
+        Metrics.Timer timer = Metrics.start("audit.report");
         AuditService.AuditResult r = new AuditService().run(data);
+        List<Entry> weak = data.entries.parallelStream().filter(e -> StrengthEstimator.isWeak(e.password)).toList();
+        Map<String, Entry> byId = new HashMap<>();
+        for (Entry e : data.entries) byId.put(e.id, e);
+        List<List<Entry>> reused = new ArrayList<>();
+        for (Set<String> ids : session.prints().reusedGroups()) {
+            reused.add(ids.stream().map(byId::get).filter(Objects::nonNull)
+                    .sorted(Comparator.comparing(e -> e.label == null ? "" : e.label, String.CASE_INSENSITIVE_ORDER)).toList());
+        }
+        BreachList.Result breach = null;
+        String breachError = null;
+        String breachPath = prefs.get("breachList", "");
+        if (!breachPath.isBlank()) {
+            try {
+                session.loadHistory();
+                breach = BreachList.open(Paths.get(breachPath)).check(data, session::fullHistory);
+            }
+            catch (Exception ex) { breachError = ex.getMessage(); }
+        }
+        timer.stop();
 
         StringBuilder sb = new StringBuilder();
-        sb.append("Weak passwords: ").append(r.weak.size()).append("\n");
-        sb.append("Reused groups: ").append(r.reused.size()).append("\n");
-        sb.append("Old passwords (>180 days): ").append(r.old.size()).append("\n\n");
+        sb.append("Weak passwords (score ≤ ").append(StrengthEstimator.WEAK_MAX_SCORE).append(" of 4): ").append(weak.size()).append("\n");
+        sb.append("Reused groups: ").append(reused.size()).append("\n");
+        sb.append("Old passwords (>180 days): ").append(r.old.size()).append("\n");
+        if (breach != null) {
+            sb.append("Breached passwords: ").append(breach.breached.size())
+              .append(" (in history: ").append(breach.breachedHistory.size()).append(")\n");
+        } else if (breachError != null) {
+            sb.append("Breach check failed: ").append(breachError).append("\n");
+        } else {
+            sb.append("Breach check: off (Vault → Breach List…)\n");
+        }
+        sb.append("\n");
+
+        if (breach != null && !breach.breached.isEmpty()) {
+            sb.append("Breached:\n");
+            for (Entry e : breach.breached) sb.append("  • ").append(e.label).append("\n");
+            sb.append("\n");
+        }
+        if (breach != null && !breach.breachedHistory.isEmpty()) {
+            sb.append("Breached (old passwords in history):\n");
+            for (Entry e : breach.breachedHistory) sb.append("  • ").append(e.label).append("\n");
+            sb.append("\n");
+        }
 
-        if (!r.weak.isEmpty()) {
+        if (!weak.isEmpty()) {
             sb.append("Weak:\n");
-            for (Entry e : r.weak) sb.append("  • ").append(e.label).append("\n");
+            for (Entry e : weak) sb.append("  • ").append(e.label).append("  (").append(StrengthEstimator.score(e.password)).append("/4)\n");
             sb.append("\n");
         }
-        if (!r.reused.isEmpty()) {
+        if (!reused.isEmpty()) {
             sb.append("Reused:\n");
-            for (var group : r.reused) {
+            for (var group : reused) {
                 sb.append("  • ");
                 for (int i = 0; i < group.size(); i++) {
                     sb.append(group.get(i).label);
@@ -757,6 +1532,9 @@ public class VaultProApp {
             for (Entry e : r.old) sb.append("  • ").append(e.label).append("\n");
             sb.append("\n");
         }
+        if (!weak.isEmpty() || !reused.isEmpty() || !r.old.isEmpty()) {
+            sb.append("Fix them in one go with Vault → Rotate Passwords…\n");
+        }
 
         JTextArea area = new JTextArea(sb.toString(), 18, 60);
         area.setEditable(false);
@@ -765,12 +1543,11 @@ public class VaultProApp {
 
         JOptionPane pane = new JOptionPane(sp, JOptionPane.INFORMATION_MESSAGE, JOptionPane.DEFAULT_OPTION);
         JDialog dlg = pane.createDialog(frame, "Audit Report");
-        if (appIcons == null) appIcons = loadAppIcons();
-        if (!appIcons.isEmpty()) dlg.setIconImages(appIcons);
+        Resources.applyAppIcons(dlg);
         dlg.setResizable(true);
         dlg.setVisible(true);
 
-        if (statusLabel != null) statusLabel.setText("Audit: weak=" + r.weak.size() + ", reused=" + r.reused.size() + ", old=" + r.old.size());
+        if (statusLabel != null) statusLabel.setText("Audit: weak=" + weak.size() + ", reused=" + reused.size() + ", old=" + r.old.size());
         applySearchFilter();
     }
 
@@ -778,11 +1555,18 @@ public class VaultProApp {
     /* ================== Dirty/save/close ================== */
 
     private void saveVault(){
+        if (!mergeBeforeSave()) return;
+        spillHistory();
         try {
             data.lastModified = System.currentTimeMillis();
             data.vaultRevision++;
             Kdf.Params kdf = Kdf.newParamsPBKDF2(new SecureRandom(), settings.pbkdf2Iters, 16);
-            store.saveV2(vaultPath, masterPassword, data, kdf);
+            writeVault(vaultPath, masterPassword, kdf);
+            saveLedger(vaultPath);
+            saveIndexes();
+            pruneAttachments();
+            takeSnapshot();
+            markSynced();
             dirty = false;
             updateTitle();
             info("Vault saved.");
@@ -791,12 +1575,30 @@ public class VaultProApp {
         }
     }
 
+    /** Moves older password history into its own section so the vault file only carries the newest item. */
+    private void spillHistory(){
+        try {
+            session.ensureSectionKey(); // first save of a vault from before side sections
+            session.history().spill(data.entries, ledger != null ? ledger.tombstones.keySet() : Set.of(), System.currentTimeMillis());
+        } catch (Exception ex) {
+            // nothing was moved: the history stays in the vault file this time
+            if (statusLabel != null) statusLabel.setText("History section not written: " + ex.getMessage());
+        }
+    }
+
     private boolean saveVaultSilently(){
+        if (!mergeBeforeSave()) return false;
+        spillHistory();
         try {
             data.lastModified = System.currentTimeMillis();
             data.vaultRevision++;
             Kdf.Params kdf = Kdf.newParamsPBKDF2(new SecureRandom(), settings.pbkdf2Iters, 16);
-            store.saveV2(vaultPath, masterPassword, data, kdf);
+            writeVault(vaultPath, masterPassword, kdf);
+            saveLedger(vaultPath);
+            saveIndexes();
+            pruneAttachments();
+            takeSnapshot();
+            markSynced();
             dirty = false;
             updateTitle();
             return true;
@@ -820,16 +1622,213 @@ public class VaultProApp {
         } else return choice == JOptionPane.NO_OPTION;
     }
 
+    /** Walks every unlocked vault with unsaved changes through the save prompt. */
+    private boolean confirmCloseAll(){
+        stashSession();
+        for (Workspace.Session s : workspace.sessions()) {
+            if (!s.dirty) continue;
+            switchTo(s);
+            if (!confirmCloseIfDirty()) return false;
+            stashSession();
+        }
+        return true;
+    }
+
+    /** Window close and Vault → Exit: the session's listener, tasks and copied secret go with the window. */
+    private void exitApp(){
+        if (!confirmCloseAll()) return;
+        stopWatcher();
+        endLifecycle();
+        frame.dispose();
+    }
+
     private void lock(){
-        if (!confirmCloseIfDirty()) return;
+        if (!confirmCloseAll()) return;
+        stopWatcher();
+        endLifecycle();
         if (frame != null) frame.dispose();
-        if (idleTimer != null) idleTimer.stop();
-        if (masterPassword != null) Arrays.fill(masterPassword, '\0');
-        masterPassword = null; data = null;
+        workspace.closeAll(); // wipes every session's master password
+        totp.clear();
+        masterPassword = null; data = null; session = null; ledger = null;
         unlockExisting();
     }
 
-    private void markDirty(){ dirty = true; updateTitle(); }
+    private void endLifecycle(){
+        if (lifecycle != null) lifecycle.close();
+        lifecycle = null;
+    }
+
+    /* ================== External changes ================== */
+
+    /**
+     * Watches the active vault, then merges anything written since it was last read or written here, e.g.
+     * while another vault was active.
+     */
+    private void startWatcher(){
+        if (ledger == null) ledger = readLedger(vaultPath);
+        if (ledger == null) ledger = new SyncLedger(); // clocks restart from "equal everywhere"
+        ledger.adopt(data.entries);
+        try {
+            watcher = new VaultWatcher(vaultPath, () -> SwingUtilities.invokeLater(this::mergeExternalChanges));
+        } catch (Exception ex) {
+            watcher = null; // not fatal: saves still compare the file's stamp and merge, we just aren't notified live
+        }
+        mergeExternalChanges();
+    }
+
+    private void stopWatcher(){
+        if (watcher != null) watcher.close();
+        watcher = null;
+    }
+
+    /** The active vault's file is now exactly {@code data} (just written or created). */
+    private void markSynced(){
+        session.syncBase = VaultMerger.snapshot(data);
+        session.seen = VaultWatcher.Stamp.of(vaultPath);
+    }
+
+    /** The ledger saved with the active vault's file, or null if there is none this device can read. */
+    private SyncLedger readLedger(Path path){
+        try {
+            return DeltaSync.loadLedger(path, session.sectionKey());
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /** The ledger travels with the vault file; write it right after the vault itself, stamped with its revision. */
+    private void saveLedger(Path path){
+        if (ledger == null) return;
+        try {
+            ledger.vaultRevision = data.vaultRevision;
+            DeltaSync.saveLedger(path, session.sectionKey(), ledger);
+        } catch (Exception ex) {
+            if (statusLabel != null) statusLabel.setText("Saved, but sync metadata could not be written: " + ex.getMessage());
+        }
+    }
+
+    /** Large vaults keep their search and audit indexes next to the vault file; written right after it, like the ledger. */
+    private void saveIndexes(){
+        if (session == null) return;
+        try {
+            Metrics.run("index.save", () -> session.saveIndexes(facets.weakFlags(data.entries)));
+        } catch (Exception ex) {
+            // the next unlock just rebuilds them
+            if (statusLabel != null) statusLabel.setText("Saved, but the index could not be written: " + ex.getMessage());
+        }
+    }
+
+    /** Chunks of removed attachments (and of deleted entries) go once the vault is saved without them. */
+    private void pruneAttachments(){
+        try {
+            session.attachments().prune(data.entries, ledger != null ? ledger.tombstones.keySet() : Set.of());
+        } catch (Exception ex) {
+            if (statusLabel != null) statusLabel.setText("Saved, but old attachments could not be cleaned up: " + ex.getMessage());
+        }
+    }
+
+    /** A restore point of what was just saved; costs only the chunks that changed. */
+    private void takeSnapshot(){
+        try {
+            Metrics.run("snapshot.take", () -> session.snapshots().take(data, System.currentTimeMillis()));
+        } catch (Exception ex) {
+            if (statusLabel != null) statusLabel.setText("Saved, but no snapshot was taken: " + ex.getMessage());
+        }
+    }
+
+    /** Merges what another device wrote first; false (after saying so) if that copy can't be read yet. */
+    private boolean mergeBeforeSave(){
+        if (mergeExternalChanges()) return true;
+        error("Not saved: the vault file was changed elsewhere and can't be read yet.\n"
+                + "Your changes are kept. Save again once syncing has finished.");
+        return false;
+    }
+
+    /**
+     * Pulls in a copy of the vault written by another device and patches only the affected rows. Returns false
+     * if the file changed since it was last read or written here but could not be read: saving now would
+     * overwrite those changes.
+     */
+    private boolean mergeExternalChanges(){
+        if (data == null) return true;
+        VaultWatcher.Stamp now = VaultWatcher.Stamp.of(vaultPath);
+        if (now == null || now.equals(session.seen)) return true;
+        VaultMerger.Result r;
+        VaultData remote;
+        try {
+            remote = loadVault(vaultPath, masterPassword);
+            r = DeltaSync.merge(data, ledger, session.syncBase, remote, readLedger(vaultPath));
+        } catch (Exception ex) {
+            // half-synced or re-keyed elsewhere; try again on the next change / save
+            if (statusLabel != null) statusLabel.setText("External change detected but could not be read: " + ex.getMessage());
+            return false;
+        }
+        VaultChanges changes = session.changes();
+        applyingExternal = true;
+        try {
+            VaultMerger.Result merged = r;
+            changes.batch(() -> {
+                for (Entry e : merged.removed) changes.remove(e);
+                for (Entry e : merged.changed) {
+                    for (int i = 0; i < data.entries.size(); i++) {
+                        if (data.entries.get(i).id.equals(e.id)) { changes.replace(i, e); break; }
+                    }
+                }
+                for (Entry e : merged.added) changes.add(e);
+            });
+        } finally {
+            applyingExternal = false;
+        }
+        ledger.adopt(data.entries); // entries merged without the remote ledger start with an empty clock
+        data.vaultRevision = Math.max(data.vaultRevision, r.remoteRevision);
+        session.syncBase = VaultMerger.snapshot(remote); // what is on disk; unsaved local adds must not look "known there"
+        session.seen = now; // as read: if it changed again meanwhile, the next check merges that too
+        if (!r.isEmpty()) {
+            if (statusLabel != null) statusLabel.setText("Synced external changes: +" + r.added.size()
+                    + " ~" + r.changed.size() + " -" + r.removed.size());
+        }
+        return true;
+    }
+
+    /**
+     * Every entry mutation of the active vault ends up here, one call per batch: facets first (the row filter
+     * reads them), then only the affected table rows, then the sidebar counts and the unsaved-changes state.
+     */
+    private void onVaultChanges(VaultChanges source, List<VaultChanges.Change> batch){
+        if (session == null || source != session.changes()) return;
+        Metrics.Timer timer = Metrics.start("table.patch");
+        Set<String> changedFacets = facets.apply(batch);
+        boolean searched = false;
+        for (VaultChanges.Change c : batch) {
+            switch (c) {
+                case VaultChanges.EntryAdded a -> { model.insert(a.index(), a.entry()); searched = true; }
+                case VaultChanges.EntryRemoved r -> { model.remove(r.index()); searched = true; }
+                case VaultChanges.EntryChanged ch -> {
+                    // always: the modified time isn't in the mask
+                    model.update(ch.index(), ch.entry());
+                    searched |= ch.touches(VaultChanges.SEARCHABLE);
+                }
+            }
+        }
+        updateFacets(changedFacets);
+        timer.stop();
+        // re-filter explicitly rather than rely on the sorter re-filtering updated rows: free-text terms hold
+        // index results, and the selected facet or a facet term may have gained or lost entries
+        boolean filtered = search != null && (!search.getText().isBlank()
+                || sidebar.getSelectedValue() != null && !FacetIndex.ALL.equals(sidebar.getSelectedValue()));
+        if (filtered && (searched || !changedFacets.isEmpty())) applySearchFilter();
+        if (!applyingExternal) {
+            dirty = true;
+            updateTitle();
+        }
+    }
+
+    private void markDirty(){
+        dirty = true;
+        if (session != null) session.invalidateIndex();
+        if (search != null && !search.getText().isBlank()) applySearchFilter(); // free-text terms hold index results
+        updateTitle();
+    }
     private void updateTitle(){
         String dot = dirty ? "• " : "";
         frame.setTitle(dot + data.vaultName + " — Pro " + "(" + vaultPath.getFileName() + ")");
@@ -838,16 +1837,8 @@ public class VaultProApp {
     /* ================== Utils ================== */
 
     private void copyWithAutoClear(String text){
-        var cb = Toolkit.getDefaultToolkit().getSystemClipboard();
-        var sel = new StringSelection(text);
-        cb.setContents(sel, null);
-        new javax.swing.Timer(settings.clipboardClearSeconds * 1000, e -> {
-            try {
-                var t = cb.getContents(null);
-                String cur = (String) t.getTransferData(DataFlavor.stringFlavor);
-                if (Objects.equals(cur, text)) cb.setContents(new StringSelection(""), null);
-            } catch (Exception ignored) {}
-        }) {{ setRepeats(false); }}.start();
+        if (lifecycle != null) lifecycle.copyWithAutoClear(text, settings.clipboardClearSeconds * 1000L);
+        else Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(text), null);
     }
     private void info(String msg){ JOptionPane.showMessageDialog(frame, msg, "Info", JOptionPane.INFORMATION_MESSAGE); }
     private void error(String msg){ JOptionPane.showMessageDialog(frame, msg, "Error", JOptionPane.ERROR_MESSAGE); }
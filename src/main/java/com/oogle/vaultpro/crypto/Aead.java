@@ -0,0 +1,79 @@
+package com.oogle.vaultpro.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * The authenticated ciphers data can be sealed with, both with 256-bit keys, 12-byte nonces and 16-byte tags.
+ * AES-GCM is the default; ChaCha20-Poly1305 is several times faster on CPUs without AES instructions. A key
+ * carries its cipher in its algorithm name ({@link #key}), so code holding a key never has to be told which one
+ * to use; files record {@link #id}. Each thread keeps one {@link Cipher} per kind, re-initialized per use.
+ */
+public enum Aead {
+
+    AES_GCM("AES-GCM", "AES/GCM/NoPadding", "AES"),
+    CHACHA20_POLY1305("ChaCha20-Poly1305", "ChaCha20-Poly1305", "ChaCha20");
+
+    public static final int NONCE_LEN = 12, TAG_LEN = 16;
+    /** Overrides {@link #preferred} with an {@link #id}, e.g. to test the other cipher on a fast machine. */
+    public static final String PROPERTY = "vaultpro.aead";
+
+    private final String id, keyAlgorithm;
+    private final ThreadLocal<Cipher> pool;
+
+    Aead(String id, String transformation, String keyAlgorithm) {
+        this.id = id;
+        this.keyAlgorithm = keyAlgorithm;
+        this.pool = ThreadLocal.withInitial(() -> {
+            try { return Cipher.getInstance(transformation); }
+            catch (NoSuchAlgorithmException | NoSuchPaddingException e) { throw new IllegalStateException(e); }
+        });
+    }
+
+    /** Name as stored in files. */
+    public String id() { return id; }
+
+    /** A key for this cipher from raw bytes (copied; the caller wipes {@code raw}). */
+    public SecretKey key(byte[] raw) { return new SecretKeySpec(raw, keyAlgorithm); }
+
+    /**
+     * This thread's cipher, initialized for {@code mode} with {@code key} and the nonce at {@code nonce[off]}.
+     * Add the AAD and finish it before the next call on this thread.
+     */
+    public Cipher init(int mode, SecretKey key, byte[] nonce, int off) throws GeneralSecurityException {
+        AlgorithmParameterSpec spec = this == AES_GCM
+                ? new GCMParameterSpec(TAG_LEN * 8, nonce, off, NONCE_LEN)
+                : new IvParameterSpec(nonce, off, NONCE_LEN);
+        Cipher c = pool.get();
+        c.init(mode, key, spec);
+        return c;
+    }
+
+    /** The cipher {@code key} was made for by {@link #key}; keys from elsewhere are AES. */
+    public static Aead of(SecretKey key) {
+        return CHACHA20_POLY1305.keyAlgorithm.equals(key.getAlgorithm()) ? CHACHA20_POLY1305 : AES_GCM;
+    }
+
+    /** The cipher recorded as {@code id}; null or missing means AES-GCM, which is all older files used. */
+    public static Aead byId(String id) throws GeneralSecurityException {
+        if (id == null) return AES_GCM;
+        for (Aead a : values()) if (a.id.equalsIgnoreCase(id)) return a;
+        throw new NoSuchAlgorithmException("Unknown cipher " + id);
+    }
+
+    /** For new keys: AES-GCM where the CPU accelerates AES, ChaCha20-Poly1305 otherwise. */
+    public static Aead preferred() {
+        String forced = System.getProperty(PROPERTY);
+        if (forced != null) {
+            for (Aead a : values()) if (a.id.equalsIgnoreCase(forced)) return a;
+        }
+        return CryptoPool.aesAccelerated() ? AES_GCM : CHACHA20_POLY1305;
+    }
+}
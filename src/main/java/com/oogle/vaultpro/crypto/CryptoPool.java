@@ -0,0 +1,71 @@
+package com.oogle.vaultpro.crypto;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.lang.management.ManagementFactory;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Per-thread instances of the JCA engines used on hot paths. {@code getInstance} walks the provider list every
+ * time, which costs far more than re-initializing an engine that is already at hand, so each thread keeps one
+ * {@link Mac} and one {@link SecretKeyFactory} (ciphers are pooled by {@link Aead}). An instance handed out here
+ * is only valid until the next call on the same thread.
+ */
+public final class CryptoPool {
+
+    public static final String KDF_ALGO = "PBKDF2WithHmacSHA256";
+
+    private static final ThreadLocal<Mac> HMAC_SHA256 = ThreadLocal.withInitial(() -> {
+        try { return Mac.getInstance("HmacSHA256"); } catch (NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+    });
+    private static final ThreadLocal<SecretKeyFactory> PBKDF2 = ThreadLocal.withInitial(() -> {
+        try { return SecretKeyFactory.getInstance(KDF_ALGO); } catch (NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+    });
+
+    private CryptoPool() {}
+
+    /** This thread's HMAC-SHA256, initialized with {@code key}. */
+    public static Mac hmacSha256(Key key) throws InvalidKeyException {
+        Mac m = HMAC_SHA256.get();
+        m.init(key);
+        return m;
+    }
+
+    /** PBKDF2-HMAC-SHA256 of {@code password}; the caller wipes the result. */
+    public static byte[] pbkdf2(char[] password, byte[] salt, int iterations, int bits) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, bits);
+        try {
+            return PBKDF2.get().generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * Whether this JVM runs AES on dedicated CPU instructions (AES-NI, ARMv8 crypto extensions). Asked of
+     * HotSpot once, when first needed; other JVMs are assumed accelerated on x86-64 and AArch64.
+     */
+    public static boolean aesAccelerated() { return AesProbe.ACCELERATED; }
+
+    private static final class AesProbe {
+        static final boolean ACCELERATED = probe();
+
+        private static boolean probe() {
+            try {
+                HotSpotDiagnosticMXBean vm = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+                // a product flag, set from the CPU's features unless overridden (-XX:-UseAES)
+                return Boolean.parseBoolean(vm.getVMOption("UseAES").getValue());
+            } catch (RuntimeException | LinkageError notHotSpot) {
+                String arch = System.getProperty("os.arch", "").toLowerCase(Locale.ROOT);
+                return arch.equals("amd64") || arch.equals("x86_64") || arch.equals("aarch64");
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.oogle.vaultpro.crypto;
+
+import com.google.gson.Gson;
+import com.oogle.vaultpro.diag.Metrics;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Data key for the vault's side sections (history, indexes, ...), kept next to the vault as
+ * {@code vault.dat.keys}: a random 256-bit key wrapped with AES-GCM under a PBKDF2 key of the master password.
+ * Sections are sealed with {@link #seal}/{@link #unseal}: a 12-byte random IV followed by the ciphertext,
+ * authenticated together with a caller-chosen header so one section can't be swapped for another. The key file
+ * records the section cipher ({@link Aead}), chosen for the machine the key was created on; files without it are
+ * AES-GCM. Files with another cipher are version 2, so builds that only know AES-GCM refuse them instead of
+ * reading the key as an AES one.
+ */
+public final class SectionKeys {
+
+    public static final int DEFAULT_ITERS = 600_000;
+    private static final int IV_LEN = Aead.NONCE_LEN, TAG_LEN = Aead.TAG_LEN;
+    private static final byte[] WRAP_AAD = "MyVault section key v1".getBytes(StandardCharsets.US_ASCII);
+    private static final Gson GSON = new Gson();
+    private static final SecureRandom RNG = new SecureRandom();
+
+    /** On-disk form of the wrapped key. */
+    private static final class KeyFile {
+        int version = 1; // 2 when the sections aren't AES-GCM
+        int iterations;
+        String cipher; // of the sections; null in files written before there was a choice
+        String salt, iv, wrapped;
+    }
+
+    private SectionKeys() {}
+
+    public static Path path(Path vault) { return vault.resolveSibling(vault.getFileName() + ".keys"); }
+
+    private static Path previousPath(Path vault) { return vault.resolveSibling(vault.getFileName() + ".keys.prev"); }
+
+    /**
+     * Unwraps the vault's section key; a vault without a key file fails with {@link NoSuchFileException}. If a
+     * master password change was interrupted before the vault itself was saved, the previous wrap matches instead
+     * and is put back.
+     */
+    public static SecretKey open(Path vault, char[] masterPassword) throws IOException, GeneralSecurityException {
+        Path p = path(vault), prev = previousPath(vault);
+        if (!Files.exists(p)) throw new NoSuchFileException(p.toString(), null, "the vault has no section key yet");
+        try {
+            SecretKey k = unwrap(p, masterPassword);
+            Files.deleteIfExists(prev);
+            return k;
+        } catch (GeneralSecurityException ex) {
+            if (!Files.exists(prev)) throw ex;
+            SecretKey k = unwrap(prev, masterPassword);
+            Files.move(prev, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return k;
+        }
+    }
+
+    /**
+     * Master password change: wraps the same key under {@code newPassword}, so no section is re-encrypted.
+     * The old wrap is kept until {@link #commitRewrap} (call it once the vault is saved under the new password).
+     */
+    public static void rewrap(Path vault, SecretKey key, char[] newPassword) throws IOException, GeneralSecurityException {
+        Path p = path(vault);
+        int iterations = DEFAULT_ITERS;
+        if (Files.exists(p)) {
+            KeyFile f = GSON.fromJson(Files.readString(p, StandardCharsets.UTF_8), KeyFile.class);
+            if (f != null && f.iterations > 0) iterations = f.iterations;
+            Files.copy(p, previousPath(vault), StandardCopyOption.REPLACE_EXISTING);
+        }
+        write(vault, key, newPassword, iterations);
+    }
+
+    public static void commitRewrap(Path vault) throws IOException { Files.deleteIfExists(previousPath(vault)); }
+
+    /** Undoes {@link #rewrap} when the vault could not be saved under the new password: the old wrap is put back. */
+    public static void rollbackRewrap(Path vault) throws IOException {
+        Path prev = previousPath(vault);
+        if (Files.exists(prev)) Files.move(prev, path(vault), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static SecretKey unwrap(Path p, char[] masterPassword) throws IOException, GeneralSecurityException {
+        KeyFile f = GSON.fromJson(Files.readString(p, StandardCharsets.UTF_8), KeyFile.class);
+        if (f == null || f.version < 1 || f.version > 2) throw new IOException("Unsupported section key file " + p);
+        Base64.Decoder b64 = Base64.getDecoder();
+        Aead sections = Aead.byId(f.cipher);
+        SecretKey kek = kek(masterPassword, b64.decode(f.salt), f.iterations);
+        byte[] raw = null;
+        try {
+            Cipher c = Aead.AES_GCM.init(Cipher.DECRYPT_MODE, kek, b64.decode(f.iv), 0);
+            c.updateAAD(WRAP_AAD);
+            raw = c.doFinal(b64.decode(f.wrapped));
+            return sections.key(raw);
+        } catch (AEADBadTagException ex) {
+            throw new GeneralSecurityException("Section key file " + p.getFileName() + " does not match the master password", ex);
+        } finally {
+            if (raw != null) Arrays.fill(raw, (byte) 0);
+        }
+    }
+
+    /**
+     * Makes the key file of a vault that has none. Only call this on the way to writing the vault (a new vault,
+     * or the first save of one from before side sections), never on open: two devices opening the same synced
+     * vault would each make a key, and whatever one of them sealed would be unreadable once the other's key file
+     * won. Fails with {@link FileAlreadyExistsException} rather than replace a key.
+     */
+    public static SecretKey create(Path vault, char[] masterPassword) throws IOException, GeneralSecurityException {
+        if (Files.exists(path(vault))) throw new FileAlreadyExistsException(path(vault).toString());
+        byte[] raw = new byte[32];
+        RNG.nextBytes(raw);
+        try {
+            SecretKey key = Aead.preferred().key(raw);
+            write(vault, key, masterPassword, DEFAULT_ITERS);
+            return key;
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+    }
+
+    /**
+     * (Re)wraps {@code key} under {@code masterPassword} with a fresh salt and replaces the key file atomically.
+     * The key's cipher is recorded with it.
+     */
+    public static void write(Path vault, SecretKey key, char[] masterPassword, int iterations) throws IOException, GeneralSecurityException {
+        byte[] salt = new byte[16], iv = new byte[IV_LEN];
+        RNG.nextBytes(salt);
+        RNG.nextBytes(iv);
+        Cipher c = Aead.AES_GCM.init(Cipher.ENCRYPT_MODE, kek(masterPassword, salt, iterations), iv, 0);
+        c.updateAAD(WRAP_AAD);
+        byte[] raw = key.getEncoded();
+        KeyFile f = new KeyFile();
+        try {
+            Base64.Encoder b64 = Base64.getEncoder();
+            f.iterations = iterations;
+            f.cipher = Aead.of(key).id();
+            f.version = Aead.of(key) == Aead.AES_GCM ? 1 : 2;
+            f.salt = b64.encodeToString(salt);
+            f.iv = b64.encodeToString(iv);
+            f.wrapped = b64.encodeToString(c.doFinal(raw));
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+        Path p = path(vault);
+        Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+        Files.writeString(tmp, GSON.toJson(f), StandardCharsets.UTF_8);
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static SecretKey kek(char[] password, byte[] salt, int iterations) throws GeneralSecurityException {
+        byte[] raw = Metrics.time("kdf.sectionKey", () -> CryptoPool.pbkdf2(password, salt, iterations, 256));
+        try { return Aead.AES_GCM.key(raw); } finally { Arrays.fill(raw, (byte) 0); }
+    }
+
+    /** A 256-bit subkey of {@code key} for another purpose (HMAC-SHA256 of {@code label}); the caller wipes it. */
+    public static byte[] derive(SecretKey key, String label) throws GeneralSecurityException {
+        return CryptoPool.hmacSha256(key).doFinal(label.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /* ---- sealed sections ---- */
+
+    public static byte[] seal(SecretKey key, byte[] header, byte[] plain) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LEN];
+        RNG.nextBytes(iv);
+        Cipher c = Aead.of(key).init(Cipher.ENCRYPT_MODE, key, iv, 0);
+        c.updateAAD(header);
+        ByteBuffer out = ByteBuffer.allocate(IV_LEN + c.getOutputSize(plain.length));
+        out.put(iv);
+        c.doFinal(ByteBuffer.wrap(plain), out);
+        return out.array();
+    }
+
+    public static byte[] unseal(SecretKey key, byte[] header, byte[] sealed) throws GeneralSecurityException {
+        if (sealed.length < IV_LEN + TAG_LEN) throw new GeneralSecurityException("Section too short");
+        return Metrics.time("decrypt.section", () -> {
+            Cipher c = Aead.of(key).init(Cipher.DECRYPT_MODE, key, sealed, 0);
+            c.updateAAD(header);
+            return c.doFinal(sealed, IV_LEN, sealed.length - IV_LEN);
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package com.oogle.vaultpro.diag;
+
+import org.tinylog.Logger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings of the vault's hot paths for the current session. Each operation has a {@link Histogram} of durations
+ * (log-linear buckets, at most 1/8 off, lock-free) and is also emitted as an {@link OperationEvent} for
+ * Flight Recorder. Operations slower than {@link #SLOW_NANOS} are logged. Names are dotted,
+ * coarse first: {@code kdf.*}, {@code decrypt.*}, {@code deserialize.*}, {@code vault.*}, {@code search.*}, ...
+ */
+public final class Metrics {
+
+    public static final long SLOW_NANOS = 500_000_000L;
+
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    @FunctionalInterface
+    public interface Timed<T, X extends Exception> {
+        T call() throws X;
+    }
+
+    @FunctionalInterface
+    public interface TimedRun<X extends Exception> {
+        void run() throws X;
+    }
+
+    /** One measurement started with {@link #start}, for code that doesn't fit in a lambda. */
+    public static final class Timer {
+        private final String operation;
+        private final OperationEvent event = new OperationEvent();
+        private final long start;
+
+        private Timer(String operation) {
+            this.operation = operation;
+            event.begin();
+            start = System.nanoTime();
+        }
+
+        public void stop() { finish(false); }
+
+        private void finish(boolean failed) {
+            long nanos = System.nanoTime() - start;
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.failed = failed;
+                event.commit();
+            }
+            histogram(operation).record(nanos);
+            if (nanos >= SLOW_NANOS) Logger.info("{} took {} ms{}", operation, nanos / 1_000_000, failed ? " (failed)" : "");
+        }
+    }
+
+    /** Count, mean and percentiles of one operation, in milliseconds. */
+    public record Stat(String operation, long count, double mean, double p50, double p90, double p99, double max) {}
+
+    public static Timer start(String operation) { return new Timer(operation); }
+
+    public static <T, X extends Exception> T time(String operation, Timed<T, X> body) throws X {
+        Timer t = new Timer(operation);
+        boolean failed = true;
+        try {
+            T result = body.call();
+            failed = false;
+            return result;
+        } finally {
+            t.finish(failed);
+        }
+    }
+
+    public static <X extends Exception> void run(String operation, TimedRun<X> body) throws X {
+        Timer t = new Timer(operation);
+        boolean failed = true;
+        try {
+            body.run();
+            failed = false;
+        } finally {
+            t.finish(failed);
+        }
+    }
+
+    public static Histogram histogram(String operation) {
+        return HISTOGRAMS.computeIfAbsent(operation, k -> new Histogram());
+    }
+
+    /** Every operation measured so far, by name. */
+    public static List<Stat> stats() {
+        List<Stat> out = new ArrayList<>();
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            Histogram h = e.getValue();
+            long n = h.count();
+            if (n == 0) continue;
+            out.add(new Stat(e.getKey(), n, ms(h.sum() / (double) n), ms(h.percentile(0.50)), ms(h.percentile(0.90)),
+                    ms(h.percentile(0.99)), ms(h.max())));
+        }
+        return out;
+    }
+
+    public static void reset() { HISTOGRAMS.values().forEach(Histogram::reset); }
+
+    private static double ms(double nanos) { return nanos / 1e6; }
+
+    /**
+     * Durations in nanoseconds. Values below 8 get a bucket each; above, every power of two is split into
+     * 8 equal buckets, so a percentile is off by at most an eighth and the whole thing is 496 counters.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 3, SUB = 1 << SUB_BITS;
+        private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS + 1) * SUB);
+        private final LongAdder count = new LongAdder(), sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long nanos) {
+            long v = Math.max(0, nanos);
+            buckets.incrementAndGet(bucket(v));
+            count.increment();
+            sum.add(v);
+            max.accumulateAndGet(v, Math::max);
+        }
+
+        public long count() { return count.sum(); }
+
+        public long sum() { return sum.sum(); }
+
+        public long max() { return max.get(); }
+
+        /** Upper edge of the bucket holding the {@code q}-quantile, capped at the largest value seen. */
+        public long percentile(double q) {
+            long n = count(), rank = Math.max(1, (long) Math.ceil(q * n)), seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upper(i), max());
+            }
+            return max();
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+
+        static int bucket(long v) {
+            if (v < SUB) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+            return (exp - SUB_BITS + 1) * SUB + sub;
+        }
+
+        static long upper(int bucket) {
+            if (bucket < SUB) return bucket;
+            int exp = bucket / SUB + SUB_BITS - 1, sub = bucket % SUB, shift = exp - SUB_BITS;
+            return ((long) (SUB + sub) << shift) + (1L << shift) - 1;
+        }
+    }
+}
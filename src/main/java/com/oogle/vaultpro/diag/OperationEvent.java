@@ -0,0 +1,26 @@
+package com.oogle.vaultpro.diag;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one timed operation (see {@link Metrics}). Recorded only while a recording with
+ * {@code com.oogle.vaultpro.Operation} enabled is running, e.g. {@code -XX:StartFlightRecording}.
+ */
+@Name("com.oogle.vaultpro.Operation")
+@Label("Vault Operation")
+@Category("MyVault")
+@Description("Key derivation, decryption, parsing, saving, search, table refresh or audit")
+@StackTrace(false)
+final class OperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,51 @@
+package com.oogle.vaultpro.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sync metadata kept alongside a vault: a version vector per live entry and one per deleted entry (tombstone).
+ * Holds entry ids and counters only, no labels or secrets, but those still tell which entries are edited how
+ * often, so the file is sealed like the other side sections.
+ */
+public class SyncLedger {
+
+    /** {@code vaultRevision} of the vault file this ledger was written with. */
+    public long vaultRevision;
+
+    public Map<String, VersionVector> clocks = new HashMap<>();
+    public Map<String, VersionVector> tombstones = new HashMap<>();
+
+    /** Entries that predate the ledger start with an empty clock, i.e. "same as everyone else's copy". */
+    public void adopt(List<Entry> entries) {
+        for (Entry e : entries) clocks.computeIfAbsent(e.id, k -> new VersionVector());
+    }
+
+    public VersionVector clock(String id) {
+        VersionVector v = clocks.get(id);
+        if (v == null) v = tombstones.get(id);
+        return v != null ? v : new VersionVector();
+    }
+
+    public boolean knows(String id) { return clocks.containsKey(id) || tombstones.containsKey(id); }
+
+    /** Call on every local add/edit. */
+    public void touch(String id, String device) {
+        VersionVector v = clocks.get(id);
+        if (v == null) {
+            VersionVector dead = tombstones.remove(id);
+            v = dead != null ? dead : new VersionVector();
+            clocks.put(id, v);
+        }
+        v.bump(device);
+    }
+
+    /** Call on every local delete. */
+    public void delete(String id, String device) {
+        VersionVector v = clocks.remove(id);
+        if (v == null) v = new VersionVector();
+        v.bump(device);
+        tombstones.put(id, v);
+    }
+}
@@ -0,0 +1,132 @@
+package com.oogle.vaultpro.model;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Typed change events for a vault's entry list. Local mutations go through {@link #add}, {@link #remove},
+ * {@link #changed} and {@link #replace}, which edit the list and describe what happened, so the table,
+ * indexes and facets can each patch only the rows involved instead of rebuilding from every entry.
+ * Outside a transaction every call is delivered as its own batch; inside {@link #batch} they are collected
+ * and delivered once when the outermost batch ends. Indexes in events are positions in the list
+ * at the time of that change, so consumers apply a batch in order.
+ */
+public final class VaultChanges {
+
+    public static final int LABEL = 1, USERNAME = 1 << 1, URL = 1 << 2, PASSWORD = 1 << 3, OTP = 1 << 4,
+            NOTES = 1 << 5, TAGS = 1 << 6, FAVORITE = 1 << 7;
+    public static final int ALL = (1 << 8) - 1;
+    /** Fields shown as table columns. */
+    public static final int COLUMNS = FAVORITE | LABEL | USERNAME | URL | TAGS;
+    /** Fields the text and fuzzy search indexes are built from. */
+    public static final int SEARCHABLE = LABEL | USERNAME | URL | TAGS;
+
+    public sealed interface Change permits EntryAdded, EntryChanged, EntryRemoved {
+        Entry entry();
+        int index();
+    }
+
+    public record EntryAdded(Entry entry, int index) implements Change {}
+
+    /** {@code previous} is the same object as {@code entry} unless the entry was replaced (e.g. by a merge). */
+    public record EntryChanged(Entry entry, Entry previous, int index, int mask) implements Change {
+        public boolean touches(int fields) { return (mask & fields) != 0; }
+    }
+
+    public record EntryRemoved(Entry entry, int index) implements Change {}
+
+    @FunctionalInterface
+    public interface Listener {
+        void onChanges(VaultChanges source, List<Change> batch);
+    }
+
+    /** The fields of an entry that the masks cover, taken before an in-place edit. */
+    public record Snapshot(String label, String username, String url, String password, String otpSecret,
+                           String notes, List<String> tags, boolean favorite) {
+
+        public static Snapshot of(Entry e) {
+            return new Snapshot(e.label, e.username, e.url, e.password, e.otpSecret, e.notes,
+                    e.tags == null ? List.of() : List.copyOf(e.tags), e.favorite);
+        }
+
+        /** Fields of {@code e} that differ from this snapshot. */
+        public int diff(Entry e) {
+            int m = 0;
+            if (!Objects.equals(label, e.label)) m |= LABEL;
+            if (!Objects.equals(username, e.username)) m |= USERNAME;
+            if (!Objects.equals(url, e.url)) m |= URL;
+            if (!Objects.equals(password, e.password)) m |= PASSWORD;
+            if (!Objects.equals(otpSecret, e.otpSecret)) m |= OTP;
+            if (!Objects.equals(notes, e.notes)) m |= NOTES;
+            if (!tags.equals(e.tags == null ? List.of() : e.tags)) m |= TAGS;
+            if (favorite != e.favorite) m |= FAVORITE;
+            return m;
+        }
+    }
+
+    private final List<Entry> entries;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Change> pending = new ArrayList<>();
+    private int depth;
+
+    public VaultChanges(List<Entry> entries) { this.entries = entries; }
+
+    public void addListener(Listener l) { listeners.add(l); }
+
+    public void removeListener(Listener l) { listeners.remove(l); }
+
+    /** Runs {@code edits} as one transaction: listeners see a single batch afterwards (even if it throws). Nests. */
+    public void batch(Runnable edits) {
+        depth++;
+        try {
+            edits.run();
+        } finally {
+            if (--depth == 0) flush();
+        }
+    }
+
+    public void add(Entry e) {
+        entries.add(e);
+        emit(new EntryAdded(e, entries.size() - 1));
+    }
+
+    /** Returns false if {@code e} is not in the vault. */
+    public boolean remove(Entry e) {
+        int i = indexOf(e);
+        if (i < 0) return false;
+        entries.remove(i);
+        emit(new EntryRemoved(e, i));
+        return true;
+    }
+
+    /** Reports an in-place edit of {@code e}; a zero mask (nothing changed) is not an event. */
+    public void changed(Entry e, int mask) {
+        if (mask == 0) return;
+        int i = indexOf(e);
+        if (i >= 0) emit(new EntryChanged(e, e, i, mask));
+    }
+
+    /** Puts {@code e} in place of the entry at {@code i}; returns the old one. */
+    public Entry replace(int i, Entry e) {
+        Entry old = entries.set(i, e);
+        emit(new EntryChanged(e, old, i, Snapshot.of(old).diff(e)));
+        return old;
+    }
+
+    private int indexOf(Entry e) {
+        for (int i = 0; i < entries.size(); i++) if (entries.get(i) == e) return i;
+        return -1;
+    }
+
+    private void emit(Change c) {
+        pending.add(c);
+        if (depth == 0) flush();
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) return;
+        List<Change> batch = List.copyOf(pending);
+        pending.clear();
+        for (Listener l : listeners) l.onChanges(this, batch);
+    }
+}
@@ -0,0 +1,37 @@
+package com.oogle.vaultpro.model;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Per-entry vector clock: device id → number of edits that device has made to the entry. */
+public class VersionVector {
+
+    public enum Order { EQUAL, BEFORE, AFTER, CONCURRENT }
+
+    public Map<String, Long> c = new TreeMap<>();
+
+    public void bump(String device) { c.merge(device, 1L, Long::sum); }
+
+    public long get(String device) { return c.getOrDefault(device, 0L); }
+
+    public Order compare(VersionVector o) {
+        boolean less = false, greater = false;
+        for (var kv : c.entrySet()) {
+            long b = o.get(kv.getKey());
+            if (kv.getValue() < b) less = true; else if (kv.getValue() > b) greater = true;
+        }
+        for (var kv : o.c.entrySet()) {
+            if (!c.containsKey(kv.getKey()) && kv.getValue() > 0) less = true;
+        }
+        if (less && greater) return Order.CONCURRENT;
+        return less ? Order.BEFORE : greater ? Order.AFTER : Order.EQUAL;
+    }
+
+    /** Element-wise max; the result dominates both inputs. */
+    public VersionVector merged(VersionVector o) {
+        VersionVector m = new VersionVector();
+        m.c.putAll(c);
+        o.c.forEach((k, v) -> m.c.merge(k, v, Math::max));
+        return m;
+    }
+}
@@ -0,0 +1,184 @@
+package com.oogle.vaultpro.service;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.oogle.vaultpro.crypto.SectionKeys;
+import com.oogle.vaultpro.model.Entry;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Files attached to entries, kept out of the vault payload. A file is cut into 1 MiB chunks; each chunk is named
+ * by a keyed hash of its content (HMAC-SHA256 under a key derived from the section key, so names say nothing
+ * to someone without the master password), sealed with the section key and stored once in
+ * {@code vault.dat.blobs/}, however many attachments contain it. Which entry has which files lives in a
+ * small sealed manifest, {@code vault.dat.att}. Adding and saving stream through file channels a chunk at a
+ * time, and none of it is read on unlock or written on save. Another device may write the manifest and chunks
+ * of the same synced folder, so the manifest is re-read and merged before every write, and a chunk nothing
+ * refers to is only deleted once it is old enough that no manifest can still be on its way for it.
+ */
+public final class AttachmentStore {
+
+    public static final int CHUNK = 1 << 20;
+    private static final byte[] MANIFEST_HEADER = "MVAT\u0001".getBytes(StandardCharsets.US_ASCII);
+    private static final Gson GSON = new Gson();
+
+    /** One attached file: its name, size and the chunks it is made of, in order. */
+    public record Attachment(String name, long size, long addedAt, List<String> chunks) {}
+
+    private final Path manifestFile;
+    private final ChunkStore blobs;
+    private final Supplier<SecretKey> key;
+    private Map<String, List<Attachment>> byEntry; // null until loaded
+    private Map<String, List<Attachment>> base;    // the manifest as last read or written here
+
+    public AttachmentStore(Path vault, Supplier<SecretKey> key) {
+        this.manifestFile = manifestPath(vault);
+        this.blobs = new ChunkStore(blobDir(vault), key, "MyVault blobs v1");
+        this.key = key;
+    }
+
+    public static Path manifestPath(Path vault) { return vault.resolveSibling(vault.getFileName() + ".att"); }
+
+    public static Path blobDir(Path vault) { return vault.resolveSibling(vault.getFileName() + ".blobs"); }
+
+    public synchronized boolean isLoaded() { return byEntry != null; }
+
+    public synchronized void load() throws IOException, GeneralSecurityException {
+        if (byEntry != null) return;
+        byEntry = readManifest();
+        base = copy(byEntry);
+    }
+
+    public synchronized List<Attachment> of(Entry e) throws IOException, GeneralSecurityException {
+        load();
+        return List.copyOf(byEntry.getOrDefault(e.id, List.of()));
+    }
+
+    /** Streams {@code source} into the store and attaches it to {@code e}; chunks already stored are not written again. */
+    public synchronized Attachment add(Entry e, Path source) throws IOException, GeneralSecurityException {
+        load();
+        List<String> chunks = new ArrayList<>();
+        long size = 0;
+        ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (true) {
+                buf.clear();
+                while (buf.hasRemaining() && in.read(buf) >= 0) { /* fill a whole chunk */ }
+                if (buf.position() == 0) break;
+                size += buf.position();
+                chunks.add(blobs.put(buf.array(), 0, buf.position()));
+                if (buf.hasRemaining()) break; // short read: end of file
+            }
+        } finally {
+            Arrays.fill(buf.array(), (byte) 0);
+        }
+        Attachment a = new Attachment(source.getFileName().toString(), size, System.currentTimeMillis(), List.copyOf(chunks));
+        byEntry.computeIfAbsent(e.id, x -> new ArrayList<>()).add(a);
+        writeManifest();
+        return a;
+    }
+
+    /** Decrypts {@code a} into {@code target} chunk by chunk; the target appears only once complete. */
+    public synchronized void export(Attachment a, Path target) throws IOException, GeneralSecurityException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".part");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (String id : a.chunks()) {
+                byte[] plain = blobs.get(id);
+                try {
+                    ByteBuffer b = ByteBuffer.wrap(plain);
+                    while (b.hasRemaining()) out.write(b);
+                } finally {
+                    Arrays.fill(plain, (byte) 0);
+                }
+            }
+        } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public synchronized void remove(Entry e, Attachment a) throws IOException, GeneralSecurityException {
+        load();
+        List<Attachment> l = byEntry.get(e.id);
+        if (l == null || !l.remove(a)) return;
+        if (l.isEmpty()) byEntry.remove(e.id);
+        writeManifest();
+    }
+
+    /**
+     * Forgets attachments of the {@code deleted} entries and deletes chunks nothing refers to any more (see
+     * {@link ChunkStore#retain}). Entries merely missing from {@code entries} keep theirs: they may have been added
+     * on another device and not be merged yet. Call when the vault is saved (an unsaved delete can still be
+     * discarded); does nothing if attachments weren't used. Returns how many chunks were deleted.
+     */
+    public synchronized int prune(List<Entry> entries, Set<String> deleted) throws IOException, GeneralSecurityException {
+        if (byEntry == null) return 0;
+        Set<String> live = new HashSet<>();
+        for (Entry e : entries) live.add(e.id);
+        boolean forgot = false;
+        for (String id : deleted) if (!live.contains(id) && byEntry.remove(id) != null) forgot = true;
+        if (forgot) {
+            writeManifest();
+        } else {
+            byEntry = readManifest(); // every local change is written at once, so this only adds what others wrote
+            base = copy(byEntry);
+        }
+        Set<String> used = new HashSet<>();
+        for (List<Attachment> l : byEntry.values()) for (Attachment a : l) used.addAll(a.chunks());
+        return blobs.retain(used);
+    }
+
+    /* ---- internals ---- */
+
+    private Map<String, List<Attachment>> readManifest() throws IOException, GeneralSecurityException {
+        Map<String, List<Attachment>> m = new HashMap<>();
+        if (Files.exists(manifestFile)) {
+            byte[] plain = SectionKeys.unseal(key.get(), MANIFEST_HEADER, Files.readAllBytes(manifestFile));
+            Map<String, List<Attachment>> raw = GSON.fromJson(new String(plain, StandardCharsets.UTF_8),
+                    new TypeToken<Map<String, List<Attachment>>>() {}.getType());
+            if (raw != null) raw.forEach((id, l) -> m.put(id, new ArrayList<>(l)));
+        }
+        return m;
+    }
+
+    /**
+     * Writes what changed here since the manifest was last read or written on top of the manifest as it is on
+     * disk now, so attachments another device added or removed meanwhile are kept as it left them.
+     */
+    private void writeManifest() throws IOException, GeneralSecurityException {
+        Map<String, List<Attachment>> merged = readManifest();
+        base.forEach((id, l) -> {
+            for (Attachment a : l) if (!byEntry.getOrDefault(id, List.of()).contains(a)) merged.getOrDefault(id, new ArrayList<>()).remove(a);
+        });
+        byEntry.forEach((id, l) -> {
+            for (Attachment a : l) {
+                if (base.getOrDefault(id, List.of()).contains(a)) continue;
+                List<Attachment> m = merged.computeIfAbsent(id, x -> new ArrayList<>());
+                if (!m.contains(a)) m.add(a);
+            }
+        });
+        merged.values().removeIf(List::isEmpty);
+        byte[] plain = GSON.toJson(merged).getBytes(StandardCharsets.UTF_8);
+        Path tmp = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+        Files.write(tmp, SectionKeys.seal(key.get(), MANIFEST_HEADER, plain));
+        Files.move(tmp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        byEntry = merged;
+        base = copy(merged);
+    }
+
+    private static Map<String, List<Attachment>> copy(Map<String, List<Attachment>> m) {
+        Map<String, List<Attachment>> c = new HashMap<>();
+        m.forEach((id, l) -> c.put(id, new ArrayList<>(l)));
+        return c;
+    }
+}
@@ -0,0 +1,196 @@
+package com.oogle.vaultpro.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * Generates passwords and passphrases in bulk, for provisioning scripts and the {@code generate} command.
+ * Random bytes come from one {@link SecureRandom} call per 4 KiB, and characters/words are picked with
+ * rejection sampling, so every pick is uniform (no modulo bias) even for alphabets that don't divide 256.
+ * Instances are not thread-safe; use one per thread.
+ */
+public final class BatchGenerator {
+
+    public static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    public static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+    public static final String DIGITS = "0123456789";
+    public static final String SYMBOLS = "!@#$%^&*()-_=+[]{};:,.?/~";
+    /** Characters easily confused with each other when read aloud or off a screen. */
+    public static final String AMBIGUOUS = "Il1|O0o`'\";:.,";
+
+    /**
+     * Character policy. A class with {@code min < 0} is left out; {@code min >= 0} includes it and requires at
+     * least that many characters from it.
+     */
+    public record Policy(int length, int minUpper, int minLower, int minDigits, int minSymbols, boolean excludeAmbiguous) {
+        public Policy {
+            if (length < 1) throw new IllegalArgumentException("Length must be at least 1");
+            int required = Math.max(0, minUpper) + Math.max(0, minLower) + Math.max(0, minDigits) + Math.max(0, minSymbols);
+            if (required > length) throw new IllegalArgumentException("Minimums (" + required + ") exceed length " + length);
+            if (minUpper < 0 && minLower < 0 && minDigits < 0 && minSymbols < 0)
+                throw new IllegalArgumentException("Select at least one character class");
+        }
+
+        /** Same switches as the generator dialog: at least one character from each selected class. */
+        public static Policy of(int length, boolean upper, boolean lower, boolean digits, boolean symbols) {
+            return new Policy(length, upper ? 1 : -1, lower ? 1 : -1, digits ? 1 : -1, symbols ? 1 : -1, false);
+        }
+    }
+
+    public record PassphrasePolicy(int words, String separator, boolean capitalize, boolean appendDigit) {
+        public PassphrasePolicy {
+            if (words < 1) throw new IllegalArgumentException("Need at least one word");
+            if (separator == null) separator = "-";
+        }
+    }
+
+    private static final class DefaultWords {
+        static final List<String> WORDS = load();
+        private static List<String> load() {
+            InputStream in = BatchGenerator.class.getResourceAsStream("/generator/words.txt");
+            if (in == null) throw new IllegalStateException("Missing /generator/words.txt");
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                return words(r.lines().toList());
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private final SecureRandom rnd;
+    private final byte[] pool = new byte[4096];
+    private int pos = pool.length;
+
+    public BatchGenerator() { this(new SecureRandom()); }
+
+    public BatchGenerator(SecureRandom rnd) { this.rnd = rnd; }
+
+    /** The built-in passphrase word list (about 1100 words, ~10.1 bits each). */
+    public static List<String> defaultWords() { return DefaultWords.WORDS; }
+
+    /** Reads a word list file: one word per line, blank lines and {@code #} comments skipped, duplicates dropped. */
+    public static List<String> loadWords(Path file) throws IOException {
+        List<String> w = words(Files.readAllLines(file, StandardCharsets.UTF_8));
+        if (w.size() < 2) throw new IllegalArgumentException("Word list " + file + " has fewer than two words");
+        if (w.size() > 65536) throw new IllegalArgumentException("Word list " + file + " has more than 65536 words");
+        return w;
+    }
+
+    private static List<String> words(List<String> lines) {
+        LinkedHashSet<String> out = new LinkedHashSet<>();
+        for (String l : lines) {
+            String w = l.strip();
+            if (!w.isEmpty() && !w.startsWith("#")) out.add(w);
+        }
+        return List.copyOf(out);
+    }
+
+    public String password(Policy p) {
+        return new String(fill(p, classes(p)));
+    }
+
+    public List<String> passwords(Policy p, int count) {
+        char[][] cls = classes(p);
+        List<String> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) out.add(new String(fill(p, cls)));
+        return out;
+    }
+
+    public String passphrase(PassphrasePolicy p, List<String> words) {
+        StringBuilder sb = new StringBuilder(p.words() * 8);
+        for (int i = 0; i < p.words(); i++) {
+            if (i > 0) sb.append(p.separator());
+            String w = words.get(uniform(words.size()));
+            if (p.capitalize() && !w.isEmpty()) sb.append(Character.toUpperCase(w.charAt(0))).append(w, 1, w.length());
+            else sb.append(w);
+        }
+        if (p.appendDigit()) sb.append(p.separator()).append(DIGITS.charAt(uniform(10)));
+        return sb.toString();
+    }
+
+    public List<String> passphrases(PassphrasePolicy p, List<String> words, int count) {
+        List<String> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) out.add(passphrase(p, words));
+        return out;
+    }
+
+    /** Entropy of one password in bits, assuming the attacker knows the policy. Approximate when minimums are set. */
+    public static double entropyBits(Policy p) {
+        char[][] cls = classes(p);
+        return p.length() * Math.log(cls[4].length) / Math.log(2);
+    }
+
+    public static double entropyBits(PassphrasePolicy p, List<String> words) {
+        return p.words() * Math.log(words.size()) / Math.log(2) + (p.appendDigit() ? Math.log(10) / Math.log(2) : 0);
+    }
+
+    /* ---- internals ---- */
+
+    /** Per-class alphabets (upper, lower, digits, symbols; null when excluded) followed by their union. */
+    private static char[][] classes(Policy p) {
+        String[] src = { UPPER, LOWER, DIGITS, SYMBOLS };
+        int[] min = { p.minUpper(), p.minLower(), p.minDigits(), p.minSymbols() };
+        char[][] out = new char[5][];
+        StringBuilder all = new StringBuilder();
+        for (int c = 0; c < 4; c++) {
+            if (min[c] < 0) continue;
+            StringBuilder a = new StringBuilder();
+            for (int i = 0; i < src[c].length(); i++) {
+                char ch = src[c].charAt(i);
+                if (!p.excludeAmbiguous() || AMBIGUOUS.indexOf(ch) < 0) a.append(ch);
+            }
+            out[c] = a.toString().toCharArray();
+            all.append(a);
+        }
+        out[4] = all.toString().toCharArray();
+        return out;
+    }
+
+    /** Required characters first, the rest from the union, then a Fisher–Yates shuffle so positions don't leak. */
+    private char[] fill(Policy p, char[][] cls) {
+        char[] pw = new char[p.length()];
+        int[] min = { p.minUpper(), p.minLower(), p.minDigits(), p.minSymbols() };
+        int n = 0;
+        for (int c = 0; c < 4; c++) {
+            for (int k = 0; k < min[c]; k++) pw[n++] = cls[c][uniform(cls[c].length)];
+        }
+        char[] all = cls[4];
+        while (n < pw.length) pw[n++] = all[uniform(all.length)];
+        for (int i = pw.length - 1; i > 0; i--) {
+            int j = uniform(i + 1);
+            char t = pw[i]; pw[i] = pw[j]; pw[j] = t;
+        }
+        return pw;
+    }
+
+    /** Uniform in [0, bound): one byte for bounds up to 256, two above, rejecting the biased top of the range. */
+    private int uniform(int bound) {
+        if (bound <= 256) {
+            int limit = 256 - 256 % bound;
+            while (true) {
+                int b = nextByte();
+                if (b < limit) return b % bound;
+            }
+        }
+        int limit = 65536 - 65536 % bound;
+        while (true) {
+            int v = nextByte() << 8 | nextByte();
+            if (v < limit) return v % bound;
+        }
+    }
+
+    private int nextByte() {
+        if (pos == pool.length) {
+            rnd.nextBytes(pool);
+            pos = 0;
+        }
+        return pool[pos++] & 0xFF;
+    }
+}
@@ -0,0 +1,198 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+import com.oogle.vaultpro.model.VaultData;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Offline "has this password been in a breach?" check against a locally supplied list; nothing touches the network.
+ * Two file formats are accepted, both memory-mapped so a multi-GB list costs address space, not heap:
+ * <ul>
+ *   <li>the sorted SHA-1 list as downloaded from Have I Been Pwned ({@code HASH:count} per line, ordered by hash),
+ *       searched by binary search over byte offsets;</li>
+ *   <li>a compact Bloom filter built from such a list with {@link #buildBloom} (a few bits per hash, ~1% false positives).</li>
+ * </ul>
+ */
+public final class BreachList {
+
+    private static final byte[] BLOOM_MAGIC = {'M', 'V', 'B', 'F'};
+    private static final int BLOOM_VERSION = 1;
+    private static final int BLOOM_HEADER = 4 + 1 + 4 + 8;
+    private static final long WINDOW = 1L << 30; // mappings are ≤ 2 GB each; use 1 GB windows
+    private static final int HASH_HEX = 40;
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try { return MessageDigest.getInstance("SHA-1"); } catch (NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+    });
+
+    private final MappedByteBuffer[] windows;
+    private final long size;
+    private final boolean bloom;
+    private final int k;
+    private final long bits;
+
+    private BreachList(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = ch.size();
+            windows = new MappedByteBuffer[(int) ((size + WINDOW - 1) / WINDOW)];
+            for (int i = 0; i < windows.length; i++) {
+                long off = i * WINDOW;
+                windows[i] = ch.map(FileChannel.MapMode.READ_ONLY, off, Math.min(WINDOW, size - off));
+            }
+        }
+        bloom = size >= BLOOM_HEADER && byteAt(0) == BLOOM_MAGIC[0] && byteAt(1) == BLOOM_MAGIC[1]
+                && byteAt(2) == BLOOM_MAGIC[2] && byteAt(3) == BLOOM_MAGIC[3];
+        if (bloom) {
+            if (byteAt(4) != BLOOM_VERSION) throw new IOException("Unsupported breach filter version " + byteAt(4));
+            k = (int) readLong(5, 4);
+            bits = readLong(9, 8);
+            if (k <= 0 || bits <= 0 || BLOOM_HEADER + (bits + 7) / 8 > size) throw new IOException("Corrupt breach filter");
+        } else {
+            k = 0; bits = 0;
+        }
+    }
+
+    public static BreachList open(Path file) throws IOException { return new BreachList(file); }
+
+    public boolean isBloomFilter() { return bloom; }
+
+    public boolean contains(String password) {
+        if (password == null || password.isEmpty()) return false;
+        byte[] h = SHA1.get().digest(password.getBytes(StandardCharsets.UTF_8));
+        return bloom ? bloomContains(h) : sortedContains(hex(h));
+    }
+
+    /* ---- audit ---- */
+
+    public static final class Result {
+        /** Entries whose current password is on the list. */
+        public final List<Entry> breached = new ArrayList<>();
+        /** Entries with at least one listed password in their history (the old password may still be in use elsewhere). */
+        public final List<Entry> breachedHistory = new ArrayList<>();
+    }
+
+    /** Checks every current and historical password, spread over the common pool. */
+    public Result check(VaultData data) { return check(data, e -> e.history); }
+
+    /** As {@link #check(VaultData)}, with each entry's full history from {@code historyOf}. */
+    public Result check(VaultData data, Function<Entry, List<Entry.PasswordHistory>> historyOf) {
+        record Hit(Entry e, boolean current, boolean history) {}
+        List<Hit> hits = data.entries.parallelStream()
+                .map(e -> {
+                    List<Entry.PasswordHistory> past = historyOf.apply(e);
+                    return new Hit(e, contains(e.password), past != null && past.stream().anyMatch(h -> contains(h.password)));
+                })
+                .filter(h -> h.current() || h.history())
+                .toList();
+        Result r = new Result();
+        for (Hit h : hits) {
+            if (h.current()) r.breached.add(h.e());
+            if (h.history()) r.breachedHistory.add(h.e());
+        }
+        return r;
+    }
+
+    /* ---- sorted hash list ---- */
+
+    private boolean sortedContains(byte[] target) {
+        long lo = 0, hi = size;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            long line = lineStart(mid);
+            int c = compareLine(line, target);
+            if (c == 0) return true;
+            if (c < 0) lo = nextLine(line); else hi = line;
+        }
+        return false;
+    }
+
+    private long lineStart(long pos) {
+        while (pos > 0 && byteAt(pos - 1) != '\n') pos--;
+        return pos;
+    }
+
+    private long nextLine(long pos) {
+        while (pos < size && byteAt(pos) != '\n') pos++;
+        return pos + 1;
+    }
+
+    private int compareLine(long line, byte[] target) {
+        for (int i = 0; i < HASH_HEX; i++) {
+            if (line + i >= size) return -1;
+            int b = byteAt(line + i);
+            if (b >= 'a' && b <= 'f') b -= 'a' - 'A';
+            if (b != target[i]) return b - target[i];
+        }
+        return 0;
+    }
+
+    /* ---- Bloom filter ---- */
+
+    private boolean bloomContains(byte[] sha1) {
+        // SHA-1 output is already uniform: two 64-bit halves drive the k probes (Kirsch–Mitzenmacher)
+        long h1 = ByteBuffer.wrap(sha1, 0, 8).getLong(), h2 = ByteBuffer.wrap(sha1, 8, 8).getLong() | 1;
+        for (int i = 0; i < k; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((byteAt(BLOOM_HEADER + (bit >>> 3)) & (1 << (bit & 7))) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compacts a sorted/unsorted SHA-1 text list into a Bloom filter file. Memory use is the filter itself;
+     * the source is streamed once to count and once to fill.
+     */
+    public static void buildBloom(Path hashList, Path out, double falsePositiveRate) throws IOException {
+        long n = 0;
+        try (BufferedReader r = Files.newBufferedReader(hashList, StandardCharsets.US_ASCII)) {
+            for (String line; (line = r.readLine()) != null; ) if (line.length() >= HASH_HEX) n++;
+        }
+        long m = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        int k = Math.max(1, (int) Math.round((double) m / Math.max(1, n) * Math.log(2)));
+        if ((m + 7) / 8 > Integer.MAX_VALUE - 8) throw new IOException("List too large for a single filter; raise the false-positive rate");
+        byte[] filter = new byte[(int) ((m + 7) / 8)];
+        try (BufferedReader r = Files.newBufferedReader(hashList, StandardCharsets.US_ASCII)) {
+            for (String line; (line = r.readLine()) != null; ) {
+                if (line.length() < HASH_HEX) continue;
+                byte[] sha1 = HexFormat.of().parseHex(line, 0, HASH_HEX);
+                long h1 = ByteBuffer.wrap(sha1, 0, 8).getLong(), h2 = ByteBuffer.wrap(sha1, 8, 8).getLong() | 1;
+                for (int i = 0; i < k; i++) {
+                    long bit = Math.floorMod(h1 + i * h2, m);
+                    filter[(int) (bit >>> 3)] |= (byte) (1 << (bit & 7));
+                }
+            }
+        }
+        Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+        try (DataOutputStream o = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            o.write(BLOOM_MAGIC); o.writeByte(BLOOM_VERSION); o.writeInt(k); o.writeLong(m);
+            o.write(filter);
+        }
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* ---- mapped access ---- */
+
+    private int byteAt(long pos) {
+        return windows[(int) (pos / WINDOW)].get((int) (pos % WINDOW)) & 0xff;
+    }
+
+    private long readLong(long pos, int len) {
+        long v = 0;
+        for (int i = 0; i < len; i++) v = (v << 8) | byteAt(pos + i);
+        return v;
+    }
+
+    private static byte[] hex(byte[] h) {
+        return HexFormat.of().withUpperCase().formatHex(h).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,103 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.crypto.SectionKeys;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A directory of sealed chunks named by a keyed hash of their plaintext (HMAC-SHA256 under a subkey of the section
+ * key, so a name says nothing without the master password). Equal content is stored once; a chunk is sealed with
+ * its own name in the authenticated header, so one file can't stand in for another.
+ */
+final class ChunkStore {
+
+    /**
+     * How long an unreferenced chunk is kept. In a synced folder another device's chunks can arrive well before
+     * the manifest or snapshot that refers to them, and a writer puts its chunks down before its list of them.
+     */
+    static final long GRACE_MS = 7 * 86_400_000L;
+
+    private static final byte[] HEADER = "MVBL\u0001".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path dir;
+    private final Supplier<SecretKey> key;
+    private final String label;
+    private Mac namer;
+
+    ChunkStore(Path dir, Supplier<SecretKey> key, String label) {
+        this.dir = dir;
+        this.key = key;
+        this.label = label;
+    }
+
+    Path dir() { return dir; }
+
+    /** Name of {@code plain[off, off+len)}, writing the chunk unless it is stored already. */
+    synchronized String put(byte[] plain, int off, int len) throws IOException, GeneralSecurityException {
+        String id = name(plain, off, len);
+        Path p = dir.resolve(id);
+        if (Files.exists(p)) return id;
+        Files.createDirectories(dir);
+        byte[] one = Arrays.copyOfRange(plain, off, off + len);
+        try {
+            Path tmp = dir.resolve(id + ".tmp");
+            Files.write(tmp, SectionKeys.seal(key.get(), header(id), one));
+            Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Arrays.fill(one, (byte) 0);
+        }
+        return id;
+    }
+
+    byte[] get(String id) throws IOException, GeneralSecurityException {
+        return SectionKeys.unseal(key.get(), header(id), Files.readAllBytes(dir.resolve(id)));
+    }
+
+    /** Deletes every chunk not in {@code used} and last written more than {@link #GRACE_MS} ago; returns how many went. */
+    synchronized int retain(Set<String> used) throws IOException {
+        if (!Files.isDirectory(dir)) return 0;
+        long cutoff = System.currentTimeMillis() - GRACE_MS;
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                if (used.contains(p.getFileName().toString()) || Files.getLastModifiedTime(p).toMillis() > cutoff) continue;
+                Files.deleteIfExists(p);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private String name(byte[] plain, int off, int len) throws GeneralSecurityException {
+        if (namer == null) {
+            byte[] k = SectionKeys.derive(key.get(), label);
+            try {
+                Mac m = Mac.getInstance("HmacSHA256");
+                m.init(new SecretKeySpec(k, "HmacSHA256"));
+                namer = m;
+            } finally {
+                Arrays.fill(k, (byte) 0);
+            }
+        }
+        namer.update(plain, off, len);
+        return HexFormat.of().formatHex(namer.doFinal());
+    }
+
+    private static byte[] header(String id) {
+        byte[] name = id.getBytes(StandardCharsets.US_ASCII);
+        byte[] h = Arrays.copyOf(HEADER, HEADER.length + name.length);
+        System.arraycopy(name, 0, h, HEADER.length, name.length);
+        return h;
+    }
+}
@@ -0,0 +1,162 @@
+package com.oogle.vaultpro.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.oogle.vaultpro.crypto.SectionKeys;
+import com.oogle.vaultpro.model.Entry;
+import com.oogle.vaultpro.model.SyncLedger;
+import com.oogle.vaultpro.model.VersionVector;
+import com.oogle.vaultpro.model.VersionVector.Order;
+import com.oogle.vaultpro.model.VaultData;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.GeneralSecurityException;
+import java.util.*;
+
+/**
+ * Delta sync between two copies of a vault using per-entry version vectors.
+ * {@link #diff} computes the minimal change set one side needs from the other;
+ * {@link #resolve} decides, per record, whether it wins against the receiving side.
+ * Concurrent edits fall back to the newer {@code updatedAt}; an edit beats a concurrent delete.
+ */
+public final class DeltaSync {
+
+    private static final Gson GSON = new Gson();
+    private static final byte[] LEDGER_HEADER = "MVSY\u0001".getBytes(StandardCharsets.US_ASCII);
+
+    private DeltaSync() {}
+
+    public static final class ChangeSet {
+        public final List<Entry> upserts = new ArrayList<>();
+        public final Map<String, VersionVector> clocks = new HashMap<>();
+        public final Map<String, VersionVector> deletes = new HashMap<>();
+
+        public boolean isEmpty() { return upserts.isEmpty() && deletes.isEmpty(); }
+    }
+
+    /** Records {@code to} has not seen yet: entries/tombstones whose clock is newer or concurrent. */
+    public static ChangeSet diff(VaultData from, SyncLedger fromLedger, SyncLedger toLedger) {
+        ChangeSet cs = new ChangeSet();
+        for (Entry e : from.entries) {
+            VersionVector fc = fromLedger.clock(e.id);
+            if (!toLedger.knows(e.id) || newer(fc.compare(toLedger.clock(e.id)))) {
+                cs.upserts.add(e);
+                cs.clocks.put(e.id, fc);
+            }
+        }
+        for (var t : fromLedger.tombstones.entrySet()) {
+            if (!toLedger.knows(t.getKey()) || newer(t.getValue().compare(toLedger.clock(t.getKey())))) {
+                cs.deletes.put(t.getKey(), t.getValue());
+            }
+        }
+        return cs;
+    }
+
+    /**
+     * Decides which records of {@code cs} win against {@code to} and folds their clocks into {@code toLedger}.
+     * Does not touch {@code to.entries}; the result lists what the caller has to add/replace/remove.
+     */
+    public static VaultMerger.Result resolve(ChangeSet cs, VaultData to, SyncLedger toLedger) {
+        VaultMerger.Result r = new VaultMerger.Result();
+        Map<String, Entry> ours = new HashMap<>(to.entries.size() * 2);
+        for (Entry e : to.entries) ours.put(e.id, e);
+
+        for (Entry theirs : cs.upserts) {
+            VersionVector tc = cs.clocks.getOrDefault(theirs.id, new VersionVector());
+            VersionVector oc = toLedger.clock(theirs.id);
+            Entry mine = ours.get(theirs.id);
+            Order o = tc.compare(oc);
+            if (toLedger.knows(theirs.id) && !newer(o)) continue;
+            VersionVector m = tc.merged(oc);
+            if (o == Order.CONCURRENT && mine != null && mine.updatedAt >= theirs.updatedAt) {
+                // we keep our edit; the merged clock makes it win on the other side next time
+                toLedger.clocks.put(theirs.id, m);
+                continue;
+            }
+            toLedger.tombstones.remove(theirs.id);
+            toLedger.clocks.put(theirs.id, m);
+            if (mine == null) r.added.add(theirs); else r.changed.add(theirs);
+        }
+        for (var d : cs.deletes.entrySet()) {
+            String id = d.getKey();
+            VersionVector oc = toLedger.clock(id);
+            Order o = d.getValue().compare(oc);
+            Entry mine = ours.get(id);
+            if (mine == null) {
+                toLedger.tombstones.put(id, d.getValue().merged(oc));
+            } else if (o == Order.AFTER) {
+                toLedger.clocks.remove(id);
+                toLedger.tombstones.put(id, d.getValue().merged(oc));
+                r.removed.add(mine);
+            } else if (o == Order.CONCURRENT) {
+                toLedger.clocks.put(id, d.getValue().merged(oc)); // edit beats delete
+            }
+        }
+        return r;
+    }
+
+    /** Applies a change set to a vault file model (no UI): resolve, then patch {@code to.entries}. */
+    public static VaultMerger.Result apply(ChangeSet cs, VaultData to, SyncLedger toLedger) {
+        VaultMerger.Result r = resolve(cs, to, toLedger);
+        to.entries.removeAll(r.removed);
+        Map<String, Entry> byId = new HashMap<>();
+        for (Entry e : r.changed) byId.put(e.id, e);
+        to.entries.replaceAll(e -> byId.getOrDefault(e.id, e));
+        to.entries.addAll(r.added);
+        return r;
+    }
+
+    /**
+     * Merges {@code remote}, as read from disk, into {@code local}: by clock if {@code remoteLedger} was written with
+     * that very file, otherwise three-way against {@code base} (see {@link VaultMerger#merge}).
+     */
+    public static VaultMerger.Result merge(VaultData local, SyncLedger ledger, Map<String, Long> base,
+                                           VaultData remote, SyncLedger remoteLedger) {
+        if (remoteLedger == null || remoteLedger.vaultRevision != remote.vaultRevision) {
+            // written by a client without sync metadata, or its ledger hasn't synced along (yet)
+            return VaultMerger.merge(local, base, remote);
+        }
+        remoteLedger.adopt(remote.entries);
+        VaultMerger.Result r = resolve(diff(remote, remoteLedger, ledger), local, ledger);
+        r.remoteRevision = remote.vaultRevision;
+        return r;
+    }
+
+    private static boolean newer(Order o) { return o == Order.AFTER || o == Order.CONCURRENT; }
+
+    /*
+     * ---- ledger file next to the vault: vault.dat → vault.dat.sync, sealed with the section key ----
+     * It syncs separately from the vault, so it may arrive before or after it: only a ledger whose
+     * vaultRevision matches the vault file describes that file (callers fall back to a three-way merge).
+     */
+
+    public static Path ledgerPath(Path vault) { return vault.resolveSibling(vault.getFileName() + ".sync"); }
+
+    /** The ledger next to {@code vault}; null if there is none, it is a plaintext one from before sealing, or unreadable. */
+    public static SyncLedger loadLedger(Path vault, SecretKey key) throws IOException {
+        Path p = ledgerPath(vault);
+        if (!Files.exists(p)) return null;
+        SyncLedger l;
+        try {
+            byte[] plain = SectionKeys.unseal(key, LEDGER_HEADER, Files.readAllBytes(p));
+            l = GSON.fromJson(new String(plain, StandardCharsets.UTF_8), SyncLedger.class);
+        } catch (GeneralSecurityException | JsonParseException ex) {
+            return null;
+        }
+        if (l == null) return null;
+        if (l.clocks == null) l.clocks = new HashMap<>();
+        if (l.tombstones == null) l.tombstones = new HashMap<>();
+        return l;
+    }
+
+    /** Writes {@code ledger}, whose {@code vaultRevision} must be that of the vault file just written. */
+    public static void saveLedger(Path vault, SecretKey key, SyncLedger ledger) throws IOException, GeneralSecurityException {
+        Path p = ledgerPath(vault);
+        Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+        Files.write(tmp, SectionKeys.seal(key, LEDGER_HEADER, GSON.toJson(ledger).getBytes(StandardCharsets.UTF_8)));
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
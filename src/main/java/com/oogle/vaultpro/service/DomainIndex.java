@@ -0,0 +1,146 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * "Which entries belong to this site?" index over {@code Entry.url}.
+ * Entries are bucketed by exact host and by registrable domain (eTLD+1), so a lookup for
+ * {@code https://login.foo.example.com} is a handful of hash probes: the exact host first, then each parent
+ * host up to {@code example.com}, then any other subdomain of {@code example.com}.
+ * Maintained per mutation. Registrable domains come from the bundled Public Suffix List, shared-hosting
+ * suffixes included, so {@code victim.web.app} is never offered for {@code attacker.web.app}. A host no rule of
+ * the list covers is its own domain: without the list's word, sibling subdomains are not trusted.
+ */
+public final class DomainIndex {
+
+    /** The Public Suffix List ({@code /domains/public_suffix_list.dat}), loaded on first use, once per process. */
+    private static final class Suffixes {
+        static final Suffixes LIST = load("/domains/public_suffix_list.dat");
+
+        final Set<String> rules = new HashSet<>(), wildcards = new HashSet<>(), exceptions = new HashSet<>();
+
+        static Suffixes load(String resource) {
+            Suffixes s = new Suffixes();
+            try (InputStream in = DomainIndex.class.getResourceAsStream(resource)) {
+                if (in == null) return s; // no list: every host stays on its own
+                BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                for (String line; (line = r.readLine()) != null; ) {
+                    line = line.strip();
+                    if (line.isEmpty() || line.startsWith("//")) continue;
+                    String rule = line.split("\\s", 2)[0].toLowerCase(Locale.ROOT);
+                    Set<String> into = s.rules;
+                    if (rule.startsWith("!")) { into = s.exceptions; rule = rule.substring(1); }
+                    else if (rule.startsWith("*.")) { into = s.wildcards; rule = rule.substring(2); }
+                    into.add(rule);
+                    try { into.add(IDN.toASCII(rule)); } catch (IllegalArgumentException notConvertible) { /* unicode form only */ }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot load " + resource, e);
+            }
+            return s;
+        }
+
+        /** Where the public suffix of {@code host} starts, by the longest matching rule; -1 if no rule matches. */
+        int suffixStart(String host) {
+            for (int i = 0; ; ) {
+                int dot = host.indexOf('.', i);
+                String s = host.substring(i), rest = dot < 0 ? null : host.substring(dot + 1);
+                if (exceptions.contains(s)) return dot + 1;
+                if (rules.contains(s) || rest != null && wildcards.contains(rest)) return i;
+                if (dot < 0) return -1;
+                i = dot + 1;
+            }
+        }
+    }
+
+    private final Map<String, Set<Entry>> byHost = new HashMap<>();
+    private final Map<String, Set<Entry>> byDomain = new HashMap<>();
+    private final Map<Entry, String> hostOf = new IdentityHashMap<>();
+
+    public static DomainIndex build(List<Entry> entries) {
+        DomainIndex d = new DomainIndex();
+        for (Entry e : entries) d.add(e);
+        return d;
+    }
+
+    public void add(Entry e) {
+        if (hostOf.containsKey(e)) { update(e); return; }
+        String h = hostKey(e.url);
+        if (h == null) return;
+        hostOf.put(e, h);
+        byHost.computeIfAbsent(h, k -> identitySet()).add(e);
+        byDomain.computeIfAbsent(registrableDomain(h), k -> identitySet()).add(e);
+    }
+
+    public void update(Entry e) {
+        String was = hostOf.get(e);
+        if (Objects.equals(was, hostKey(e.url))) return;
+        remove(e);
+        add(e);
+    }
+
+    public void remove(Entry e) {
+        String h = hostOf.remove(e);
+        if (h == null) return;
+        drop(byHost, h, e);
+        drop(byDomain, registrableDomain(h), e);
+    }
+
+    /** Entries for a URL or bare host, best match first: exact host, parent hosts, then the rest of the domain. */
+    public List<Entry> lookup(String url) {
+        String h = hostKey(url);
+        if (h == null) return List.of();
+        String domain = registrableDomain(h);
+        Set<Entry> out = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Entry> ordered = new ArrayList<>();
+        for (String cur = h; cur != null; cur = cur.equals(domain) ? null : parent(cur)) {
+            for (Entry e : byHost.getOrDefault(cur, Set.of())) if (out.add(e)) ordered.add(e);
+        }
+        for (Entry e : byDomain.getOrDefault(domain, Set.of())) if (out.add(e)) ordered.add(e);
+        return ordered;
+    }
+
+    /** Lowercased host without "www."; null when the URL has no usable host. */
+    public static String hostKey(String url) {
+        if (url == null || url.isBlank()) return null;
+        String h = Query.host(url.trim().toLowerCase(Locale.ROOT));
+        if (h.endsWith(".")) h = h.substring(0, h.length() - 1);
+        if (h.startsWith("www.")) h = h.substring(4);
+        return h.isEmpty() ? null : h;
+    }
+
+    /**
+     * eTLD+1, e.g. login.foo.example.co.uk → example.co.uk and victim.web.app → victim.web.app. IPs, single
+     * labels, public suffixes themselves and hosts under a suffix the list doesn't know are returned unchanged.
+     */
+    public static String registrableDomain(String host) {
+        if (host.indexOf('.') < 0 || host.indexOf(':') >= 0 || host.chars().allMatch(c -> c == '.' || Character.isDigit(c))) {
+            return host;
+        }
+        int suffix = Suffixes.LIST.suffixStart(host);
+        if (suffix <= 0) return host;
+        return host.substring(host.lastIndexOf('.', suffix - 2) + 1);
+    }
+
+    private static String parent(String host) {
+        int dot = host.indexOf('.');
+        return dot < 0 ? null : host.substring(dot + 1);
+    }
+
+    private static void drop(Map<String, Set<Entry>> m, String key, Entry e) {
+        Set<Entry> s = m.get(key);
+        if (s == null) return;
+        s.remove(e);
+        if (s.isEmpty()) m.remove(key);
+    }
+
+    private static Set<Entry> identitySet() { return Collections.newSetFromMap(new IdentityHashMap<>()); }
+}
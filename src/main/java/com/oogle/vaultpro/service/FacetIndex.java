@@ -0,0 +1,211 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+import com.oogle.vaultpro.model.VaultChanges;
+import com.oogle.vaultpro.model.VaultData;
+
+import java.util.*;
+
+/**
+ * Sidebar facets (Favorites, Weak, Reused, Old and one per tag) with their member sets, kept up to date
+ * per mutation instead of being recomputed from every entry. Member sets are identity sets, so a filter
+ * can test a row with one lookup. Mutators return the facets whose counts changed.
+ * Weak is judged by {@link StrengthEstimator}, Old by {@link AuditService}; reuse comes from the vault's
+ * {@link PasswordFingerprints}, which this index keeps current alongside its own sets.
+ */
+public final class FacetIndex {
+
+    public static final String ALL = "All";
+    public static final String FAVORITES = "Favorites";
+    public static final String WEAK = "Weak";
+    public static final String REUSED = "Reused";
+    public static final String OLD = "Old";
+    public static final String TAG = "tag:";
+    public static final List<String> FIXED = List.of(ALL, FAVORITES, WEAK, REUSED, OLD);
+    /** Fields an in-place edit must touch to move an entry between facets. */
+    private static final int FACETED = VaultChanges.PASSWORD | VaultChanges.TAGS | VaultChanges.FAVORITE;
+
+    /** What an entry looked like when indexed, so it can be unindexed after the entry itself was edited. */
+    private record Indexed(List<String> tagKeys, boolean favorite, boolean weak, boolean old, PasswordFingerprints.Print print) {}
+
+    private final AuditService audit = new AuditService();
+    private final Map<Entry, Indexed> indexed = new IdentityHashMap<>();
+    private final Map<String, Set<Entry>> members = new HashMap<>();
+    private final Map<String, String> tagKeyByLower = new HashMap<>();
+    private final Map<String, Entry> byId = new HashMap<>();
+    private PasswordFingerprints prints;
+
+    public FacetIndex() { clear(); }
+
+    private void clear() {
+        indexed.clear(); members.clear(); tagKeyByLower.clear(); byId.clear();
+        for (String f : FIXED) members.put(f, identitySet());
+    }
+
+    /** Codec version of {@link #weakFlags}. */
+    public static final int WEAK_FORMAT = 1;
+
+    public void rebuild(List<Entry> entries, PasswordFingerprints prints) { rebuild(entries, prints, null); }
+
+    /**
+     * {@code weak}, if given, holds saved strength verdicts by position (see {@link #weakFlags}) and saves
+     * running the estimator on every password. {@code prints} are only re-indexed if they don't cover exactly
+     * these entries: fingerprints just loaded from the saved indexes (or kept current since) are used as they are.
+     */
+    public void rebuild(List<Entry> entries, PasswordFingerprints prints, BitSet weak) {
+        clear();
+        this.prints = prints;
+        if (!prints.tracks(entries)) prints.reset(entries);
+        VaultData all = new VaultData();
+        all.entries.addAll(entries);
+        AuditService.AuditResult r = audit.run(all);
+        Set<Entry> old = identitySet(); old.addAll(r.old);
+        Map<String, Integer> ignored = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry e = entries.get(i);
+            index(e, weak != null ? weak.get(i) : StrengthEstimator.isWeak(e.password), old.contains(e), ignored);
+        }
+    }
+
+    /** Weak verdicts by position in {@code entries}, for {@link IndexSections}. */
+    public BitSet weakFlags(List<Entry> entries) {
+        BitSet b = new BitSet(entries.size());
+        Set<Entry> weak = members.get(WEAK);
+        for (int i = 0; i < entries.size(); i++) if (weak.contains(entries.get(i))) b.set(i);
+        return b;
+    }
+
+    public Set<String> add(Entry e) {
+        if (indexed.containsKey(e)) return update(e);
+        Map<String, Integer> before = new HashMap<>();
+        prints.put(e);
+        indexAudited(e, before);
+        return changed(before);
+    }
+
+    public Set<String> update(Entry e) {
+        if (!indexed.containsKey(e)) return Set.of();
+        Map<String, Integer> before = new HashMap<>();
+        prints.put(e);
+        unindex(e, before);
+        indexAudited(e, before);
+        return changed(before);
+    }
+
+    public Set<String> remove(Entry e) {
+        if (!indexed.containsKey(e)) return Set.of();
+        Map<String, Integer> before = new HashMap<>();
+        prints.remove(e.id);
+        unindex(e, before);
+        return changed(before);
+    }
+
+    /** Applies a batch of vault changes; returns the facets whose counts changed. */
+    public Set<String> apply(List<VaultChanges.Change> batch) {
+        Set<String> changed = new HashSet<>();
+        for (VaultChanges.Change c : batch) {
+            switch (c) {
+                case VaultChanges.EntryAdded a -> changed.addAll(add(a.entry()));
+                case VaultChanges.EntryRemoved r -> changed.addAll(remove(r.entry()));
+                case VaultChanges.EntryChanged ch when ch.previous() != ch.entry() -> {
+                    changed.addAll(remove(ch.previous()));
+                    changed.addAll(add(ch.entry()));
+                }
+                case VaultChanges.EntryChanged ch -> { if (ch.touches(FACETED)) changed.addAll(update(ch.entry())); }
+            }
+        }
+        return changed;
+    }
+
+    /** Live member set of a facet (empty for unknown facets); {@code All} has no set, callers skip filtering. */
+    public Set<Entry> members(String facet) {
+        if (facet != null && facet.startsWith(TAG)) {
+            String key = tagKeyByLower.get(facet.substring(TAG.length()).toLowerCase(Locale.ROOT));
+            if (key != null) facet = key;
+        }
+        Set<Entry> m = members.get(facet);
+        return m != null ? m : Set.of();
+    }
+
+    public int count(String facet) { return ALL.equals(facet) ? indexed.size() : members(facet).size(); }
+
+    /** Tag facets ("tag:…") in display order. */
+    public List<String> tags() {
+        List<String> t = new ArrayList<>(tagKeyByLower.values());
+        t.sort(String.CASE_INSENSITIVE_ORDER);
+        return t;
+    }
+
+    /* ---- internals ---- */
+
+    private void indexAudited(Entry e, Map<String, Integer> before) {
+        VaultData one = new VaultData();
+        one.entries.add(e);
+        AuditService.AuditResult r = audit.run(one);
+        index(e, StrengthEstimator.isWeak(e.password), r.old.contains(e), before);
+    }
+
+    private void index(Entry e, boolean weak, boolean old, Map<String, Integer> before) {
+        note(ALL, before);
+        List<String> tagKeys = new ArrayList<>();
+        if (e.tags != null) {
+            for (String t : e.tags) {
+                if (t == null || t.isBlank()) continue;
+                String key = tagKeyByLower.computeIfAbsent(t.toLowerCase(Locale.ROOT), k -> TAG + t);
+                if (!tagKeys.contains(key)) tagKeys.add(key);
+            }
+        }
+        for (String k : tagKeys) { note(k, before); members.computeIfAbsent(k, x -> identitySet()).add(e); }
+        if (e.favorite) { note(FAVORITES, before); members.get(FAVORITES).add(e); }
+        if (weak) { note(WEAK, before); members.get(WEAK).add(e); }
+        if (old) { note(OLD, before); members.get(OLD).add(e); }
+        byId.put(e.id, e);
+        PasswordFingerprints.Print print = prints.current(e.id);
+        int sharing = prints.sharingCount(print);
+        if (sharing > 1) {
+            note(REUSED, before);
+            members.get(REUSED).add(e);
+            // the others of a larger group are in already; a pair may have just formed
+            if (sharing == 2) for (String id : prints.sharing(print)) { Entry m = byId.get(id); if (m != null) members.get(REUSED).add(m); }
+        }
+        indexed.put(e, new Indexed(tagKeys, e.favorite, weak, old, print));
+    }
+
+    private void unindex(Entry e, Map<String, Integer> before) {
+        if (!indexed.containsKey(e)) return;
+        note(ALL, before);
+        Indexed was = indexed.remove(e);
+        for (String k : was.tagKeys()) {
+            note(k, before);
+            Set<Entry> m = members.get(k);
+            m.remove(e);
+            if (m.isEmpty()) {
+                members.remove(k);
+                tagKeyByLower.values().remove(k);
+            }
+        }
+        if (was.favorite()) { note(FAVORITES, before); members.get(FAVORITES).remove(e); }
+        if (was.weak()) { note(WEAK, before); members.get(WEAK).remove(e); }
+        if (was.old()) { note(OLD, before); members.get(OLD).remove(e); }
+        if (byId.get(e.id) == e) byId.remove(e.id);
+        Set<Entry> reused = members.get(REUSED);
+        if (reused.remove(e)) note(REUSED, before);
+        if (was.print() != null) {
+            // prints no longer lists e under its old fingerprint; a lone survivor is not reused any more
+            Set<String> rest = prints.sharing(was.print());
+            if (rest.size() == 1) reused.remove(byId.get(rest.iterator().next()));
+        }
+    }
+
+    private void note(String facet, Map<String, Integer> before) {
+        before.computeIfAbsent(facet, this::count);
+    }
+
+    private Set<String> changed(Map<String, Integer> before) {
+        Set<String> out = new HashSet<>();
+        before.forEach((f, n) -> { if (count(f) != n) out.add(f); });
+        return out;
+    }
+
+    private static Set<Entry> identitySet() { return Collections.newSetFromMap(new IdentityHashMap<>()); }
+}
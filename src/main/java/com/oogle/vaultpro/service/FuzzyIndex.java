@@ -0,0 +1,210 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ranked fuzzy matching over label, username, URL host and tags.
+ * Keys are lowercased once at build time into one flat char array, each with a 64-bit "which characters occur"
+ * mask so most non-matches are rejected without touching the chars. Scoring is a greedy subsequence match
+ * with bonuses for word starts, consecutive runs and prefixes, tolerating one missing character
+ * (two from eight query characters up). The best {@code k} hits are kept in a primitive min-heap; once it is
+ * full, a key is dropped as soon as even a perfect rest of the match couldn't beat the weakest kept hit.
+ */
+public final class FuzzyIndex {
+
+    private static final int FIELDS = 4;
+    /** Label counts most; username and host a bit less; tags least. */
+    private static final int[] WEIGHT = {10, 8, 8, 6};
+
+    private final List<Entry> entries;
+    private final char[] chars;
+    private final int[] start;   // key (entry * FIELDS + field) spans chars[start[key], start[key + 1])
+    private final long[] mask;
+    private final long[] entryMask;
+
+    private FuzzyIndex(List<Entry> entries) {
+        this.entries = List.copyOf(entries);
+        int n = this.entries.size();
+        String[] keys = new String[n * FIELDS];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            Entry e = this.entries.get(i);
+            keys[i * FIELDS] = norm(e.label);
+            keys[i * FIELDS + 1] = norm(e.username);
+            keys[i * FIELDS + 2] = e.url == null ? "" : Query.host(norm(e.url));
+            keys[i * FIELDS + 3] = e.tags == null ? "" : norm(String.join(" ", e.tags));
+            for (int f = 0; f < FIELDS; f++) total += keys[i * FIELDS + f].length();
+        }
+        chars = new char[total];
+        start = new int[keys.length + 1];
+        mask = new long[keys.length];
+        entryMask = new long[n];
+        int at = 0;
+        for (int k = 0; k < keys.length; k++) {
+            start[k] = at;
+            keys[k].getChars(0, keys[k].length(), chars, at);
+            at += keys[k].length();
+            mask[k] = maskOf(keys[k]);
+            entryMask[k / FIELDS] |= mask[k];
+        }
+        start[keys.length] = at;
+    }
+
+    public static FuzzyIndex build(List<Entry> entries) { return new FuzzyIndex(entries); }
+
+    public int size() { return entries.size(); }
+
+    public Entry entry(int i) { return entries.get(i); }
+
+    /**
+     * Positions of the best {@code k} matches, best first. Empty for a blank query.
+     */
+    public int[] top(String query, int k) {
+        char[] q = norm(query == null ? "" : query.trim()).toCharArray();
+        if (q.length == 0 || k <= 0) return new int[0];
+        long[] qBit = new long[q.length];
+        long qMask = 0;
+        for (int i = 0; i < q.length; i++) { qBit[i] = bitOf(q[i]); qMask |= qBit[i]; }
+        int maxMiss = q.length >= 8 ? 2 : q.length >= 4 ? 1 : 0;
+        int[][] rest = bounds(q);
+
+        int[] heapIdx = new int[k], heapScore = new int[k];
+        int size = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            if ((qMask & ~entryMask[i]) != 0 && absent(qBit, entryMask[i]) > maxMiss) continue;
+            int best = 0;
+            for (int f = 0; f < FIELDS; f++) {
+                int key = i * FIELDS + f;
+                if (Long.bitCount(qMask & ~mask[key]) > maxMiss) continue;
+                int need = Math.max(size < k ? 0 : heapScore[0], best) / WEIGHT[f]; // what this key has to beat
+                int s = score(q, qBit, rest, mask[key], start[key], start[key + 1], maxMiss, need) * WEIGHT[f];
+                if (s > best) best = s;
+            }
+            if (best == 0) continue;
+            if (size < k) {
+                heapIdx[size] = i; heapScore[size] = best;
+                siftUp(heapIdx, heapScore, size++);
+            } else if (best > heapScore[0]) {
+                heapIdx[0] = i; heapScore[0] = best;
+                siftDown(heapIdx, heapScore, size);
+            }
+        }
+        int[] out = new int[size];
+        for (int n = size; n > 0; n--) {
+            out[n - 1] = heapIdx[0];
+            heapIdx[0] = heapIdx[n - 1]; heapScore[0] = heapScore[n - 1];
+            siftDown(heapIdx, heapScore, n - 1);
+        }
+        return out;
+    }
+
+    /**
+     * Score of one key, or 0 if it doesn't match or can't score above {@code need}: after each query character the
+     * score so far plus {@code rest} (the most the remaining characters could add) is checked against it.
+     */
+    private int score(char[] q, long[] qBit, int[][] rest, long keyMask, int from, int to, int maxMiss, int need) {
+        int score = 0, ki = from, run = 0, miss = 0, first = -1, sep = 0;
+        int length = (to - from) / 8;
+        if (need > 0 && rest[0][0] + 25 - length <= need) return 0;
+        for (int qi = 0; qi < q.length; qi++) {
+            char c = q[qi];
+            int found = -1;
+            // chars absent from the key are misses without a scan
+            if ((keyMask & qBit[qi]) != 0) {
+                for (int j = ki; j < to; j++) if (chars[j] == c) { found = j; break; }
+            }
+            if (found < 0) {
+                if (++miss > maxMiss) return 0;
+                run = 0;
+                if (need > 0 && score + rest[qi + 1][sep] + (first <= from ? 25 : 0) - length - miss * 40 <= need) return 0;
+                continue;
+            }
+            if (first < 0) first = found;
+            int s = 16;
+            if (found == ki && score > 0) { run++; s += Math.min(run, 6) * 12; } else run = 0;
+            if (found == from || !Character.isLetterOrDigit(chars[found - 1])) s += 30;
+            s -= Math.min(found - ki, 12);
+            score += s;
+            ki = found + 1;
+            sep = Character.isLetterOrDigit(c) ? 0 : 1;
+            if (need > 0 && score + rest[qi + 1][Math.min(run, 6) * 2 + sep] + (first == from ? 25 : 0) - length - miss * 40 <= need) return 0;
+        }
+        if (first == from) score += 25;
+        score -= miss * 40 + (to - from) / 8;
+        return Math.max(score, 1);
+    }
+
+    /**
+     * {@code rest[i][r * 2 + sep]}: the most query characters {@code i..} can add when {@code r} matched characters
+     * before them ran consecutively and the last one matched was a separator ({@code sep} 1) or not. Every
+     * character either continues the run, a word start only right after a separator, or starts anew at a word
+     * start; a miss never adds. {@code rest[0][0]} bounds a whole match (before the prefix bonus).
+     */
+    private static int[][] bounds(char[] q) {
+        int[][] rest = new int[q.length + 1][14];
+        for (int i = q.length - 1; i >= 0; i--) {
+            int next = Character.isLetterOrDigit(q[i]) ? 0 : 1;
+            for (int r = 0; r <= 6; r++) {
+                for (int sep = 0; sep <= 1; sep++) {
+                    int run = Math.min(r + 1, 6);
+                    int fresh = 16 + 30 + rest[i + 1][next];
+                    int cont = 16 + run * 12 + sep * 30 + rest[i + 1][run * 2 + next];
+                    rest[i][r * 2 + sep] = Math.max(fresh, cont);
+                }
+            }
+        }
+        return rest;
+    }
+
+    /** Query characters (with repeats) that occur nowhere in the key set. */
+    private static int absent(long[] qBit, long keyMask) {
+        int n = 0;
+        for (long b : qBit) if ((keyMask & b) == 0) n++;
+        return n;
+    }
+
+    /* ---- min-heap on score ---- */
+
+    private static void siftUp(int[] idx, int[] sc, int i) {
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (sc[p] <= sc[i]) break;
+            swap(idx, sc, i, p);
+            i = p;
+        }
+    }
+
+    private static void siftDown(int[] idx, int[] sc, int size) {
+        int i = 0;
+        while (true) {
+            int l = 2 * i + 1, r = l + 1, m = i;
+            if (l < size && sc[l] < sc[m]) m = l;
+            if (r < size && sc[r] < sc[m]) m = r;
+            if (m == i) return;
+            swap(idx, sc, i, m);
+            i = m;
+        }
+    }
+
+    private static void swap(int[] idx, int[] sc, int a, int b) {
+        int t = idx[a]; idx[a] = idx[b]; idx[b] = t;
+        t = sc[a]; sc[a] = sc[b]; sc[b] = t;
+    }
+
+    private static String norm(String s) { return s == null ? "" : s.toLowerCase(Locale.ROOT); }
+
+    /** a–z and 0–9 get their own bit; everything else shares the upper bits by hash. */
+    private static long maskOf(String s) {
+        long m = 0;
+        for (int i = 0; i < s.length(); i++) m |= bitOf(s.charAt(i));
+        return m;
+    }
+
+    private static long bitOf(char c) {
+        int bit = c >= 'a' && c <= 'z' ? c - 'a' : c >= '0' && c <= '9' ? 26 + c - '0' : 36 + c % 28;
+        return 1L << bit;
+    }
+}
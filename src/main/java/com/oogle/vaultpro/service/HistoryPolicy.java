@@ -0,0 +1,55 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.prefs.Preferences;
+
+/**
+ * How much password history to keep per entry: at most {@code maxCount} old passwords, none older than
+ * {@code maxAgeDays}. The newest one is always kept, since it dates the current password. Unless the user sets
+ * limits nothing is dropped, as before there was a policy.
+ */
+public record HistoryPolicy(int maxCount, int maxAgeDays) {
+
+    public static final HistoryPolicy UNLIMITED = new HistoryPolicy(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    public static final HistoryPolicy DEFAULT = UNLIMITED;
+
+    public HistoryPolicy {
+        if (maxCount < 1) throw new IllegalArgumentException("Keep at least one old password");
+        if (maxAgeDays < 1) throw new IllegalArgumentException("Maximum age must be at least one day");
+    }
+
+    public static HistoryPolicy load(Preferences prefs) {
+        try {
+            return new HistoryPolicy(prefs.getInt("historyMaxCount", DEFAULT.maxCount), prefs.getInt("historyMaxDays", DEFAULT.maxAgeDays));
+        } catch (IllegalArgumentException ex) {
+            return DEFAULT;
+        }
+    }
+
+    public boolean isUnlimited() { return maxCount == Integer.MAX_VALUE && maxAgeDays == Integer.MAX_VALUE; }
+
+    public void save(Preferences prefs) {
+        prefs.putInt("historyMaxCount", maxCount);
+        prefs.putInt("historyMaxDays", maxAgeDays);
+    }
+
+    /**
+     * Trims {@code older} (newest first, following {@code kept} newer items that stay elsewhere) from its old end.
+     * Returns how many items were dropped.
+     */
+    public int compact(Deque<Entry.PasswordHistory> older, int kept, long now) {
+        int dropped = 0;
+        while (!older.isEmpty() && older.size() + kept > maxCount) { older.removeLast(); dropped++; }
+        if (maxAgeDays == Integer.MAX_VALUE) return dropped;
+        long cutoff = now - maxAgeDays * 86_400_000L;
+        for (Iterator<Entry.PasswordHistory> it = older.descendingIterator(); it.hasNext(); ) {
+            if (it.next().changedAt >= cutoff) break;
+            it.remove();
+            dropped++;
+        }
+        return dropped;
+    }
+}
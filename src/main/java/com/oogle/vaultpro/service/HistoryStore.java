@@ -0,0 +1,180 @@
+package com.oogle.vaultpro.service;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.oogle.vaultpro.crypto.SectionKeys;
+import com.oogle.vaultpro.diag.Metrics;
+import com.oogle.vaultpro.model.Entry;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Older password history, kept out of the vault file in its own encrypted section ({@code vault.dat.hist}).
+ * Entries carry only their newest history item (which dates the current password); {@link #spill} moves
+ * anything older in here on save, and the section is rewritten only when it changed. It is read on first
+ * use (history-based reuse warnings, the audit), not on unlock. Per entry the items sit in a deque, newest
+ * first, trimmed from the old end by the {@link HistoryPolicy}. The file is shared with other devices through
+ * the vault folder: before rewriting it, whatever another device spilled since it was last read is merged in,
+ * and only entries known to be deleted lose their history.
+ */
+public final class HistoryStore {
+
+    private static final byte[] HEADER = "MVHS\u0001".getBytes(StandardCharsets.US_ASCII);
+    private static final Gson GSON = new Gson();
+
+    private final Path file;
+    private final Supplier<SecretKey> key;
+    private HistoryPolicy policy;
+    private Map<String, ArrayDeque<Entry.PasswordHistory>> older; // null until loaded
+    private VaultWatcher.Stamp stamp; // of the file as last read or written here
+    private boolean dirty;
+
+    public HistoryStore(Path vault, Supplier<SecretKey> key, HistoryPolicy policy) {
+        this.file = path(vault);
+        this.key = key;
+        this.policy = policy;
+    }
+
+    public static Path path(Path vault) { return vault.resolveSibling(vault.getFileName() + ".hist"); }
+
+    public synchronized boolean isLoaded() { return older != null; }
+
+    /** Reads the section if it hasn't been yet; a missing file is an empty history. */
+    public synchronized void load() throws IOException, GeneralSecurityException {
+        if (older != null) return;
+        VaultWatcher.Stamp s = VaultWatcher.Stamp.of(file);
+        older = read();
+        stamp = s;
+    }
+
+    private Map<String, ArrayDeque<Entry.PasswordHistory>> read() throws IOException, GeneralSecurityException {
+        Map<String, ArrayDeque<Entry.PasswordHistory>> m = new HashMap<>();
+        if (Files.exists(file)) {
+            byte[] plain = SectionKeys.unseal(key.get(), HEADER, Files.readAllBytes(file));
+            try {
+                Map<String, List<Entry.PasswordHistory>> raw = Metrics.time("deserialize.history", () -> GSON.fromJson(
+                        new String(plain, StandardCharsets.UTF_8), new TypeToken<Map<String, List<Entry.PasswordHistory>>>() {}.getType()));
+                if (raw != null) raw.forEach((id, l) -> m.put(id, new ArrayDeque<>(l)));
+            } finally {
+                Arrays.fill(plain, (byte) 0);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Folds in what another device spilled since the file was last read or written here: per entry the union of
+     * both, newest first. Marks the store dirty, since the file may in turn lack what was spilled here.
+     */
+    private void mergeFromDisk() throws IOException, GeneralSecurityException {
+        VaultWatcher.Stamp s = VaultWatcher.Stamp.of(file);
+        if (s == null || s.equals(stamp)) return;
+        Map<String, ArrayDeque<Entry.PasswordHistory>> theirs = read();
+        stamp = s;
+        theirs.forEach((id, d) -> {
+            ArrayDeque<Entry.PasswordHistory> mine = older.get(id);
+            if (mine == null) { older.put(id, d); return; }
+            Set<String> have = new HashSet<>();
+            for (Entry.PasswordHistory h : mine) have.add(h.changedAt + ":" + h.password);
+            List<Entry.PasswordHistory> all = new ArrayList<>(mine);
+            for (Entry.PasswordHistory h : d) if (have.add(h.changedAt + ":" + h.password)) all.add(h);
+            if (all.size() == mine.size()) return;
+            all.sort(Comparator.comparingLong((Entry.PasswordHistory h) -> h.changedAt).reversed());
+            older.put(id, new ArrayDeque<>(all));
+        });
+        dirty = true;
+    }
+
+    /** Full history of {@code e}, newest first: what the entry carries, then the spilled part if loaded. */
+    public synchronized List<Entry.PasswordHistory> of(Entry e) {
+        Deque<Entry.PasswordHistory> d = older != null ? older.get(e.id) : null;
+        if (d == null || d.isEmpty()) return e.history;
+        List<Entry.PasswordHistory> all = new ArrayList<>(e.history.size() + d.size());
+        all.addAll(e.history);
+        all.addAll(d);
+        return all;
+    }
+
+    public synchronized HistoryPolicy policy() { return policy; }
+
+    public synchronized void setPolicy(HistoryPolicy p) { policy = p; }
+
+    /**
+     * Moves all but the newest history item of each entry into this section, drops the history of
+     * {@code deleted} entries, applies the policy and writes the file if anything changed. Call right before
+     * saving the vault. An entry that is merely unknown here keeps its history: another device may have added it.
+     * Does no I/O at all when no entry has more than one history item and nothing was changed since the last write.
+     */
+    public synchronized void spill(List<Entry> entries, Set<String> deleted, long now) throws IOException, GeneralSecurityException {
+        boolean any = false;
+        for (Entry e : entries) if (e.history != null && e.history.size() > 1) { any = true; break; }
+        if (!any && !dirty) return;
+        load();
+        try {
+            mergeFromDisk();
+            Set<String> live = new HashSet<>();
+            for (Entry e : entries) {
+                live.add(e.id);
+                if (e.history == null || e.history.size() <= 1) continue;
+                ArrayDeque<Entry.PasswordHistory> d = older.computeIfAbsent(e.id, k -> new ArrayDeque<>());
+                List<Entry.PasswordHistory> moved = e.history.subList(1, e.history.size());
+                for (int i = moved.size() - 1; i >= 0; i--) d.addFirst(moved.get(i)); // newer than anything already here
+                dirty = true;
+            }
+            for (String id : deleted) if (!live.contains(id) && older.remove(id) != null) dirty = true;
+            if (compactLoaded(now) > 0) dirty = true;
+            if (dirty) write();
+        } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+            older = null; // entries still hold what was being moved; re-read the file next time
+            throw ex;
+        }
+        for (Entry e : entries) {
+            if (e.history != null && e.history.size() > 1) e.history.subList(1, e.history.size()).clear();
+        }
+    }
+
+    /** Applies the current policy to everything (loading it first); returns how many items were dropped. */
+    public synchronized int compact(List<Entry> entries, long now) throws IOException, GeneralSecurityException {
+        load();
+        int dropped = 0;
+        for (Entry e : entries) {
+            if (e.history == null || e.history.size() <= 1) continue;
+            ArrayDeque<Entry.PasswordHistory> d = new ArrayDeque<>(e.history.subList(1, e.history.size()));
+            dropped += policy.compact(d, 1, now);
+            e.history.subList(1, e.history.size()).clear();
+            e.history.addAll(d);
+        }
+        dropped += compactLoaded(now);
+        if (dropped > 0) dirty = true;
+        return dropped;
+    }
+
+    private int compactLoaded(long now) {
+        int dropped = 0;
+        for (Iterator<ArrayDeque<Entry.PasswordHistory>> it = older.values().iterator(); it.hasNext(); ) {
+            ArrayDeque<Entry.PasswordHistory> d = it.next();
+            dropped += policy.compact(d, 1, now); // the entry's own newest item counts against maxCount
+            if (d.isEmpty()) it.remove();
+        }
+        return dropped;
+    }
+
+    private void write() throws IOException, GeneralSecurityException {
+        byte[] plain = GSON.toJson(older).getBytes(StandardCharsets.UTF_8);
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, SectionKeys.seal(key.get(), HEADER, plain));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            stamp = VaultWatcher.Stamp.of(file);
+            dirty = false;
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+    }
+}
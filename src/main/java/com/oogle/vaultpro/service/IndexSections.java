@@ -0,0 +1,144 @@
+package com.oogle.vaultpro.service;
+
+import com.google.gson.Gson;
+import com.oogle.vaultpro.crypto.SectionKeys;
+import com.oogle.vaultpro.model.VaultData;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Saved search and audit indexes of a large vault ({@code vault.dat.idx}), so a warm unlock reads them instead
+ * of rebuilding from every entry. The file is a small sealed directory followed by independently sealed
+ * sections; a section is only read and decrypted when first asked for. The directory records the
+ * {@code vaultRevision}, {@code lastModified} and entry count it was written for, and each section's
+ * authenticated header includes the revision, so anything written for another saved state of the vault is
+ * ignored. Unsaved edits change none of those, so a section is only current until the vault is edited; callers
+ * stop reading once it has been (see {@code Workspace.Session}).
+ * Below {@link #MIN_ENTRIES} rebuilding is cheaper than unwrapping the section key, and no file is kept.
+ */
+public final class IndexSections {
+
+    public static final int MIN_ENTRIES = 5_000;
+    public static final String SEARCH = "search", WEAK = "weak", PRINTS = "prints";
+
+    private static final byte[] MAGIC = "MVIX\u0001".getBytes(StandardCharsets.US_ASCII);
+    private static final Gson GSON = new Gson();
+
+    /** A serialized index and the codec version it was written with. */
+    public record Section(int version, byte[] bytes) {}
+
+    private static final class Directory {
+        long revision, lastModified;
+        int count;
+        Map<String, long[]> sections = new HashMap<>(); // name -> {version, offset after the directory, length}
+    }
+
+    private final Path file;
+    private final Supplier<SecretKey> key;
+    private Directory dir;     // null until read
+    private long dataStart;    // where the sections begin
+    private boolean unusable;  // missing, stale or unreadable; stays so until the next write
+
+    public IndexSections(Path vault, Supplier<SecretKey> key) {
+        this.file = path(vault);
+        this.key = key;
+    }
+
+    public static Path path(Path vault) { return vault.resolveSibling(vault.getFileName() + ".idx"); }
+
+    public static boolean worthKeeping(VaultData data) { return data.entries.size() >= MIN_ENTRIES; }
+
+    /**
+     * Bytes of a section written for exactly this state of {@code data}, or null (no file, other revision,
+     * other codec version, damaged). Never throws: a missing index only means a rebuild.
+     */
+    public synchronized byte[] read(VaultData data, String name, int version) {
+        if (!open(data)) return null;
+        long[] s = dir.sections.get(name);
+        if (s == null || s[0] != version) return null;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(s[2]));
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, dataStart + s[1] + buf.position()) < 0) return null;
+            }
+            return SectionKeys.unseal(key.get(), aad(name, dir.revision), buf.array());
+        } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /** Replaces the file with {@code sections} for the current state of {@code data}. */
+    public synchronized void write(VaultData data, Map<String, Section> sections) throws IOException, GeneralSecurityException {
+        SecretKey k = key.get();
+        Directory d = new Directory();
+        d.revision = data.vaultRevision;
+        d.lastModified = data.lastModified;
+        d.count = data.entries.size();
+        List<byte[]> sealed = new ArrayList<>();
+        long offset = 0;
+        for (Map.Entry<String, Section> s : sections.entrySet()) {
+            byte[] b = SectionKeys.seal(k, aad(s.getKey(), d.revision), s.getValue().bytes());
+            d.sections.put(s.getKey(), new long[]{ s.getValue().version(), offset, b.length });
+            sealed.add(b);
+            offset += b.length;
+        }
+        byte[] head = SectionKeys.seal(k, aad("dir", 0), GSON.toJson(d).getBytes(StandardCharsets.UTF_8));
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+            out.write(MAGIC);
+            out.writeInt(head.length);
+            out.write(head);
+            for (byte[] b : sealed) out.write(b);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dir = d;
+        dataStart = MAGIC.length + 4L + head.length;
+        unusable = false;
+    }
+
+    /** Drops the file (the vault shrank below the threshold, or its indexes can't be trusted). */
+    public synchronized void delete() throws IOException {
+        Files.deleteIfExists(file);
+        dir = null;
+        unusable = true;
+    }
+
+    private boolean open(VaultData data) {
+        if (dir == null && !unusable) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer pre = ByteBuffer.allocate(MAGIC.length + 4);
+                while (pre.hasRemaining()) if (ch.read(pre) < 0) throw new IOException("Truncated index file");
+                if (!Arrays.equals(Arrays.copyOf(pre.array(), MAGIC.length), MAGIC)) throw new IOException("Not an index file");
+                ByteBuffer head = ByteBuffer.allocate(pre.getInt(MAGIC.length));
+                while (head.hasRemaining()) if (ch.read(head) < 0) throw new IOException("Truncated index file");
+                byte[] json = SectionKeys.unseal(key.get(), aad("dir", 0), head.array());
+                dir = GSON.fromJson(new String(json, StandardCharsets.UTF_8), Directory.class);
+                dataStart = ch.position();
+            } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+                unusable = true;
+            }
+        }
+        if (dir == null) return false;
+        return dir.revision == data.vaultRevision && dir.lastModified == data.lastModified && dir.count == data.entries.size();
+    }
+
+    private static byte[] aad(String name, long revision) {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        b.writeBytes(MAGIC);
+        b.writeBytes(name.getBytes(StandardCharsets.UTF_8));
+        b.write(0);
+        for (int i = 7; i >= 0; i--) b.write((int) (revision >>> (i * 8)));
+        return b.toByteArray();
+    }
+}
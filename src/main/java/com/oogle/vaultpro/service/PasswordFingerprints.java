@@ -0,0 +1,213 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Keyed fingerprints (HMAC-SHA256 truncated to 128 bits) of every current and historical password in a vault,
+ * in fingerprint → entry-id multimaps. Reuse checks are then hash lookups: nothing compares or keeps plaintext.
+ * The key is random per unlocked vault and never stored, so fingerprints are useless outside this process;
+ * large vaults instead derive it from their section key, so the fingerprints can be saved with the other
+ * indexes ({@link IndexSections}) and are still useless without the master password.
+ * Entries are tracked by id with the fingerprints they were indexed under, so an edited entry can be
+ * re-indexed without knowing its old password.
+ */
+public final class PasswordFingerprints {
+
+    public record Print(long hi, long lo) {}
+
+    private record Indexed(Print current, List<Print> history) {}
+
+    private final Mac mac;
+    private final Function<Entry, List<Entry.PasswordHistory>> historyOf;
+    private final Map<Print, Set<String>> current = new HashMap<>();
+    private final Map<Print, Set<String>> history = new HashMap<>();
+    private final Map<String, Indexed> byId = new HashMap<>();
+
+    private PasswordFingerprints(byte[] key, Function<Entry, List<Entry.PasswordHistory>> historyOf) {
+        this.historyOf = historyOf;
+        try {
+            mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 unavailable", ex);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    /** {@code historyOf} gives an entry's full password history (it may live outside the entry, see {@link HistoryStore}). */
+    public static PasswordFingerprints build(List<Entry> entries, SecureRandom rnd, Function<Entry, List<Entry.PasswordHistory>> historyOf) {
+        byte[] key = new byte[32];
+        rnd.nextBytes(key);
+        return build(entries, key, historyOf);
+    }
+
+    /** Same, under a given HMAC key (which is wiped). */
+    public static PasswordFingerprints build(List<Entry> entries, byte[] key, Function<Entry, List<Entry.PasswordHistory>> historyOf) {
+        PasswordFingerprints p = new PasswordFingerprints(key, historyOf);
+        p.reset(entries);
+        return p;
+    }
+
+    /** Codec version of {@link #save}. */
+    static final int FORMAT = 1;
+
+    /** Every entry's fingerprints, for {@link IndexSections}. Only meaningful under the same key. */
+    synchronized byte[] save() {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(b)) {
+            out.writeInt(byId.size());
+            for (Map.Entry<String, Indexed> e : byId.entrySet()) {
+                out.writeUTF(e.getKey());
+                Print cur = e.getValue().current();
+                out.writeBoolean(cur != null);
+                if (cur != null) { out.writeLong(cur.hi()); out.writeLong(cur.lo()); }
+                out.writeInt(e.getValue().history().size());
+                for (Print p : e.getValue().history()) { out.writeLong(p.hi()); out.writeLong(p.lo()); }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return b.toByteArray();
+    }
+
+    /** Fingerprints from {@link #save}, which must have been made under {@code key} (wiped); null if unreadable. */
+    static PasswordFingerprints load(byte[] key, Function<Entry, List<Entry.PasswordHistory>> historyOf, byte[] saved) {
+        PasswordFingerprints p = new PasswordFingerprints(key, historyOf);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(saved))) {
+            for (int n = in.readInt(); n > 0; n--) {
+                String id = in.readUTF();
+                Print cur = in.readBoolean() ? new Print(in.readLong(), in.readLong()) : null;
+                List<Print> hist = new ArrayList<>();
+                for (int h = in.readInt(); h > 0; h--) hist.add(new Print(in.readLong(), in.readLong()));
+                if (cur != null) p.current.computeIfAbsent(cur, k -> new HashSet<>()).add(id);
+                for (Print h : hist) p.history.computeIfAbsent(h, k -> new HashSet<>()).add(id);
+                p.byId.put(id, new Indexed(cur, List.copyOf(hist)));
+            }
+            return p;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /** Re-indexes from scratch, dropping ids that are no longer in {@code entries}. */
+    public synchronized void reset(List<Entry> entries) {
+        current.clear(); history.clear(); byId.clear();
+        for (Entry e : entries) put(e);
+    }
+
+    /**
+     * Whether exactly the entries of {@code entries} are indexed, by id. Fingerprints built or loaded for a vault
+     * and kept current through {@link #put}/{@link #remove} then need no {@link #reset}.
+     */
+    public synchronized boolean tracks(List<Entry> entries) {
+        if (byId.size() != entries.size()) return false;
+        for (Entry e : entries) if (!byId.containsKey(e.id)) return false;
+        return true;
+    }
+
+    /** Fingerprint of a password, or null for an empty one (empty passwords are never "reused"). */
+    public synchronized Print of(CharSequence pw) {
+        if (pw == null || pw.isEmpty()) return null;
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(pw));
+        mac.update(bytes.duplicate());
+        byte[] d = mac.doFinal();
+        if (bytes.hasArray()) Arrays.fill(bytes.array(), (byte) 0);
+        ByteBuffer b = ByteBuffer.wrap(d);
+        return new Print(b.getLong(), b.getLong());
+    }
+
+    /** Indexes (or re-indexes) an entry's current password and history. */
+    public synchronized void put(Entry e) {
+        remove(e.id);
+        Print cur = of(e.password);
+        List<Print> hist = new ArrayList<>();
+        List<Entry.PasswordHistory> past = historyOf.apply(e);
+        if (past != null) {
+            for (Entry.PasswordHistory h : past) {
+                Print p = of(h.password);
+                if (p != null && !hist.contains(p)) hist.add(p);
+            }
+        }
+        if (cur != null) current.computeIfAbsent(cur, k -> new HashSet<>()).add(e.id);
+        for (Print p : hist) history.computeIfAbsent(p, k -> new HashSet<>()).add(e.id);
+        byId.put(e.id, new Indexed(cur, List.copyOf(hist)));
+    }
+
+    public synchronized void remove(String id) {
+        Indexed was = byId.remove(id);
+        if (was == null) return;
+        if (was.current() != null) unlink(current, was.current(), id);
+        for (Print p : was.history()) unlink(history, p, id);
+    }
+
+    /** The fingerprint an entry's current password was indexed under, or null. */
+    public synchronized Print current(String id) {
+        Indexed i = byId.get(id);
+        return i != null ? i.current() : null;
+    }
+
+    /** Ids of the entries whose current password has this fingerprint. */
+    public synchronized Set<String> sharing(Print p) {
+        Set<String> ids = p != null ? current.get(p) : null;
+        return ids != null ? Set.copyOf(ids) : Set.of();
+    }
+
+    public synchronized int sharingCount(Print p) {
+        Set<String> ids = p != null ? current.get(p) : null;
+        return ids != null ? ids.size() : 0;
+    }
+
+    public synchronized boolean isReused(String id) {
+        Print p = current(id);
+        Set<String> ids = p != null ? current.get(p) : null;
+        return ids != null && ids.size() > 1;
+    }
+
+    /** Ids of other entries that use {@code pw} now or have used it before. */
+    public Set<String> usedElsewhere(CharSequence pw, String exceptId) {
+        Print p = of(pw);
+        if (p == null) return Set.of();
+        synchronized (this) {
+            Set<String> out = new LinkedHashSet<>(current.getOrDefault(p, Set.of()));
+            out.addAll(history.getOrDefault(p, Set.of()));
+            out.remove(exceptId);
+            return out;
+        }
+    }
+
+    /** True if {@code pw} is in the history of entry {@code id}, i.e. a change would go back to an old password. */
+    public boolean usedBefore(CharSequence pw, String id) {
+        Print p = of(pw);
+        if (p == null) return false;
+        synchronized (this) {
+            Indexed i = byId.get(id);
+            return i != null && i.history().contains(p);
+        }
+    }
+
+    /** Groups of entry ids sharing a current password (two or more each). */
+    public synchronized List<Set<String>> reusedGroups() {
+        List<Set<String>> out = new ArrayList<>();
+        for (Set<String> ids : current.values()) if (ids.size() > 1) out.add(Set.copyOf(ids));
+        return out;
+    }
+
+    private static void unlink(Map<Print, Set<String>> map, Print p, String id) {
+        Set<String> ids = map.get(p);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) map.remove(p);
+    }
+}
@@ -0,0 +1,37 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+
+import java.util.*;
+
+/**
+ * Rotates many entries at once: each gets a fresh password from one {@link BatchGenerator}, its old password is
+ * pushed onto its history and {@code pwRevision} is bumped, all with the same timestamp. Callers then refresh
+ * the UI, indexes and sync state once for the whole batch. Entries without a password are skipped.
+ */
+public final class PasswordRotation {
+
+    private PasswordRotation() {}
+
+    public record Result(List<Entry> rotated, List<Entry> skipped, long at) {}
+
+    public static Result rotate(Collection<Entry> entries, BatchGenerator gen, BatchGenerator.Policy policy, long now) {
+        Set<Entry> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Entry> targets = new ArrayList<>(), skipped = new ArrayList<>();
+        for (Entry e : entries) {
+            if (!seen.add(e)) continue;
+            if (e.password == null || e.password.isEmpty()) skipped.add(e); else targets.add(e);
+        }
+        List<String> fresh = gen.passwords(policy, targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            Entry e = targets.get(i);
+            Entry.PasswordHistory h = new Entry.PasswordHistory();
+            h.password = e.password; h.changedAt = now;
+            e.history.add(0, h);
+            e.pwRevision++;
+            e.password = fresh.get(i);
+            e.updatedAt = now;
+        }
+        return new Result(List.copyOf(targets), List.copyOf(skipped), now);
+    }
+}
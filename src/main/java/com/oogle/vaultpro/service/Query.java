@@ -0,0 +1,178 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Search box query language, compiled once per query into a short-circuiting predicate.
+ * <pre>
+ *   tag:work user:bob url:*.example.com weak age>180d fav -reused "two words" github OR gitlab
+ * </pre>
+ * Terms are ANDed; {@code OR} separates alternatives; a leading {@code -} negates a term.
+ * Facet terms (tag:, weak, reused, old, fav) are lookups in {@link FacetIndex} sets, free text goes through
+ * the trigram {@link SearchIndex}; cheap terms are evaluated first. Unrecognised {@code key:value} is free text.
+ */
+public final class Query {
+
+    private static final Pattern TOKEN = Pattern.compile("-?[\\w]+:\"[^\"]*\"|-?\"[^\"]*\"|\\S+");
+    private static final Pattern AGE = Pattern.compile("age(>=|<=|>|<)(\\d+)([dwmy]?)");
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private Query() {}
+
+    private static final Set<String> KEYWORDS = Set.of("fav", "favorite", "favorites", "weak", "reused", "old");
+
+    /** True for plain words only (no operators, fields, phrases or keywords): those get fuzzy ranking instead. */
+    public static boolean isPlainText(String text) {
+        if (text == null || text.isBlank()) return false;
+        Matcher m = TOKEN.matcher(text.trim());
+        while (m.find()) {
+            String tok = m.group(), lower = tok.toLowerCase(Locale.ROOT);
+            if (tok.equals("OR") || tok.startsWith("-") || tok.startsWith("\"") || tok.indexOf(':') > 0
+                    || KEYWORDS.contains(lower) || AGE.matcher(lower).matches()) return false;
+        }
+        return true;
+    }
+
+    /** A compiled term; lower cost runs first. */
+    private record Term(Predicate<Entry> test, int cost) {}
+
+    /**
+     * @return {@code null} when the query is blank (matches everything).
+     */
+    public static Predicate<Entry> compile(String text, FacetIndex facets, Supplier<SearchIndex> index) {
+        if (text == null || text.isBlank()) return null;
+        List<List<Term>> alternatives = new ArrayList<>();
+        List<Term> all = new ArrayList<>();
+        Matcher m = TOKEN.matcher(text.trim());
+        while (m.find()) {
+            String tok = m.group();
+            if (tok.equals("OR")) {
+                if (!all.isEmpty()) alternatives.add(all);
+                all = new ArrayList<>();
+                continue;
+            }
+            all.add(term(tok, facets, index));
+        }
+        if (!all.isEmpty()) alternatives.add(all);
+        if (alternatives.isEmpty()) return null;
+
+        List<Predicate<Entry>> ors = new ArrayList<>(alternatives.size());
+        for (List<Term> and : alternatives) {
+            and.sort(Comparator.comparingInt(Term::cost));
+            @SuppressWarnings("unchecked")
+            Predicate<Entry>[] terms = and.stream().map(Term::test).toArray(Predicate[]::new);
+            ors.add(e -> {
+                for (Predicate<Entry> t : terms) if (!t.test(e)) return false;
+                return true;
+            });
+        }
+        if (ors.size() == 1) return ors.get(0);
+        return e -> {
+            for (Predicate<Entry> p : ors) if (p.test(e)) return true;
+            return false;
+        };
+    }
+
+    private static Term term(String tok, FacetIndex facets, Supplier<SearchIndex> index) {
+        boolean negate = tok.length() > 1 && tok.startsWith("-");
+        if (negate) tok = tok.substring(1);
+        Term t = positive(unquote(tok), facets, index);
+        return negate ? new Term(t.test().negate(), t.cost()) : t;
+    }
+
+    private static Term positive(String tok, FacetIndex facets, Supplier<SearchIndex> index) {
+        String lower = tok.toLowerCase(Locale.ROOT);
+        switch (lower) {
+            case "fav", "favorite", "favorites", "is:fav" -> { return in(facets.members(FacetIndex.FAVORITES)); }
+            case "weak", "is:weak" -> { return in(facets.members(FacetIndex.WEAK)); }
+            case "reused", "is:reused" -> { return in(facets.members(FacetIndex.REUSED)); }
+            case "old", "is:old" -> { return in(facets.members(FacetIndex.OLD)); }
+            default -> { }
+        }
+        Matcher age = AGE.matcher(lower);
+        if (age.matches()) return age(age.group(1), Long.parseLong(age.group(2)), age.group(3));
+
+        int colon = lower.indexOf(':');
+        if (colon > 0 && colon < lower.length() - 1) {
+            String v = unquote(lower.substring(colon + 1));
+            switch (lower.substring(0, colon)) {
+                case "tag" -> { return in(facets.members(FacetIndex.TAG + v)); }
+                case "user", "username" -> { return field(e -> e.username, v); }
+                case "label", "title" -> { return field(e -> e.label, v); }
+                case "url", "site" -> { return url(v); }
+                default -> { }
+            }
+        }
+        return text(lower, index.get());
+    }
+
+    private static Term in(Set<Entry> members) { return new Term(members::contains, 0); }
+
+    private static Term field(Function<Entry, String> f, String needle) {
+        return new Term(e -> {
+            String v = f.apply(e);
+            return v != null && v.toLowerCase(Locale.ROOT).contains(needle);
+        }, 2);
+    }
+
+    /** {@code url:*.example.com} globs against the host; without a wildcard it is a substring of the whole URL. */
+    private static Term url(String pattern) {
+        if (pattern.indexOf('*') < 0) return field(e -> e.url, pattern);
+        StringBuilder re = new StringBuilder();
+        for (String part : pattern.split("\\*", -1)) {
+            if (!re.isEmpty()) re.append(".*");
+            re.append(Pattern.quote(part));
+        }
+        Pattern p = Pattern.compile(re.toString());
+        return new Term(e -> e.url != null && p.matcher(host(e.url.toLowerCase(Locale.ROOT))).matches(), 3);
+    }
+
+    static String host(String url) {
+        int s = url.indexOf("://");
+        String h = s >= 0 ? url.substring(s + 3) : url;
+        int at = h.indexOf('@');
+        if (at >= 0 && at < indexOfAny(h, "/?#")) h = h.substring(at + 1);
+        return h.substring(0, Math.min(h.length(), indexOfAny(h, "/:?#")));
+    }
+
+    private static int indexOfAny(String s, String chars) {
+        for (int i = 0; i < s.length(); i++) if (chars.indexOf(s.charAt(i)) >= 0) return i;
+        return s.length();
+    }
+
+    /** Password age: time since the current password was set (last history push, else creation). */
+    private static Term age(String op, long n, String unit) {
+        long days = switch (unit) { case "w" -> n * 7; case "m" -> n * 30; case "y" -> n * 365; default -> n; };
+        long cutoff = System.currentTimeMillis() - days * DAY_MS;
+        Predicate<Entry> p = switch (op) {
+            case ">" -> e -> passwordSetAt(e) < cutoff;
+            case ">=" -> e -> passwordSetAt(e) <= cutoff;
+            case "<" -> e -> passwordSetAt(e) > cutoff;
+            default -> e -> passwordSetAt(e) >= cutoff;
+        };
+        return new Term(p, 1);
+    }
+
+    static long passwordSetAt(Entry e) {
+        if (e.history != null && !e.history.isEmpty()) return e.history.get(0).changedAt;
+        return e.createdAt != 0 ? e.createdAt : e.updatedAt;
+    }
+
+    private static Term text(String needle, SearchIndex idx) {
+        BitSet hits = idx.matches(needle);
+        Set<Entry> s = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) s.add(idx.entry(i));
+        return in(s);
+    }
+
+    private static String unquote(String s) {
+        return s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"") ? s.substring(1, s.length() - 1) : s;
+    }
+}
@@ -0,0 +1,133 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Trigram index over the searchable columns of a vault (label, username, URL, tags).
+ * Each entry gets one lowercased key with fields separated by '\n', so matches never span two fields.
+ * Queries of three or more characters intersect trigram postings and verify only the survivors;
+ * shorter queries scan the precomputed keys. Immutable once built; rebuild when entries change.
+ */
+public final class SearchIndex {
+
+    private final List<Entry> entries;
+    private final String[] keys;
+    private final Map<Long, BitSet> grams = new HashMap<>();
+
+    private SearchIndex(List<Entry> entries, boolean postings) {
+        this.entries = List.copyOf(entries);
+        this.keys = new String[this.entries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            String k = key(this.entries.get(i));
+            keys[i] = k;
+            if (!postings) continue;
+            for (int j = 0; j + 3 <= k.length(); j++) {
+                grams.computeIfAbsent(gram(k, j), g -> new BitSet()).set(i);
+            }
+        }
+    }
+
+    public static SearchIndex build(List<Entry> entries) { return new SearchIndex(entries, true); }
+
+    /** Codec version of {@link #save}. */
+    static final int FORMAT = 1;
+
+    /**
+     * The trigram postings, for {@link IndexSections}: per gram its positions as varint deltas, which is far
+     * smaller than the bit sets for sparse grams. Keys are cheap to recompute and aren't included.
+     */
+    byte[] save() {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(b)) {
+            out.writeInt(keys.length);
+            out.writeInt(grams.size());
+            for (Map.Entry<Long, BitSet> g : grams.entrySet()) {
+                BitSet p = g.getValue();
+                out.writeLong(g.getKey());
+                writeVarint(out, p.cardinality());
+                for (int i = p.nextSetBit(0), prev = -1; i >= 0; prev = i, i = p.nextSetBit(i + 1)) writeVarint(out, i - prev);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return b.toByteArray();
+    }
+
+    /** Index over {@code entries} with postings from {@link #save}, or null if they were saved for another list. */
+    static SearchIndex load(List<Entry> entries, byte[] saved) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(saved))) {
+            if (in.readInt() != entries.size()) return null;
+            SearchIndex idx = new SearchIndex(entries, false);
+            for (int n = in.readInt(); n > 0; n--) {
+                long g = in.readLong();
+                BitSet p = new BitSet();
+                for (int c = readVarint(in), i = -1; c > 0; c--) p.set(i += readVarint(in));
+                idx.grams.put(g, p);
+            }
+            return idx;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static void writeVarint(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) { out.writeByte(v & 0x7F | 0x80); v >>>= 7; }
+        out.writeByte(v);
+    }
+
+    private static int readVarint(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+
+    public static String key(Entry e) {
+        return lower(e.label) + '\n' + lower(e.username) + '\n' + lower(e.url) + '\n'
+                + (e.tags == null ? "" : String.join(",", e.tags).toLowerCase(Locale.ROOT));
+    }
+
+    public int size() { return entries.size(); }
+
+    public Entry entry(int i) { return entries.get(i); }
+
+    /** Positions (in the entry list the index was built from) whose key contains {@code query}. */
+    public BitSet matches(String query) {
+        String q = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        BitSet out = new BitSet(keys.length);
+        if (q.isEmpty()) { out.set(0, keys.length); return out; }
+        if (q.length() < 3) {
+            for (int i = 0; i < keys.length; i++) if (keys[i].contains(q)) out.set(i);
+            return out;
+        }
+        BitSet cand = null;
+        for (int j = 0; j + 3 <= q.length(); j++) {
+            BitSet p = grams.get(gram(q, j));
+            if (p == null) return out;
+            if (cand == null) cand = (BitSet) p.clone(); else cand.and(p);
+            if (cand.isEmpty()) return out;
+        }
+        for (int i = cand.nextSetBit(0); i >= 0; i = cand.nextSetBit(i + 1)) {
+            if (keys[i].contains(q)) out.set(i);
+        }
+        return out;
+    }
+
+    public List<Entry> search(String query) {
+        BitSet m = matches(query);
+        List<Entry> out = new ArrayList<>(m.cardinality());
+        for (int i = m.nextSetBit(0); i >= 0; i = m.nextSetBit(i + 1)) out.add(entries.get(i));
+        return out;
+    }
+
+    private static long gram(String s, int at) {
+        return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+    }
+
+    private static String lower(String s) { return s == null ? "" : s.toLowerCase(Locale.ROOT); }
+}
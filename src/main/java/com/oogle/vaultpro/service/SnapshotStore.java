@@ -0,0 +1,231 @@
+package com.oogle.vaultpro.service;
+
+import com.google.gson.Gson;
+import com.oogle.vaultpro.crypto.SectionKeys;
+import com.oogle.vaultpro.diag.Metrics;
+import com.oogle.vaultpro.model.Entry;
+import com.oogle.vaultpro.model.VaultData;
+
+import javax.crypto.SecretKey;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Restore points of a vault, taken after every save into {@code vault.dat.snapshots/}. The entries are serialized
+ * and cut into chunks at content-defined boundaries (a gear rolling hash, 2–64 KiB, about 8 KiB on average), so
+ * an edit only changes the chunks around it; chunks go into a {@link ChunkStore} and are written once.
+ * A snapshot itself is a small sealed list of chunk names, named {@code <time>-<revision>.snap} so listing needs
+ * no decryption. {@link Retention} thins old snapshots out, and chunks no snapshot uses are deleted.
+ */
+public final class SnapshotStore {
+
+    static final int MIN_CHUNK = 2 << 10, AVG_CHUNK = 8 << 10, MAX_CHUNK = 64 << 10;
+    // more bits below the average size, fewer above, which narrows the chunk size spread (normalized chunking)
+    private static final long MASK_SMALL = -1L << (64 - 15), MASK_LARGE = -1L << (64 - 11);
+    private static final long[] GEAR = new long[256];
+    static {
+        SplittableRandom r = new SplittableRandom(0x4d7956L);
+        for (int i = 0; i < GEAR.length; i++) GEAR[i] = r.nextLong();
+    }
+    private static final byte[] HEADER = "MVSN\u0001".getBytes(StandardCharsets.US_ASCII);
+    private static final int ID_BYTES = 32;
+    private static final Gson GSON = new Gson();
+
+    public record Snapshot(long at, long revision) {
+        String fileName() { return at + "-" + revision + ".snap"; }
+    }
+
+    /**
+     * Which snapshots to keep: the newest {@code keepLast}, plus the newest one of every hour for {@code hours}
+     * hours, of every day for {@code days} days and of every week for {@code weeks} weeks, but none older than
+     * {@code maxAgeDays} except the newest snapshot. Snapshots hold passwords as they were, so the vault caps
+     * that age by its {@link HistoryPolicy}: old passwords forgotten there don't live on here.
+     */
+    public record Retention(int keepLast, int hours, int days, int weeks, int maxAgeDays) {
+
+        public static final Retention DEFAULT = new Retention(10, 48, 30, 52, Integer.MAX_VALUE);
+
+        public Retention withMaxAge(int maxAgeDays) { return new Retention(keepLast, hours, days, weeks, maxAgeDays); }
+
+        public Set<Snapshot> keep(List<Snapshot> newestFirst, long now) {
+            Set<Snapshot> kept = new HashSet<>(newestFirst.subList(0, Math.min(keepLast, newestFirst.size())));
+            thin(newestFirst, now, 3_600_000L, hours, kept);
+            thin(newestFirst, now, 86_400_000L, days, kept);
+            thin(newestFirst, now, 7 * 86_400_000L, weeks, kept);
+            if (maxAgeDays != Integer.MAX_VALUE) {
+                long cutoff = now - maxAgeDays * 86_400_000L;
+                kept.removeIf(s -> s.at() < cutoff && s != newestFirst.get(0));
+            }
+            return kept;
+        }
+
+        private static void thin(List<Snapshot> newestFirst, long now, long bucket, int count, Set<Snapshot> kept) {
+            Set<Long> seen = new HashSet<>();
+            for (Snapshot s : newestFirst) {
+                if (s.at() < now - bucket * count) break;
+                if (seen.add(s.at() / bucket)) kept.add(s);
+            }
+        }
+    }
+
+    /** What a snapshot holds: the entries and the vault's name, not its save counters. */
+    private static final class Content {
+        String vaultName;
+        List<Entry> entries;
+    }
+
+    private final Path dir;
+    private final ChunkStore chunks;
+    private final Supplier<SecretKey> key;
+    private Retention retention;
+    private List<String> newest; // chunk names of the newest snapshot, once known
+
+    public SnapshotStore(Path vault, Supplier<SecretKey> key, Retention retention) {
+        this.dir = dir(vault);
+        this.chunks = new ChunkStore(dir.resolve("chunks"), key, "MyVault snapshots v1");
+        this.key = key;
+        this.retention = retention;
+    }
+
+    public static Path dir(Path vault) { return vault.resolveSibling(vault.getFileName() + ".snapshots"); }
+
+    /** Applies from the next {@link #take} on. */
+    public synchronized void setRetention(Retention r) { retention = r; }
+
+    /** Snapshots on disk, newest first; reads file names only. */
+    public synchronized List<Snapshot> list() throws IOException {
+        List<Snapshot> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String n = p.getFileName().toString();
+                int dash = n.indexOf('-');
+                if (!n.endsWith(".snap") || dash < 0) continue;
+                try {
+                    out.add(new Snapshot(Long.parseLong(n.substring(0, dash)), Long.parseLong(n.substring(dash + 1, n.length() - 5))));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        out.sort(Comparator.comparingLong(Snapshot::at).thenComparingLong(Snapshot::revision).reversed());
+        return out;
+    }
+
+    /**
+     * Records the vault as it is now (call after it was saved) and applies the retention policy.
+     * Returns null if nothing changed since the newest snapshot.
+     */
+    public synchronized Snapshot take(VaultData data, long now) throws IOException, GeneralSecurityException {
+        Content c = new Content();
+        c.vaultName = data.vaultName;
+        c.entries = data.entries;
+        byte[] plain = GSON.toJson(c).getBytes(StandardCharsets.UTF_8);
+        List<String> ids = new ArrayList<>();
+        try {
+            for (int at = 0; at < plain.length; ) {
+                int end = boundary(plain, at, plain.length);
+                ids.add(chunks.put(plain, at, end - at));
+                at = end;
+            }
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+        List<Snapshot> all = list();
+        if (newest == null && !all.isEmpty()) newest = read(all.get(0));
+        if (ids.equals(newest)) return null;
+
+        Snapshot s = new Snapshot(now, data.vaultRevision);
+        ByteArrayOutputStream b = new ByteArrayOutputStream(4 + ids.size() * ID_BYTES);
+        try (DataOutputStream out = new DataOutputStream(b)) {
+            out.writeInt(ids.size());
+            for (String id : ids) out.write(HexFormat.of().parseHex(id));
+        }
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve(s.fileName() + ".tmp");
+        Files.write(tmp, SectionKeys.seal(key.get(), header(s), b.toByteArray()));
+        Files.move(tmp, dir.resolve(s.fileName()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        newest = ids;
+        all.add(0, s);
+        prune(all, now);
+        return s;
+    }
+
+    /** The vault name and entries as they were in {@code s}, in a fresh {@link VaultData} (counters left at 0). */
+    public synchronized VaultData restore(Snapshot s) throws IOException, GeneralSecurityException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        for (String id : read(s)) {
+            byte[] part = chunks.get(id);
+            json.writeBytes(part);
+            Arrays.fill(part, (byte) 0);
+        }
+        byte[] plain = json.toByteArray();
+        try {
+            Content c = Metrics.time("deserialize.snapshot", () -> GSON.fromJson(new String(plain, StandardCharsets.UTF_8), Content.class));
+            VaultData d = new VaultData();
+            d.vaultName = c.vaultName;
+            if (c.entries != null) d.entries.addAll(c.entries);
+            return d;
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+    }
+
+    /* ---- internals ---- */
+
+    /** Drops what the retention policy doesn't keep; only then are unused chunks looked for. */
+    private void prune(List<Snapshot> newestFirst, long now) throws IOException, GeneralSecurityException {
+        Set<Snapshot> keep = retention.keep(newestFirst, now);
+        boolean dropped = false;
+        for (Snapshot s : newestFirst) {
+            if (keep.contains(s)) continue;
+            Files.deleteIfExists(dir.resolve(s.fileName()));
+            dropped = true;
+        }
+        if (!dropped) return;
+        Set<String> used = new HashSet<>();
+        for (Snapshot s : keep) used.addAll(read(s));
+        chunks.retain(used);
+    }
+
+    private List<String> read(Snapshot s) throws IOException, GeneralSecurityException {
+        byte[] plain = SectionKeys.unseal(key.get(), header(s), Files.readAllBytes(dir.resolve(s.fileName())));
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain))) {
+            int n = in.readInt();
+            List<String> ids = new ArrayList<>(n);
+            byte[] id = new byte[ID_BYTES];
+            for (int i = 0; i < n; i++) {
+                in.readFully(id);
+                ids.add(HexFormat.of().formatHex(id));
+            }
+            return ids;
+        }
+    }
+
+    private static byte[] header(Snapshot s) {
+        byte[] name = s.fileName().getBytes(StandardCharsets.US_ASCII);
+        byte[] h = Arrays.copyOf(HEADER, HEADER.length + name.length);
+        System.arraycopy(name, 0, h, HEADER.length, name.length);
+        return h;
+    }
+
+    /** End of the chunk starting at {@code from}: where the rolling hash hits the mask, within the size limits. */
+    static int boundary(byte[] b, int from, int end) {
+        if (end - from <= MIN_CHUNK) return end;
+        int normal = Math.min(end, from + AVG_CHUNK), max = Math.min(end, from + MAX_CHUNK);
+        long h = 0;
+        int i = from + MIN_CHUNK;
+        for (; i < normal; i++) {
+            h = (h << 1) + GEAR[b[i] & 0xFF];
+            if ((h & MASK_SMALL) == 0) return i + 1;
+        }
+        for (; i < max; i++) {
+            h = (h << 1) + GEAR[b[i] & 0xFF];
+            if ((h & MASK_LARGE) == 0) return i + 1;
+        }
+        return max;
+    }
+}
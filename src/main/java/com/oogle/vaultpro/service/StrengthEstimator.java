@@ -0,0 +1,250 @@
+package com.oogle.vaultpro.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * zxcvbn-style password strength estimate: the cheapest way to cover the password with known patterns
+ * (ranked dictionary words, incl. l33t and capitalised forms; keyboard walks; repeats; sequences; years),
+ * falling back to brute force per character. Scores follow zxcvbn's 0–4 scale on log10(guesses).
+ * <p>
+ * The dictionary is compiled into an array-backed trie on first use and shared by the whole process.
+ * Scoring allocates nothing beyond per-thread scratch buffers, so auditing thousands of passwords is cheap.
+ */
+public final class StrengthEstimator {
+
+    private StrengthEstimator() {}
+
+    /** Scores ≤ this are reported as weak. */
+    public static final int WEAK_MAX_SCORE = 1;
+
+    private static final String[] KEYBOARD = {"1234567890-=", "qwertyuiop[]", "asdfghjkl;'", "zxcvbnm,./"};
+    private static final String SHIFTED = "!@#$%^&*()_+{}:\"<>?";
+    private static final String UNSHIFTED = "1234567890-=[];',./";
+    private static final byte[] KEY_ROW = new byte[128], KEY_COL = new byte[128];
+    private static final char[] LEET = new char[128];
+    private static final double[] LOG10 = new double[256];
+    private static final double LOG2 = Math.log10(2), LOG3 = Math.log10(3), LOG4 = Math.log10(4), LOG5 = Math.log10(5);
+    private static final double LOG26 = Math.log10(26), LOG94 = Math.log10(94), LOG_YEARS = Math.log10(140);
+
+    static {
+        Arrays.fill(KEY_ROW, (byte) -1);
+        for (int r = 0; r < KEYBOARD.length; r++) {
+            for (int c = 0; c < KEYBOARD[r].length(); c++) {
+                char k = KEYBOARD[r].charAt(c);
+                KEY_ROW[k] = (byte) r; KEY_COL[k] = (byte) c;
+            }
+        }
+        for (int i = 0; i < SHIFTED.length(); i++) {
+            KEY_ROW[SHIFTED.charAt(i)] = KEY_ROW[UNSHIFTED.charAt(i)];
+            KEY_COL[SHIFTED.charAt(i)] = KEY_COL[UNSHIFTED.charAt(i)];
+        }
+        String from = "4@8(36901!|$57+2", to = "aabceggoiiissttz";
+        for (int i = 0; i < from.length(); i++) LEET[from.charAt(i)] = to.charAt(i);
+        for (int i = 1; i < LOG10.length; i++) LOG10[i] = Math.log10(i);
+    }
+
+    /** Loaded on first use, once per process. */
+    private static final class Dict {
+        static final Trie WORDS = Trie.load("/strength/common.txt");
+    }
+
+    private static final class Scratch {
+        char[] lower = new char[64], leet = new char[64];
+        double[] best = new double[65];
+
+        void ensure(int n) {
+            if (lower.length >= n) return;
+            lower = new char[n * 2]; leet = new char[n * 2]; best = new double[n * 2 + 1];
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /** 0 (too guessable) … 4 (very unguessable). */
+    public static int score(CharSequence password) {
+        double g = log10Guesses(password);
+        return g < 3 ? 0 : g < 6 ? 1 : g < 8 ? 2 : g < 10 ? 3 : 4;
+    }
+
+    public static boolean isWeak(CharSequence password) {
+        return password != null && password.length() > 0 && score(password) <= WEAK_MAX_SCORE;
+    }
+
+    /** Estimated log10 of the number of guesses an informed attacker needs. */
+    public static double log10Guesses(CharSequence pw) {
+        int n = pw == null ? 0 : pw.length();
+        if (n == 0) return 0;
+        Scratch s = SCRATCH.get();
+        s.ensure(n);
+        char[] lower = s.lower, leet = s.leet;
+        boolean hasLeet = false;
+        int lowers = 0, uppers = 0, digits = 0, others = 0;
+        for (int i = 0; i < n; i++) {
+            char c = pw.charAt(i);
+            if (c >= 'a' && c <= 'z') lowers = 26;
+            else if (c >= 'A' && c <= 'Z') uppers = 26;
+            else if (c >= '0' && c <= '9') digits = 10;
+            else others = c < 128 ? 33 : 100;
+            char l = Character.toLowerCase(c);
+            lower[i] = l;
+            char t = l < 128 ? LEET[l] : 0;
+            leet[i] = t != 0 ? t : l;
+            hasLeet |= t != 0;
+        }
+        double perChar = Math.log10(Math.max(10, lowers + uppers + digits + others));
+
+        double[] best = s.best;
+        Arrays.fill(best, 0, n + 1, Double.MAX_VALUE);
+        best[0] = 0;
+        Trie dict = Dict.WORDS;
+        for (int i = 0; i < n; i++) {
+            double base = best[i];
+            relax(best, i + 1, base + perChar);
+            dictionary(dict, pw, lower, i, n, base, best, 0);
+            if (hasLeet) dictionary(dict, pw, leet, i, n, base, best, LOG3);
+            spatial(lower, i, n, base, best);
+            repeat(lower, i, n, base, best, perChar);
+            sequence(lower, i, n, base, best);
+            year(lower, i, n, base, best);
+        }
+        return best[n];
+    }
+
+    /* ---- matchers: each relaxes best[end] for the patterns starting at i ---- */
+
+    private static void dictionary(Trie t, CharSequence pw, char[] s, int i, int n, double base, double[] best, double extra) {
+        int node = 0;
+        for (int j = i; j < n; j++) {
+            node = t.step(node, s[j]);
+            if (node < 0) return;
+            int rank = t.rank[node];
+            if (rank > 0) relax(best, j + 1, base + log10(rank) + extra + caseVariations(pw, i, j + 1));
+        }
+    }
+
+    /** "Password" and "PASSWORD" are one extra guess away from "password"; mixed case costs more. */
+    private static double caseVariations(CharSequence pw, int from, int to) {
+        int up = 0;
+        for (int k = from; k < to; k++) if (Character.isUpperCase(pw.charAt(k))) up++;
+        if (up == 0) return 0;
+        if (up == to - from || (up == 1 && Character.isUpperCase(pw.charAt(from)))) return LOG2;
+        return Math.min(to - from, up * 2) * LOG2;
+    }
+
+    private static void spatial(char[] s, int i, int n, double base, double[] best) {
+        int turns = 0, dr = 0, dc = 0;
+        for (int j = i + 1; j < n; j++) {
+            char a = s[j - 1], b = s[j];
+            if (a >= 128 || b >= 128 || KEY_ROW[a] < 0 || KEY_ROW[b] < 0) return;
+            int r = KEY_ROW[b] - KEY_ROW[a], c = KEY_COL[b] - KEY_COL[a];
+            boolean adjacent = (r == 0 && Math.abs(c) == 1) || (r == 1 && (c == 0 || c == -1)) || (r == -1 && (c == 0 || c == 1));
+            if (!adjacent) return;
+            if (j > i + 1 && (r != dr || c != dc)) turns++;
+            dr = r; dc = c;
+            int len = j - i + 1;
+            if (len >= 3) relax(best, j + 1, base + LOG94 + log10(len) + turns * LOG5);
+        }
+    }
+
+    private static void repeat(char[] s, int i, int n, double base, double[] best, double perChar) {
+        for (int block = 1; block <= 4 && i + 2 * block <= n; block++) {
+            int j = i + block;
+            while (j < n && s[j] == s[j - block]) j++;
+            int reps = (j - i) / block;
+            int end = i + reps * block;
+            if (reps >= 2 && end - i >= 3) relax(best, end, base + block * perChar + log10(reps));
+        }
+    }
+
+    private static void sequence(char[] s, int i, int n, double base, double[] best) {
+        if (i + 2 >= n) return;
+        int delta = s[i + 1] - s[i];
+        if (Math.abs(delta) != 1 || !sameClass(s[i], s[i + 1])) return;
+        for (int j = i + 2; j < n && s[j] - s[j - 1] == delta && sameClass(s[j - 1], s[j]); j++) {
+            int len = j - i + 1;
+            double start = (s[i] == 'a' || s[i] == 'z' || s[i] == '0' || s[i] == '1' || s[i] == '9') ? LOG4 : LOG26;
+            relax(best, j + 1, base + start + log10(len) + (delta < 0 ? LOG2 : 0));
+        }
+    }
+
+    private static void year(char[] s, int i, int n, double base, double[] best) {
+        if (i + 4 > n) return;
+        int y = 0;
+        for (int k = i; k < i + 4; k++) {
+            if (s[k] < '0' || s[k] > '9') return;
+            y = y * 10 + (s[k] - '0');
+        }
+        if (y >= 1900 && y <= 2039) relax(best, i + 4, base + LOG_YEARS);
+    }
+
+    private static double log10(int v) { return v < LOG10.length ? LOG10[v] : Math.log10(v); }
+
+    private static boolean sameClass(char a, char b) {
+        return (Character.isDigit(a) && Character.isDigit(b)) || (Character.isLetter(a) && Character.isLetter(b));
+    }
+
+    private static void relax(double[] best, int at, double v) {
+        if (v < best[at]) best[at] = v;
+    }
+
+    /* ---- dictionary trie ---- */
+
+    /** First-child / next-sibling trie in flat arrays; {@code rank > 0} marks the end of a word. */
+    static final class Trie {
+        private char[] ch = new char[1024];
+        private int[] child = new int[1024], sibling = new int[1024];
+        final int[] rank;
+        private final int[] root = new int[128]; // the root has the most children: index them directly
+        private int size = 1;
+
+        private Trie(BufferedReader words) throws IOException {
+            int[] rk = new int[1024];
+            int r = 0;
+            for (String w; (w = words.readLine()) != null; ) {
+                w = w.trim();
+                if (w.isEmpty() || w.startsWith("#")) continue;
+                r++;
+                int node = 0;
+                for (int i = 0; i < w.length(); i++) {
+                    int next = step(node, w.charAt(i));
+                    if (next < 0) {
+                        if (size == ch.length) {
+                            int cap = size * 2;
+                            ch = Arrays.copyOf(ch, cap); child = Arrays.copyOf(child, cap);
+                            sibling = Arrays.copyOf(sibling, cap); rk = Arrays.copyOf(rk, cap);
+                        }
+                        next = size++;
+                        ch[next] = w.charAt(i);
+                        sibling[next] = child[node];
+                        child[node] = next;
+                    }
+                    node = next;
+                }
+                if (rk[node] == 0) rk[node] = r;
+            }
+            ch = Arrays.copyOf(ch, size); child = Arrays.copyOf(child, size); sibling = Arrays.copyOf(sibling, size);
+            rank = Arrays.copyOf(rk, size);
+            for (int k = child[0]; k != 0; k = sibling[k]) if (ch[k] < 128) root[ch[k]] = k;
+        }
+
+        static Trie load(String resource) {
+            try (InputStream in = StrengthEstimator.class.getResourceAsStream(resource)) {
+                if (in == null) return new Trie(new BufferedReader(new java.io.StringReader("")));
+                return new Trie(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot load " + resource, e);
+            }
+        }
+
+        int step(int node, char c) {
+            if (node == 0 && c < 128 && rank != null) return root[c] != 0 ? root[c] : -1;
+            for (int k = child[node]; k != 0; k = sibling[k]) if (ch[k] == c) return k;
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.oogle.vaultpro.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.*;
+
+/**
+ * RFC 6238 codes for many entries at once. Each distinct OTP secret is decoded and keyed into its own
+ * {@link Mac} the first time it is seen, and the code for the current time step is cached, so a live view
+ * ticking every second only runs HMAC when a step rolls over.
+ * A secret is either plain Base32 (SHA-1, 6 digits, 30 s) or an {@code otpauth://totp/...} URI, which may set
+ * {@code algorithm=SHA1|SHA256|SHA512}, {@code digits=6..8} and {@code period}.
+ */
+public final class TotpEngine {
+
+    public record Code(String code, int secondsLeft, int period) {}
+
+    private static final int[] POW10 = { 1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000 };
+
+    private static final class Keyed {
+        final Mac mac;
+        final int digits, period;
+        final byte[] counter = new byte[8];
+        long step = Long.MIN_VALUE;
+        String code;
+
+        Keyed(Mac mac, int digits, int period) { this.mac = mac; this.digits = digits; this.period = period; }
+    }
+
+    private final Map<String, Keyed> keyed = new HashMap<>();
+
+    /** Code for {@code secret} at {@code nowMs}; throws IllegalArgumentException for a malformed secret. */
+    public synchronized Code code(String secret, long nowMs) {
+        Keyed k = keyed.get(secret);
+        if (k == null) {
+            k = key(secret);
+            keyed.put(secret, k);
+        }
+        long step = Math.floorDiv(nowMs / 1000, k.period);
+        if (step != k.step) {
+            k.code = compute(k, step);
+            k.step = step;
+        }
+        int left = k.period - Math.floorMod(nowMs / 1000, k.period);
+        return new Code(k.code, left, k.period);
+    }
+
+    /** Drops keys for secrets not in {@code live} (edited or deleted entries). */
+    public synchronized void retain(Collection<String> live) {
+        keyed.keySet().retainAll(new HashSet<>(live));
+    }
+
+    public synchronized void clear() { keyed.clear(); }
+
+    public static boolean isSet(String secret) { return secret != null && !secret.isBlank(); }
+
+    /* ---- internals ---- */
+
+    private static String compute(Keyed k, long step) {
+        for (int i = 7; i >= 0; i--) { k.counter[i] = (byte) step; step >>>= 8; }
+        byte[] h = k.mac.doFinal(k.counter);
+        int o = h[h.length - 1] & 0x0F;
+        int bin = (h[o] & 0x7F) << 24 | (h[o + 1] & 0xFF) << 16 | (h[o + 2] & 0xFF) << 8 | (h[o + 3] & 0xFF);
+        String s = Integer.toString(bin % POW10[k.digits]);
+        return "0".repeat(k.digits - s.length()) + s;
+    }
+
+    private static Keyed key(String secret) {
+        if (!isSet(secret)) throw new IllegalArgumentException("No OTP secret set");
+        String s = secret.strip(), alg = "SHA1";
+        int digits = 6, period = 30;
+        if (s.regionMatches(true, 0, "otpauth://", 0, 10)) {
+            URI u = URI.create(s);
+            if (!"totp".equalsIgnoreCase(u.getHost())) throw new IllegalArgumentException("Only otpauth://totp is supported");
+            Map<String, String> q = query(u.getRawQuery());
+            s = q.getOrDefault("secret", "");
+            alg = q.getOrDefault("algorithm", alg).toUpperCase(Locale.ROOT).replace("-", "");
+            digits = parse(q.get("digits"), digits);
+            period = parse(q.get("period"), period);
+        }
+        if (digits < 6 || digits > 8) throw new IllegalArgumentException("Unsupported digits: " + digits);
+        if (period < 1) throw new IllegalArgumentException("Bad period: " + period);
+        String macAlg = switch (alg) {
+            case "SHA1" -> "HmacSHA1";
+            case "SHA256" -> "HmacSHA256";
+            case "SHA512" -> "HmacSHA512";
+            default -> throw new IllegalArgumentException("Unsupported algorithm: " + alg);
+        };
+        byte[] key = base32(s);
+        try {
+            Mac mac = Mac.getInstance(macAlg);
+            mac.init(new SecretKeySpec(key, macAlg));
+            return new Keyed(mac, digits, period);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(macAlg + " unavailable", ex);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> q = new HashMap<>();
+        if (raw == null) return q;
+        for (String kv : raw.split("&")) {
+            int eq = kv.indexOf('=');
+            if (eq <= 0) continue;
+            q.put(kv.substring(0, eq).toLowerCase(Locale.ROOT), URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return q;
+    }
+
+    private static int parse(String v, int dflt) {
+        if (v == null || v.isBlank()) return dflt;
+        try { return Integer.parseInt(v.strip()); }
+        catch (NumberFormatException ex) { throw new IllegalArgumentException("Not a number: " + v); }
+    }
+
+    /** RFC 4648 Base32, case-insensitive; spaces, dashes and '=' padding are ignored. */
+    static byte[] base32(String s) {
+        byte[] out = new byte[s.length() * 5 / 8];
+        int buf = 0, bits = 0, n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            int v;
+            if (c >= 'A' && c <= 'Z') v = c - 'A';
+            else if (c >= 'a' && c <= 'z') v = c - 'a';
+            else if (c >= '2' && c <= '7') v = c - '2' + 26;
+            else if (c == ' ' || c == '-' || c == '=') continue;
+            else throw new IllegalArgumentException("Invalid Base32 character: " + c);
+            buf = buf << 5 | v;
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                out[n++] = (byte) (buf >> bits);
+            }
+        }
+        if (n == 0) throw new IllegalArgumentException("Empty OTP secret");
+        if (n == out.length) return out;
+        byte[] exact = Arrays.copyOf(out, n);
+        Arrays.fill(out, (byte) 0);
+        return exact;
+    }
+}
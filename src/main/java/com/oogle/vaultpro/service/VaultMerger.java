@@ -0,0 +1,67 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+import com.oogle.vaultpro.model.VaultData;
+
+import java.util.*;
+
+/**
+ * Three-way merge of two copies of a vault keyed by {@code Entry.id}.
+ * The base is the id → updatedAt snapshot of the file on disk as last read or written here: the local copy
+ * after a load or save, the remote copy after a merge (never the merged result, which holds unsaved local
+ * entries). That is enough to tell "deleted on the other side" from "added on this side".
+ * Conflicting edits resolve to the newer {@code updatedAt}; an edit beats a concurrent delete.
+ * The merge only computes the delta against the local copy; applying it is up to the caller.
+ */
+public final class VaultMerger {
+
+    private VaultMerger() {}
+
+    public static final class Result {
+        /** Remote entries the local copy does not have. */
+        public final List<Entry> added = new ArrayList<>();
+        /** Remote versions that replace the local entry with the same id. */
+        public final List<Entry> changed = new ArrayList<>();
+        /** Local entries deleted on the remote side. */
+        public final List<Entry> removed = new ArrayList<>();
+        public long remoteRevision;
+
+        public boolean isEmpty() { return added.isEmpty() && changed.isEmpty() && removed.isEmpty(); }
+    }
+
+    /** The base for a later {@link #merge}; take it from a copy exactly as it is on disk. */
+    public static Map<String, Long> snapshot(VaultData d) {
+        Map<String, Long> m = new HashMap<>(d.entries.size() * 2);
+        for (Entry e : d.entries) m.put(e.id, e.updatedAt);
+        return m;
+    }
+
+    public static Result merge(VaultData local, Map<String, Long> base, VaultData remote) {
+        if (base == null) base = Map.of();
+        Result r = new Result();
+        r.remoteRevision = remote.vaultRevision;
+
+        Map<String, Entry> mine = new HashMap<>(local.entries.size() * 2);
+        for (Entry e : local.entries) mine.put(e.id, e);
+
+        Set<String> seen = new HashSet<>();
+        for (Entry theirs : remote.entries) {
+            seen.add(theirs.id);
+            Entry ours = mine.get(theirs.id);
+            Long was = base.get(theirs.id);
+            if (ours != null) {
+                if (theirs.updatedAt > ours.updatedAt) r.changed.add(theirs);
+            } else if (was == null || theirs.updatedAt > was) {
+                // new on their side, or edited there after we deleted it
+                r.added.add(theirs);
+            }
+        }
+        for (Entry ours : local.entries) {
+            if (seen.contains(ours.id)) continue;
+            Long was = base.get(ours.id);
+            // deleted on their side, unless we edited it since
+            if (was != null && ours.updatedAt <= was) r.removed.add(ours);
+        }
+        return r;
+    }
+}
@@ -0,0 +1,74 @@
+package com.oogle.vaultpro.service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the folder holding the vault file and reports when the file may have been rewritten behind our back,
+ * typically by a Dropbox/iCloud client syncing a save from another device. Bursts of events are debounced.
+ * The watcher only prompts: whether the file really changed since it was last read or written (our own saves
+ * trigger it too) is for the caller to decide by its {@link Stamp}, which works without a watcher as well.
+ * The callback runs on the watcher thread.
+ */
+public final class VaultWatcher implements AutoCloseable {
+
+    private static final long DEBOUNCE_MS = 750;
+
+    private final Path file;
+    private final Runnable onChange;
+    private final WatchService ws;
+    private final Thread thread;
+
+    /** What the file looked like on disk: enough to tell that it was rewritten. */
+    public record Stamp(FileTime modified, long size) {
+        /** The file's stamp now, or null if it can't be read (missing, or mid-rename by a sync client). */
+        public static Stamp of(Path file) {
+            try {
+                BasicFileAttributes a = Files.readAttributes(file, BasicFileAttributes.class);
+                return new Stamp(a.lastModifiedTime(), a.size());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    public VaultWatcher(Path file, Runnable onChange) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+        this.ws = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(ws, ENTRY_CREATE, ENTRY_MODIFY);
+        thread = new Thread(this::loop, "vault-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void loop() {
+        Path name = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                boolean hit = false;
+                for (WatchEvent<?> ev : key.pollEvents()) {
+                    if (ev.kind() == OVERFLOW || name.equals(ev.context())) hit = true;
+                }
+                key.reset();
+                if (!hit) continue;
+                // sync clients write in bursts (temp file, rename, attribute touch); wait for it to settle
+                WatchKey more;
+                while ((more = ws.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) { more.pollEvents(); more.reset(); }
+                onChange.run();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    @Override public void close() {
+        try { ws.close(); } catch (IOException ignored) {}
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,338 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.crypto.SectionKeys;
+import com.oogle.vaultpro.diag.Metrics;
+import com.oogle.vaultpro.model.Entry;
+import com.oogle.vaultpro.model.SyncLedger;
+import com.oogle.vaultpro.model.VaultChanges;
+import com.oogle.vaultpro.model.VaultData;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The set of vaults unlocked in this session (e.g. a personal and a shared team vault).
+ * Each session keeps its own master password and sync state, so switching between them needs no re-unlock.
+ * Search fans out over the per-vault indexes in parallel.
+ */
+public final class Workspace {
+
+    public static final class Session {
+        public Path path;
+        public final VaultData data;
+        public char[] masterPassword;
+        public SyncLedger ledger;
+        public boolean dirty;
+        /** The vault file as last read or written here, and its entries then: the base of the next merge. */
+        public VaultWatcher.Stamp seen;
+        public Map<String, Long> syncBase;
+        private SearchIndex index;
+        private FuzzyIndex fuzzy;
+        private DomainIndex domains;
+        private PasswordFingerprints prints;
+        private SecretKey sectionKey;
+        private HistoryStore history;
+        private IndexSections sections;
+        private AttachmentStore attachments;
+        private SnapshotStore snapshots;
+        private boolean printsSaveable; // keyed from the section key rather than at random
+        private boolean edited; // since the saved index sections were last current: they describe the vault as saved
+        private final Workspace owner;
+        private final VaultChanges changes;
+
+        Session(Workspace owner, Path path, VaultData data, char[] masterPassword) {
+            this.owner = owner; this.path = path; this.data = data; this.masterPassword = masterPassword;
+            changes = new VaultChanges(data.entries);
+            changes.addListener(this::onChanges); // indexes first, so other listeners see them current
+            for (VaultChanges.Listener l : owner.changeListeners) changes.addListener(l);
+        }
+
+        public String name() { return data.vaultName + " (" + path.getFileName() + ")"; }
+
+        public synchronized SearchIndex index() {
+            if (index == null) {
+                byte[] saved = savedSection(IndexSections.SEARCH, SearchIndex.FORMAT);
+                if (saved != null) index = Metrics.time("deserialize.searchIndex", () -> SearchIndex.load(data.entries, saved));
+                if (index == null) index = Metrics.time("index.search", () -> SearchIndex.build(data.entries));
+            }
+            return index;
+        }
+
+        public synchronized FuzzyIndex fuzzy() {
+            if (fuzzy == null) fuzzy = Metrics.time("index.fuzzy", () -> FuzzyIndex.build(data.entries));
+            return fuzzy;
+        }
+
+        /** Unlike the search indexes this one is kept current per mutation, so it is built once per session. */
+        public synchronized DomainIndex domains() {
+            if (domains == null) domains = DomainIndex.build(data.entries);
+            return domains;
+        }
+
+        /** Kept current per mutation (through {@link FacetIndex}); keyed with a fresh random key per session. */
+        public synchronized PasswordFingerprints prints() {
+            if (prints != null) return prints;
+            byte[] key = IndexSections.worthKeeping(data) ? fingerprintKey() : null;
+            if (key == null) {
+                prints = Metrics.time("index.prints", () -> PasswordFingerprints.build(data.entries, RNG, this::fullHistory));
+                return prints;
+            }
+            byte[] saved = savedSection(IndexSections.PRINTS, PasswordFingerprints.FORMAT);
+            if (saved != null) prints = Metrics.time("deserialize.prints", () -> PasswordFingerprints.load(key.clone(), this::fullHistory, saved));
+            if (prints == null) prints = Metrics.time("index.prints", () -> PasswordFingerprints.build(data.entries, key.clone(), this::fullHistory));
+            Arrays.fill(key, (byte) 0);
+            printsSaveable = true;
+            return prints;
+        }
+
+        /** Strength verdicts saved with the indexes for the vault as it is now, or null (see {@link FacetIndex#rebuild}). */
+        public synchronized BitSet savedWeak() {
+            byte[] saved = savedSection(IndexSections.WEAK, FacetIndex.WEAK_FORMAT);
+            return saved != null ? BitSet.valueOf(saved) : null;
+        }
+
+        /**
+         * A saved index section, only while no entry was changed since it was written: the saved revision,
+         * timestamp and count stay the same until the next save, so they can't tell an edited vault apart.
+         */
+        private byte[] savedSection(String name, int version) {
+            if (edited || !IndexSections.worthKeeping(data)) return null;
+            return sections().read(data, name, version);
+        }
+
+        /** Files attached to entries; nothing is read until they are first listed. */
+        public synchronized AttachmentStore attachments() {
+            if (attachments == null) attachments = new AttachmentStore(path, this::sectionKey);
+            return attachments;
+        }
+
+        /** Restore points, taken after each save (see {@link SnapshotStore}). */
+        public synchronized SnapshotStore snapshots() {
+            if (snapshots == null) snapshots = new SnapshotStore(path, this::sectionKey, snapshotRetention(owner.historyPolicy));
+            return snapshots;
+        }
+
+        public synchronized IndexSections sections() {
+            if (sections == null) sections = new IndexSections(path, this::sectionKey);
+            return sections;
+        }
+
+        /**
+         * Saves the indexes for the vault as just written (large vaults only; a smaller one drops its file).
+         * Call right after saving the vault, with the facets' {@link FacetIndex#weakFlags}.
+         */
+        public synchronized void saveIndexes(BitSet weak) throws IOException, GeneralSecurityException {
+            if (!IndexSections.worthKeeping(data)) {
+                if (Files.exists(IndexSections.path(path))) sections().delete();
+                return;
+            }
+            Map<String, IndexSections.Section> m = new HashMap<>();
+            m.put(IndexSections.SEARCH, new IndexSections.Section(SearchIndex.FORMAT, index().save()));
+            PasswordFingerprints p = prints();
+            if (printsSaveable) m.put(IndexSections.PRINTS, new IndexSections.Section(PasswordFingerprints.FORMAT, p.save()));
+            if (weak != null) m.put(IndexSections.WEAK, new IndexSections.Section(FacetIndex.WEAK_FORMAT, weak.toByteArray()));
+            sections().write(data, m);
+            edited = false;
+        }
+
+        /** HMAC key for saveable fingerprints, derived from the section key; null if that key can't be had. */
+        private byte[] fingerprintKey() {
+            try {
+                return SectionKeys.derive(sectionKey(), "MyVault fingerprints v1");
+            } catch (GeneralSecurityException | RuntimeException ex) {
+                return null;
+            }
+        }
+
+        /**
+         * Key of the vault's encrypted side sections; unwrapped (one PBKDF2 run) on first use. Fails with an
+         * {@link UncheckedIOException} while the vault has none (see {@link #ensureSectionKey}).
+         */
+        public synchronized SecretKey sectionKey() {
+            if (sectionKey == null) {
+                try {
+                    sectionKey = SectionKeys.open(path, masterPassword);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                } catch (GeneralSecurityException ex) {
+                    throw new IllegalStateException(ex.getMessage(), ex);
+                }
+            }
+            return sectionKey;
+        }
+
+        /**
+         * Gives a vault without side sections (a new one, or one from before them) its section key. Only called
+         * when this device writes the vault or a section, never on open; see {@link SectionKeys#create}.
+         */
+        public synchronized void ensureSectionKey() throws IOException, GeneralSecurityException {
+            if (sectionKey == null && !Files.exists(SectionKeys.path(path))) sectionKey = SectionKeys.create(path, masterPassword);
+        }
+
+        public synchronized HistoryStore history() {
+            if (history == null) history = new HistoryStore(path, this::sectionKey, owner.historyPolicy);
+            return history;
+        }
+
+        /** Current plus spilled history of {@code e}, newest first (only what the entry carries until loaded). */
+        public List<Entry.PasswordHistory> fullHistory(Entry e) {
+            HistoryStore h;
+            synchronized (this) { h = history; }
+            return h != null ? h.of(e) : e.history;
+        }
+
+        /** Replaces (and wipes) the master password kept for this vault; the session takes ownership of {@code pw}. */
+        public synchronized void setMasterPassword(char[] pw) {
+            Arrays.fill(masterPassword, '\0');
+            masterPassword = pw;
+        }
+
+        /** Reads the spilled history if it hasn't been yet and re-fingerprints with it. */
+        public void loadHistory() throws IOException, GeneralSecurityException {
+            HistoryStore h = history();
+            if (h.isLoaded()) return;
+            h.load();
+            prints().reset(data.entries);
+        }
+
+        /**
+         * Points the session at a new vault file (Save As). History is spilled to the old location first,
+         * then the key, history and attachment sections (with their chunks) are copied along. Snapshots stay
+         * with the old file; the new one starts its own.
+         */
+        public void moveTo(Path newPath) throws IOException, GeneralSecurityException {
+            history().spill(data.entries, ledger != null ? ledger.tombstones.keySet() : Set.of(), System.currentTimeMillis());
+            for (Path from : List.of(SectionKeys.path(path), HistoryStore.path(path), AttachmentStore.manifestPath(path))) {
+                if (Files.exists(from)) Files.copy(from, sibling(from, newPath), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Path blobs = AttachmentStore.blobDir(path);
+            if (Files.isDirectory(blobs)) {
+                Path to = Files.createDirectories(sibling(blobs, newPath));
+                try (var chunks = Files.list(blobs)) {
+                    for (Path c : (Iterable<Path>) chunks::iterator) {
+                        Path dst = to.resolve(c.getFileName().toString());
+                        if (!Files.exists(dst)) Files.copy(c, dst); // same name, same content
+                    }
+                }
+            }
+            synchronized (this) {
+                path = newPath;
+                history = null;
+                sections = null;
+                attachments = null;
+                snapshots = null;
+            }
+        }
+
+        /** {@code vault.dat.x} → {@code newVault.x}. */
+        private Path sibling(Path section, Path newVault) {
+            return newVault.resolveSibling(newVault.getFileName() + section.getFileName().toString()
+                    .substring(path.getFileName().toString().length()));
+        }
+
+        public synchronized void invalidateIndex() { index = null; fuzzy = null; edited = true; }
+
+        /** The way to add, edit or remove entries of this vault. */
+        public VaultChanges changes() { return changes; }
+
+        /**
+         * Domains are patched per change. The search indexes are positional, so they are dropped (and rebuilt
+         * on the next search) only when entries come or go or a searchable field changed.
+         */
+        private synchronized void onChanges(VaultChanges source, List<VaultChanges.Change> batch) {
+            edited = true;
+            for (VaultChanges.Change c : batch) {
+                if (!(c instanceof VaultChanges.EntryChanged ch) || ch.previous() != ch.entry() || ch.touches(VaultChanges.SEARCHABLE)) {
+                    index = null; fuzzy = null;
+                }
+                if (domains == null) continue;
+                switch (c) {
+                    case VaultChanges.EntryAdded a -> domains.add(a.entry());
+                    case VaultChanges.EntryRemoved r -> domains.remove(r.entry());
+                    case VaultChanges.EntryChanged ch when ch.previous() != ch.entry() -> { domains.remove(ch.previous()); domains.add(ch.entry()); }
+                    case VaultChanges.EntryChanged ch -> { if (ch.touches(VaultChanges.URL)) domains.update(ch.entry()); }
+                }
+            }
+        }
+    }
+
+    public record Hit(Session session, Entry entry) {}
+
+    private static final SecureRandom RNG = new SecureRandom();
+
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final List<VaultChanges.Listener> changeListeners = new CopyOnWriteArrayList<>();
+    private volatile HistoryPolicy historyPolicy = HistoryPolicy.DEFAULT;
+
+    /**
+     * Retention for every open vault's password history (and for vaults opened later). Snapshots are kept no
+     * longer than the history's age limit, since they hold the passwords of their time.
+     */
+    public void setHistoryPolicy(HistoryPolicy p) {
+        historyPolicy = p;
+        for (Session s : sessions) {
+            s.history().setPolicy(p);
+            s.snapshots().setRetention(snapshotRetention(p));
+        }
+    }
+
+    private static SnapshotStore.Retention snapshotRetention(HistoryPolicy p) {
+        return SnapshotStore.Retention.DEFAULT.withMaxAge(p.maxAgeDays());
+    }
+
+    /** Subscribes to the entry changes of every open vault (and of vaults opened later). */
+    public void addChangeListener(VaultChanges.Listener l) {
+        changeListeners.add(l);
+        for (Session s : sessions) s.changes.addListener(l);
+    }
+
+    /** Adds an unlocked vault; the workspace takes ownership of {@code masterPassword} and wipes it on close. */
+    public Session open(Path path, VaultData data, char[] masterPassword) {
+        Session s = new Session(this, path, data, masterPassword);
+        sessions.add(s);
+        return s;
+    }
+
+    public Session find(Path path) {
+        Path abs = path.toAbsolutePath().normalize();
+        for (Session s : sessions) if (s.path.toAbsolutePath().normalize().equals(abs)) return s;
+        return null;
+    }
+
+    public List<Session> sessions() { return List.copyOf(sessions); }
+
+    public void close(Session s) {
+        if (sessions.remove(s)) Arrays.fill(s.masterPassword, '\0');
+    }
+
+    public void closeAll() {
+        for (Session s : sessions) close(s);
+    }
+
+    /** Credentials for a site across every open vault, best host match first within each vault. */
+    public List<Hit> lookup(String url) {
+        return sessions.stream()
+                .flatMap(s -> s.domains().lookup(url).stream().map(e -> new Hit(s, e)))
+                .toList();
+    }
+
+    /** Federated search: every vault's index is queried on its own worker. */
+    public List<Hit> search(String query) {
+        return Metrics.time("search.federated", () -> sessions.parallelStream()
+                .flatMap(s -> s.index().search(query).stream().map(e -> new Hit(s, e)))
+                .toList());
+    }
+}
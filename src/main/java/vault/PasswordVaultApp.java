@@ -3,6 +3,7 @@ package vault;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
@@ -18,7 +19,10 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
+import java.awt.event.AWTEventListener;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.security.*;
@@ -34,7 +38,7 @@ public class PasswordVaultApp {
     private static final Path VAULT_PATH = VAULT_DIR.resolve("vault.dat");
 
     private static final byte[] MAGIC = new byte[]{'J','V','L','T'};
-    private static final byte VERSION = 1;
+    private static final byte VERSION = 2; // 1: payload keyed straight from the password; 2: password-wrapped data key
 
     private static final int SALT_LEN = 16;
     private static final int IV_LEN = 12;
@@ -42,8 +46,17 @@ public class PasswordVaultApp {
     private static final int PBKDF2_ITERS = 600_000;
     private static final String KDF_ALGO = "PBKDF2WithHmacSHA256";
     private static final String CIPHER_ALGO = "AES/GCM/NoPadding";
+    private static final int WRAPPED_LEN = KEY_LEN_BITS / 8 + 16;
+    private static final int HEADER_LEN = 4 + 1 + 1 + SALT_LEN + 1 + IV_LEN + 1 + WRAPPED_LEN;
 
     private static final SecureRandom RNG = new SecureRandom();
+    // provider lookups cost more than the work on a small payload; one engine per thread, re-initialized per use
+    private static final ThreadLocal<Cipher> GCM = ThreadLocal.withInitial(() -> {
+        try { return Cipher.getInstance(CIPHER_ALGO); } catch (GeneralSecurityException e) { throw new IllegalStateException(e); }
+    });
+    private static final ThreadLocal<SecretKeyFactory> KDF = ThreadLocal.withInitial(() -> {
+        try { return SecretKeyFactory.getInstance(KDF_ALGO); } catch (GeneralSecurityException e) { throw new IllegalStateException(e); }
+    });
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
     public static class Entry {
@@ -60,6 +73,11 @@ public class PasswordVaultApp {
         List<Entry> entries = new ArrayList<>();
         long lastModified;
     }
+    /** The data key wrapped with a PBKDF2 key of the master password. Fixed size, so a rekey rewrites it in place. */
+    private static final class KeySlot {
+        byte[] salt, iv, wrapped;
+    }
+    private record Unlocked(VaultData data, SecretKey dek, KeySlot slot) {}
 
     private JFrame frame;
     private JTable table;
@@ -67,12 +85,16 @@ public class PasswordVaultApp {
     private DefaultTableModel tableModel;
     private TableRowSorter<TableModel> sorter;
     private JTextField searchField;
-    private char[] masterPassword;
+    private SecretKey dek;       // encrypts the payload; never changes for a vault
+    private KeySlot keySlot;     // dek wrapped under the master password, as stored in the file header
     private VaultData data;
 
     private long lastInteraction = System.currentTimeMillis();
     private static final long IDLE_LOCK_MS = 5 * 60 * 1000;
     private Timer idleTimer;
+    // registered while the main window is up; removed on lock so lock/unlock cycles don't pile up listeners
+    private final AWTEventListener activity = ev -> lastInteraction = System.currentTimeMillis();
+    private Timer clipboardTimer;
 
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new PasswordVaultApp().start());
@@ -92,19 +114,20 @@ public class PasswordVaultApp {
         if (res != JOptionPane.OK_OPTION) return;
         char[] mpw = pf.getPassword();
         try {
-            VaultData vd = loadVault(VAULT_PATH, mpw);
-            if (vd == null) {
-                Arrays.fill(mpw, '\0');
+            Unlocked u = loadVault(VAULT_PATH, mpw);
+            if (u == null) {
                 showError("Incorrect password or vault corrupted.");
                 unlockExistingVault();
                 return;
             }
-            this.masterPassword = mpw;
-            this.data = vd;
+            this.dek = u.dek();
+            this.keySlot = u.slot();
+            this.data = u.data();
             buildMainUI();
         } catch (Exception ex) {
-            Arrays.fill(mpw, '\0');
             showError("Failed to open vault: " + ex.getMessage());
+        } finally {
+            Arrays.fill(mpw, '\0');
         }
     }
     private void initNewVault() {
@@ -123,13 +146,17 @@ public class PasswordVaultApp {
             VaultData vd = new VaultData();
             vd.vaultName = name.getText().isBlank() ? "MyVault" : name.getText().trim();
             vd.lastModified = System.currentTimeMillis();
-            saveVault(VAULT_PATH, vd, mpw);
-            this.masterPassword = mpw;
+            SecretKey k = newDataKey();
+            KeySlot slot = wrapKey(k, mpw);
+            saveVault(VAULT_PATH, vd, k, slot);
+            this.dek = k;
+            this.keySlot = slot;
             this.data = vd;
             buildMainUI();
         } catch (Exception ex) {
-            Arrays.fill(mpw, '\0');
             showError("Failed to create vault: " + ex.getMessage());
+        } finally {
+            Arrays.fill(mpw, '\0');
         }
     }
     private void buildMainUI() {
@@ -213,7 +240,9 @@ public class PasswordVaultApp {
         changeMasterBtn.addActionListener(e -> onChangeMaster());
         lockBtn.addActionListener(e -> lockAndReturnToUnlock());
 
-        Toolkit.getDefaultToolkit().addAWTEventListener(ev -> lastInteraction = System.currentTimeMillis(),
+        lastInteraction = System.currentTimeMillis();
+        Toolkit.getDefaultToolkit().removeAWTEventListener(activity);
+        Toolkit.getDefaultToolkit().addAWTEventListener(activity,
                 AWTEvent.KEY_EVENT_MASK | AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK);
 
         idleTimer = new Timer(5_000, e -> {
@@ -238,9 +267,15 @@ public class PasswordVaultApp {
     }
     private void refreshTable() {
         tableModel.setRowCount(0);
-        for (Entry e : data.entries) {
-            tableModel.addRow(new Object[]{e.label, ns(e.username), ns(e.email), Instant.ofEpochMilli(e.updatedAt), e.id});
-        }
+        for (Entry e : data.entries) tableModel.addRow(row(e));
+    }
+    private Object[] row(Entry e) {
+        return new Object[]{e.label, ns(e.username), ns(e.email), Instant.ofEpochMilli(e.updatedAt), e.id};
+    }
+    /** Model row showing the entry with this id, or -1. */
+    private int modelRow(String id) {
+        for (int r = 0; r < tableModel.getRowCount(); r++) if (id.equals(tableModel.getValueAt(r, 4))) return r;
+        return -1;
     }
     private String ns(String s) { return (s == null || s.isEmpty()) ? "-" : s; }
     private Entry getSelected() {
@@ -259,7 +294,7 @@ public class PasswordVaultApp {
             long now = System.currentTimeMillis();
             created.createdAt = now; created.updatedAt = now;
             data.entries.add(created);
-            persistAndRefresh();
+            if (persist()) tableModel.addRow(row(created));
         }
     }
     private void onEdit() {
@@ -273,7 +308,11 @@ public class PasswordVaultApp {
             sel.email = edited.email;
             if (edited.password != null) sel.password = edited.password;
             sel.updatedAt = System.currentTimeMillis();
-            persistAndRefresh();
+            int r = modelRow(sel.id);
+            if (persist() && r >= 0) {
+                Object[] values = row(sel);
+                for (int c = 0; c < values.length; c++) tableModel.setValueAt(values[c], r, c);
+            }
         }
     }
     private void onDelete() {
@@ -282,7 +321,8 @@ public class PasswordVaultApp {
         int res = JOptionPane.showConfirmDialog(frame, "Delete '" + sel.label + "'?", "Confirm", JOptionPane.OK_CANCEL_OPTION);
         if (res == JOptionPane.OK_OPTION) {
             data.entries.remove(sel);
-            persistAndRefresh();
+            int r = modelRow(sel.id);
+            if (persist() && r >= 0) tableModel.removeRow(r);
         }
     }
     private void onChangeMaster() {
@@ -296,13 +336,12 @@ public class PasswordVaultApp {
         if (!Arrays.equals(p1.getPassword(), p2.getPassword())) { showError("Passwords do not match."); return; }
         char[] newMpw = p1.getPassword();
         try {
-            saveVault(VAULT_PATH, data, newMpw);
-            Arrays.fill(masterPassword, '\0');
-            masterPassword = newMpw;
+            keySlot = rekey(VAULT_PATH, dek, keySlot, newMpw); // header only; the payload stays as it is
             showInfo("Master password updated.");
         } catch (Exception ex) {
-            Arrays.fill(newMpw, '\0');
             showError("Failed to update master: " + ex.getMessage());
+        } finally {
+            Arrays.fill(newMpw, '\0');
         }
     }
     private void copySelected(String field) {
@@ -318,79 +357,186 @@ public class PasswordVaultApp {
         copyToClipboardEphemeral(text, 15_000);
         showInfo("Copied " + field + " to clipboard (clears in ~15s)");
     }
+    /** One timer for all copies: a new copy pushes the clear back instead of adding another timer. */
     private void copyToClipboardEphemeral(String s, int clearAfterMs) {
         Clipboard cb = Toolkit.getDefaultToolkit().getSystemClipboard();
         cb.setContents(new StringSelection(s), null);
-        new Timer(clearAfterMs, e -> {
-            Clipboard cb2 = Toolkit.getDefaultToolkit().getSystemClipboard();
-            cb2.setContents(new StringSelection(""), null);
-        }) {{ setRepeats(false); }}.start();
+        if (clipboardTimer == null) {
+            clipboardTimer = new Timer(clearAfterMs, e -> clearClipboard());
+            clipboardTimer.setRepeats(false);
+        }
+        clipboardTimer.setInitialDelay(clearAfterMs);
+        clipboardTimer.restart();
+    }
+    private void clearClipboard() {
+        if (clipboardTimer != null) clipboardTimer.stop();
+        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(""), null);
     }
-    private void persistAndRefresh() {
+    /** Saves after an edit; the caller then patches just the affected table row. */
+    private boolean persist() {
         try {
             data.lastModified = System.currentTimeMillis();
-            saveVault(VAULT_PATH, data, masterPassword);
-            refreshTable();
-        } catch (Exception ex) { showError("Failed to save: " + ex.getMessage()); }
+            saveVault(VAULT_PATH, data, dek, keySlot);
+            return true;
+        } catch (Exception ex) { showError("Failed to save: " + ex.getMessage()); return false; }
     }
     private void lockAndReturnToUnlock() {
         if (frame != null) frame.dispose();
         if (idleTimer != null) idleTimer.stop();
-        if (masterPassword != null) Arrays.fill(masterPassword, '\0');
-        masterPassword = null;
+        Toolkit.getDefaultToolkit().removeAWTEventListener(activity);
+        if (clipboardTimer != null && clipboardTimer.isRunning()) clearClipboard();
+        dek = null;
+        keySlot = null;
         data = null;
         showInfo("Vault locked.");
         showUnlockOrInit();
     }
 
-    private static void saveVault(Path p, VaultData data, char[] masterPassword) throws Exception {
-        byte[] salt = new byte[SALT_LEN]; RNG.nextBytes(salt);
-        SecretKey key = deriveKey(masterPassword, salt);
+    private static void saveVault(Path p, VaultData data, SecretKey dek, KeySlot slot) throws Exception {
         byte[] iv = new byte[IV_LEN]; RNG.nextBytes(iv);
         byte[] plaintext = GSON.toJson(data).getBytes(StandardCharsets.UTF_8);
-        byte[] ciphertext = encryptGCM(key, iv, plaintext);
+        byte[] ciphertext = encryptGCM(dek, iv, plaintext);
         Path tmp = p.resolveSibling(p.getFileName().toString() + ".tmp");
         try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
-            out.write(MAGIC); out.writeByte(VERSION);
-            out.writeByte(SALT_LEN); out.write(salt);
-            out.writeByte(IV_LEN);   out.write(iv);
+            out.write(header(slot));
+            out.writeByte(IV_LEN); out.write(iv);
             out.write(ciphertext);
         }
         Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         Arrays.fill(plaintext, (byte)0);
     }
-    private static VaultData loadVault(Path p, char[] masterPassword) throws Exception {
-        byte[] all = Files.readAllBytes(p);
-        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(all))) {
-            byte[] magic = new byte[4]; in.readFully(magic);
-            if (!Arrays.equals(magic, MAGIC)) return null;
-            byte ver = in.readByte(); if (ver != VERSION) return null;
-            int saltLen = in.readUnsignedByte(); byte[] salt = in.readNBytes(saltLen);
-            int ivLen = in.readUnsignedByte();   byte[] iv   = in.readNBytes(ivLen);
-            byte[] ciphertext = in.readAllBytes();
-            SecretKey key = deriveKey(masterPassword, salt);
-            byte[] plaintext = decryptGCM(key, iv, ciphertext);
-            String json = new String(plaintext, StandardCharsets.UTF_8);
-            Arrays.fill(plaintext, (byte)0);
-            VaultData vd = GSON.fromJson(json, VaultData.class);
-            return vd;
+    /** Null for a wrong password or a file that isn't a vault. Version 1 files are rewritten as version 2 on the spot. */
+    private static Unlocked loadVault(Path p, char[] masterPassword) throws Exception {
+        ByteBuffer all = readFully(p);
+        byte[] magic = new byte[4]; all.get(magic);
+        byte ver = all.get();
+        Path journal = journalPath(p);
+        if (Arrays.equals(magic, MAGIC) && ver == 1) {
+            int saltLen = Byte.toUnsignedInt(all.get()); byte[] salt = new byte[saltLen]; all.get(salt);
+            int ivLen = Byte.toUnsignedInt(all.get());   byte[] iv   = new byte[ivLen];   all.get(iv);
+            VaultData vd;
+            try { vd = decryptPayload(deriveKey(masterPassword, salt), iv, all.slice()); }
+            catch (AEADBadTagException ex) { return null; }
+            SecretKey k = newDataKey();
+            KeySlot slot = wrapKey(k, masterPassword);
+            saveVault(p, vd, k, slot);
+            return new Unlocked(vd, k, slot);
+        }
+        KeySlot slot = Arrays.equals(magic, MAGIC) && ver == VERSION ? readSlot(all) : null;
+        SecretKey k = slot != null ? unwrapKey(slot, masterPassword) : null;
+        if (k == null && Files.exists(journal)) {
+            // a master password change was cut short: the header may be torn; the journal has the old and the new one
+            ByteBuffer j = ByteBuffer.wrap(Files.readAllBytes(journal));
+            for (int at = 0; k == null && at + HEADER_LEN <= j.limit(); at += HEADER_LEN) {
+                KeySlot s = readSlot(j.slice(at + 5, HEADER_LEN - 5));
+                if (s != null && (k = unwrapKey(s, masterPassword)) != null) { slot = s; writeHeader(p, header(s)); }
+            }
+        }
+        if (k == null) return null;
+        Files.deleteIfExists(journal);
+        all.position(HEADER_LEN);
+        int ivLen = Byte.toUnsignedInt(all.get()); byte[] iv = new byte[ivLen]; all.get(iv);
+        // header parsed in place; the rest of the buffer is the ciphertext, handed to the cipher as a view
+        return new Unlocked(decryptPayload(k, iv, all.slice()), k, slot);
+    }
+    private static VaultData decryptPayload(SecretKey key, byte[] iv, ByteBuffer ciphertext) throws GeneralSecurityException {
+        ByteBuffer plaintext = decryptGCM(key, iv, ciphertext);
+        String json = new String(plaintext.array(), 0, plaintext.limit(), StandardCharsets.UTF_8);
+        Arrays.fill(plaintext.array(), (byte)0);
+        return GSON.fromJson(json, VaultData.class);
+    }
+    /**
+     * Re-wraps the data key under a new password and overwrites just the fixed-size header: a few hundred bytes,
+     * whatever the vault size. Both headers go to a journal first so a torn write can be repaired on the next unlock.
+     */
+    private static KeySlot rekey(Path p, SecretKey dek, KeySlot current, char[] newPassword) throws Exception {
+        KeySlot fresh = wrapKey(dek, newPassword);
+        byte[] oldHeader = header(current), newHeader = header(fresh);
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            ByteBuffer onDisk = ByteBuffer.allocate(HEADER_LEN);
+            while (onDisk.hasRemaining() && ch.read(onDisk) >= 0) { }
+            if (!Arrays.equals(onDisk.array(), oldHeader)) throw new IOException("Vault file changed on disk; reopen it first");
+        }
+        Path journal = journalPath(p);
+        ByteBuffer both = ByteBuffer.allocate(2 * HEADER_LEN).put(oldHeader).put(newHeader);
+        Files.write(journal, both.array(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        writeHeader(p, newHeader);
+        Files.delete(journal);
+        return fresh;
+    }
+    private static void writeHeader(Path p, byte[] header) throws IOException {
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.wrap(header);
+            while (b.hasRemaining()) ch.write(b, b.position());
+            ch.force(true);
+        }
+    }
+    private static Path journalPath(Path p) { return p.resolveSibling(p.getFileName().toString() + ".rekey"); }
+    private static byte[] header(KeySlot s) {
+        return ByteBuffer.allocate(HEADER_LEN).put(MAGIC).put(VERSION)
+                .put((byte) SALT_LEN).put(s.salt).put((byte) IV_LEN).put(s.iv).put((byte) WRAPPED_LEN).put(s.wrapped).array();
+    }
+    /** Reads the slot that follows magic and version; null if the lengths don't match this format. */
+    private static KeySlot readSlot(ByteBuffer b) {
+        if (b.remaining() < HEADER_LEN - 5) return null;
+        KeySlot s = new KeySlot();
+        if (Byte.toUnsignedInt(b.get()) != SALT_LEN) return null; s.salt = new byte[SALT_LEN]; b.get(s.salt);
+        if (Byte.toUnsignedInt(b.get()) != IV_LEN) return null;   s.iv = new byte[IV_LEN];     b.get(s.iv);
+        if (Byte.toUnsignedInt(b.get()) != WRAPPED_LEN) return null; s.wrapped = new byte[WRAPPED_LEN]; b.get(s.wrapped);
+        return s;
+    }
+    private static SecretKey newDataKey() {
+        byte[] raw = new byte[KEY_LEN_BITS / 8]; RNG.nextBytes(raw);
+        SecretKey k = new SecretKeySpec(raw, "AES");
+        Arrays.fill(raw, (byte)0);
+        return k;
+    }
+    private static KeySlot wrapKey(SecretKey dek, char[] password) throws GeneralSecurityException {
+        KeySlot s = new KeySlot();
+        s.salt = new byte[SALT_LEN]; RNG.nextBytes(s.salt);
+        s.iv = new byte[IV_LEN];     RNG.nextBytes(s.iv);
+        byte[] raw = dek.getEncoded();
+        try { s.wrapped = encryptGCM(deriveKey(password, s.salt), s.iv, raw); }
+        finally { Arrays.fill(raw, (byte)0); }
+        return s;
+    }
+    /** Null if {@code password} doesn't open the slot. */
+    private static SecretKey unwrapKey(KeySlot s, char[] password) throws GeneralSecurityException {
+        try {
+            ByteBuffer raw = decryptGCM(deriveKey(password, s.salt), s.iv, ByteBuffer.wrap(s.wrapped));
+            SecretKey k = new SecretKeySpec(raw.array(), 0, raw.limit(), "AES");
+            Arrays.fill(raw.array(), (byte)0);
+            return k;
+        } catch (AEADBadTagException ex) {
+            return null;
+        }
+    }
+    // One heap copy of the file. Not mmap'd: a live mapping pins vault.dat on Windows and breaks the ATOMIC_MOVE in saveVault.
+    private static ByteBuffer readFully(Path p) throws IOException {
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Vault file too large: " + size + " bytes");
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining() && ch.read(buf) >= 0) { }
+            return buf.flip();
         }
     }
     private static SecretKey deriveKey(char[] password, byte[] salt) throws NoSuchAlgorithmException, InvalidKeySpecException {
         KeySpec spec = new PBEKeySpec(password, salt, PBKDF2_ITERS, KEY_LEN_BITS);
-        SecretKeyFactory skf = SecretKeyFactory.getInstance(KDF_ALGO);
-        byte[] keyBytes = skf.generateSecret(spec).getEncoded();
+        byte[] keyBytes = KDF.get().generateSecret(spec).getEncoded();
         return new SecretKeySpec(keyBytes, "AES");
     }
     private static byte[] encryptGCM(SecretKey key, byte[] iv, byte[] plaintext) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance(CIPHER_ALGO);
+        Cipher cipher = GCM.get();
         cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
         return cipher.doFinal(plaintext);
     }
-    private static byte[] decryptGCM(SecretKey key, byte[] iv, byte[] ciphertext) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance(CIPHER_ALGO);
+    private static ByteBuffer decryptGCM(SecretKey key, byte[] iv, ByteBuffer ciphertext) throws GeneralSecurityException {
+        Cipher cipher = GCM.get();
         cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, iv));
-        return cipher.doFinal(ciphertext);
+        ByteBuffer out = ByteBuffer.allocate(cipher.getOutputSize(ciphertext.remaining()));
+        cipher.doFinal(ciphertext, out);
+        return out.flip();
     }
     private void showError(String msg) { JOptionPane.showMessageDialog(null, msg, "Error", JOptionPane.ERROR_MESSAGE); }
     private void showInfo(String msg) { JOptionPane.showMessageDialog(null, msg, "Info", JOptionPane.INFORMATION_MESSAGE); }
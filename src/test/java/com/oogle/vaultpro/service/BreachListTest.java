@@ -0,0 +1,152 @@
+package com.oogle.vaultpro.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BreachListTest {
+
+    /** Passwords whose hashes the test lists are made of, in list (hash) order. */
+    private static final List<String> LISTED = IntStream.range(0, 300).mapToObj(i -> "listed-" + i)
+            .sorted(Comparator.comparing(BreachListTest::hash)).toList();
+
+    @TempDir
+    Path dir;
+
+    private static byte[] sha1(String password) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hash(String password) { return HexFormat.of().withUpperCase().formatHex(sha1(password)); }
+
+    /** A list in the downloaded {@code HASH:count} format; counts of varying width so lines differ in length. */
+    private Path list(List<String> passwords, String eol, boolean lowercase, boolean trailingNewline) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < passwords.size(); i++) {
+            String h = hash(passwords.get(i));
+            sb.append(lowercase ? h.toLowerCase(Locale.ROOT) : h).append(':').append(1 + (long) i * i * 7919 % 1_000_000);
+            if (i < passwords.size() - 1 || trailingNewline) sb.append(eol);
+        }
+        Path p = Files.createTempFile(dir, "pwned", ".txt");
+        Files.writeString(p, sb, StandardCharsets.US_ASCII);
+        return p;
+    }
+
+    @Test
+    void sortedListFindsEveryLineIncludingFirstAndLast() throws IOException {
+        BreachList b = BreachList.open(list(LISTED, "\n", false, true));
+        assertFalse(b.isBloomFilter());
+        assertTrue(b.contains(LISTED.get(0)));
+        assertTrue(b.contains(LISTED.get(LISTED.size() - 1)));
+        for (String pw : LISTED) assertTrue(b.contains(pw), pw);
+        for (int i = 0; i < 300; i++) assertFalse(b.contains("unlisted-" + i), "unlisted-" + i);
+        assertFalse(b.contains(""));
+        assertFalse(b.contains(null));
+    }
+
+    @Test
+    void sortedListMissesBeforeFirstAfterLastAndBetweenLines() throws IOException {
+        List<String> even = new ArrayList<>(), odd = new ArrayList<>();
+        for (int i = 0; i < LISTED.size(); i++) (i % 2 == 0 ? even : odd).add(LISTED.get(i));
+        // without the smallest and largest hash: those sort before the first and after the last line
+        BreachList b = BreachList.open(list(odd.subList(0, odd.size() - 1), "\n", false, true));
+        assertFalse(b.contains(LISTED.get(0)));
+        assertFalse(b.contains(LISTED.get(LISTED.size() - 1)));
+        for (String pw : even) assertFalse(b.contains(pw), pw);
+        for (String pw : odd.subList(0, odd.size() - 1)) assertTrue(b.contains(pw), pw);
+    }
+
+    @Test
+    void sortedListReadsLowercaseCrlfAndNoTrailingNewline() throws IOException {
+        for (String eol : List.of("\n", "\r\n")) {
+            for (boolean lowercase : new boolean[] {false, true}) {
+                for (boolean trailing : new boolean[] {false, true}) {
+                    String variant = (eol.length() == 2 ? "CRLF" : "LF") + (lowercase ? " lowercase" : "") + (trailing ? "" : " no final newline");
+                    BreachList b = BreachList.open(list(LISTED, eol, lowercase, trailing));
+                    for (String pw : LISTED) assertTrue(b.contains(pw), variant + ": " + pw);
+                    for (int i = 0; i < 50; i++) assertFalse(b.contains("unlisted-" + i), variant + ": unlisted-" + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sortedListOfOneOrNoLines() throws IOException {
+        BreachList one = BreachList.open(list(List.of("hunter2"), "\n", false, false));
+        assertTrue(one.contains("hunter2"));
+        assertFalse(one.contains("hunter3"));
+
+        Path empty = Files.createTempFile(dir, "pwned", ".txt");
+        assertFalse(BreachList.open(empty).contains("hunter2"));
+    }
+
+    @Test
+    void bloomFilterHeaderAndProbes() throws IOException {
+        // blank and short lines are not hashes and must not count towards n
+        Path src = list(LISTED, "\r\n", true, true);
+        Files.writeString(src, "\r\n\r\nnot a hash\r\n", StandardCharsets.US_ASCII, StandardOpenOption.APPEND);
+        Path out = dir.resolve("pwned.bloom");
+        BreachList.buildBloom(src, out, 0.01);
+        assertFalse(Files.exists(dir.resolve("pwned.bloom.tmp")));
+
+        ByteBuffer f = ByteBuffer.wrap(Files.readAllBytes(out));
+        byte[] magic = new byte[4];
+        f.get(magic);
+        assertEquals("MVBF", new String(magic, StandardCharsets.US_ASCII));
+        assertEquals(1, f.get());
+        int k = f.getInt();
+        long m = f.getLong();
+        int n = LISTED.size();
+        assertEquals((long) Math.ceil(-n * Math.log(0.01) / (Math.log(2) * Math.log(2))), m);
+        assertEquals(Math.round((double) m / n * Math.log(2)), k);
+        assertEquals(4 + 1 + 4 + 8 + (m + 7) / 8, f.capacity());
+
+        // k probes per hash from its two 64-bit halves; bit b is bit (b & 7) of byte b >>> 3 after the header
+        for (String pw : LISTED) {
+            byte[] h = sha1(pw);
+            long h1 = ByteBuffer.wrap(h, 0, 8).getLong(), h2 = ByteBuffer.wrap(h, 8, 8).getLong() | 1;
+            for (int i = 0; i < k; i++) {
+                long bit = Math.floorMod(h1 + i * h2, m);
+                assertTrue((f.get(17 + (int) (bit >>> 3)) & (1 << (bit & 7))) != 0, pw + " probe " + i);
+            }
+        }
+
+        BreachList b = BreachList.open(out);
+        assertTrue(b.isBloomFilter());
+        for (String pw : LISTED) assertTrue(b.contains(pw), pw);
+        int falsePositives = 0;
+        for (int i = 0; i < 2000; i++) if (b.contains("unlisted-" + i)) falsePositives++;
+        assertTrue(falsePositives < 60, falsePositives + " false positives at 1%");
+    }
+
+    @Test
+    void bloomFilterWithBadHeaderIsRejected() throws IOException {
+        Path out = dir.resolve("pwned.bloom");
+        BreachList.buildBloom(list(LISTED, "\n", false, true), out, 0.01);
+        byte[] ok = Files.readAllBytes(out);
+
+        byte[] version = ok.clone();
+        version[4] = 2;
+        Files.write(out, version);
+        assertThrows(IOException.class, () -> BreachList.open(out));
+
+        Files.write(out, Arrays.copyOf(ok, ok.length - 1)); // shorter than the bit count in the header says
+        assertThrows(IOException.class, () -> BreachList.open(out));
+    }
+}
@@ -0,0 +1,205 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+import com.oogle.vaultpro.model.SyncLedger;
+import com.oogle.vaultpro.model.VaultData;
+import com.oogle.vaultpro.model.VersionVector.Order;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaSyncTest {
+
+    private static Entry entry(String id, long updatedAt) {
+        Entry e = new Entry();
+        e.id = id;
+        e.label = id;
+        e.createdAt = 1;
+        e.updatedAt = updatedAt;
+        return e;
+    }
+
+    private static VaultData vault(Entry... entries) {
+        VaultData d = new VaultData();
+        d.entries.addAll(List.of(entries));
+        return d;
+    }
+
+    /** A ledger for {@code d} as if both devices had last synced with every entry in it. */
+    private static SyncLedger ledger(VaultData d) {
+        SyncLedger l = new SyncLedger();
+        l.adopt(d.entries);
+        return l;
+    }
+
+    /** Ships what {@code to} is missing from {@code from}, the way a sync does. */
+    private static VaultMerger.Result sync(VaultData from, SyncLedger fromLedger, VaultData to, SyncLedger toLedger) {
+        return DeltaSync.resolve(DeltaSync.diff(from, fromLedger, toLedger), to, toLedger);
+    }
+
+    @Test
+    void remoteEditOfUntouchedEntryIsTaken() {
+        VaultData local = vault(entry("a", 100));
+        SyncLedger ours = ledger(local);
+        VaultData remote = vault(entry("a", 200));
+        SyncLedger theirs = ledger(remote);
+        theirs.touch("a", "B");
+
+        VaultMerger.Result r = sync(remote, theirs, local, ours);
+        assertEquals(List.of("a"), ids(r.changed));
+        assertEquals(Order.EQUAL, ours.clock("a").compare(theirs.clock("a")));
+    }
+
+    @Test
+    void concurrentEditsKeepTheNewerUpdatedAt() {
+        VaultData local = vault(entry("a", 300), entry("b", 200));
+        SyncLedger ours = ledger(local);
+        ours.touch("a", "A");
+        ours.touch("b", "A");
+        VaultData remote = vault(entry("a", 200), entry("b", 300));
+        SyncLedger theirs = ledger(remote);
+        theirs.touch("a", "B");
+        theirs.touch("b", "B");
+
+        VaultMerger.Result r = sync(remote, theirs, local, ours);
+        assertEquals(List.of("b"), ids(r.changed));
+        assertTrue(r.added.isEmpty());
+        assertTrue(r.removed.isEmpty());
+        // both clocks are folded in, so our "a" now wins on the other device instead of bouncing back
+        assertEquals(Order.AFTER, ours.clock("a").compare(theirs.clock("a")));
+        assertEquals(Order.AFTER, ours.clock("b").compare(theirs.clock("b")));
+    }
+
+    @Test
+    void concurrentEditWithEqualUpdatedAtKeepsOurs() {
+        VaultData local = vault(entry("a", 200));
+        SyncLedger ours = ledger(local);
+        ours.touch("a", "A");
+        VaultData remote = vault(entry("a", 200));
+        SyncLedger theirs = ledger(remote);
+        theirs.touch("a", "B");
+
+        assertTrue(sync(remote, theirs, local, ours).isEmpty());
+    }
+
+    @Test
+    void olderRemoteCopyIsIgnored() {
+        VaultData local = vault(entry("a", 300));
+        SyncLedger ours = ledger(local);
+        ours.touch("a", "A");
+        VaultData remote = vault(entry("a", 100));
+
+        assertTrue(DeltaSync.diff(remote, ledger(remote), ours).isEmpty());
+    }
+
+    @Test
+    void remoteDeleteOfUneditedEntryRemovesIt() {
+        VaultData local = vault(entry("a", 100), entry("b", 100));
+        SyncLedger ours = ledger(local);
+        VaultData remote = vault(entry("a", 100));
+        SyncLedger theirs = ledger(local);
+        theirs.delete("b", "B");
+
+        VaultMerger.Result r = sync(remote, theirs, local, ours);
+        assertEquals(List.of("b"), ids(r.removed));
+        assertFalse(ours.clocks.containsKey("b"));
+        assertTrue(ours.tombstones.containsKey("b"));
+    }
+
+    @Test
+    void localEditBeatsConcurrentRemoteDelete() {
+        VaultData local = vault(entry("a", 200));
+        SyncLedger ours = ledger(local);
+        ours.touch("a", "A");
+        VaultData remote = vault();
+        SyncLedger theirs = ledger(local);
+        theirs.delete("a", "B");
+
+        VaultMerger.Result r = sync(remote, theirs, local, ours);
+        assertTrue(r.isEmpty());
+        assertTrue(ours.clocks.containsKey("a"));
+        assertFalse(ours.tombstones.containsKey("a"));
+        // our clock now dominates their tombstone: the edit brings the entry back over there
+        assertEquals(Order.AFTER, ours.clock("a").compare(theirs.clock("a")));
+        VaultMerger.Result back = sync(local, ours, remote, theirs);
+        assertEquals(List.of("a"), ids(back.added));
+        assertFalse(theirs.tombstones.containsKey("a"));
+    }
+
+    @Test
+    void remoteEditBeatsConcurrentLocalDelete() {
+        VaultData base = vault(entry("a", 100));
+        VaultData local = vault();
+        SyncLedger ours = ledger(base);
+        ours.delete("a", "A");
+        VaultData remote = vault(entry("a", 200));
+        SyncLedger theirs = ledger(remote);
+        theirs.touch("a", "B");
+
+        VaultMerger.Result r = sync(remote, theirs, local, ours);
+        assertEquals(List.of("a"), ids(r.added));
+        assertTrue(ours.clocks.containsKey("a"));
+        assertFalse(ours.tombstones.containsKey("a"));
+    }
+
+    @Test
+    void resurrectedEntryReplacesTheTombstoneElsewhere() {
+        VaultData base = vault(entry("a", 100));
+        SyncLedger history = ledger(base);
+        history.delete("a", "A");
+        SyncLedger theirs = ledger(base);
+        theirs.delete("a", "A"); // the delete has synced: both devices hold the same tombstone
+        VaultData remote = vault();
+
+        // then re-created under the same id (undo of the delete): the clock continues from the tombstone
+        VaultData local = vault(entry("a", 300));
+        history.touch("a", "A");
+        assertEquals(Order.AFTER, history.clock("a").compare(theirs.clock("a")));
+
+        VaultMerger.Result r = sync(local, history, remote, theirs);
+        assertEquals(List.of("a"), ids(r.added));
+        assertFalse(theirs.tombstones.containsKey("a"));
+        assertEquals(Order.EQUAL, theirs.clock("a").compare(history.clock("a")));
+
+        // and the stale tombstone never travels back
+        assertTrue(DeltaSync.diff(remote, theirs, history).deletes.isEmpty());
+    }
+
+    @Test
+    void ledgerIsUsedOnlyForTheVaultRevisionItWasWrittenWith() {
+        // clock says the remote edit came after ours, while its timestamp (clock skew) says it is older
+        VaultData remote = vault(entry("a", 200));
+        remote.vaultRevision = 7;
+        SyncLedger theirs = ledger(remote);
+        theirs.touch("a", "A");
+        theirs.touch("a", "B");
+        Map<String, Long> base = Map.of("a", 100L);
+
+        VaultData local = vault(entry("a", 300));
+        SyncLedger ours = ledger(local);
+        ours.touch("a", "A");
+        theirs.vaultRevision = 7;
+        VaultMerger.Result r = DeltaSync.merge(local, ours, base, remote, theirs);
+        assertEquals(List.of("a"), ids(r.changed));
+        assertEquals(7, r.remoteRevision);
+
+        // a ledger from another revision doesn't describe this file: three-way merge, newer updatedAt wins
+        local = vault(entry("a", 300));
+        ours = ledger(local);
+        ours.touch("a", "A");
+        theirs.vaultRevision = 6;
+        r = DeltaSync.merge(local, ours, base, remote, theirs);
+        assertTrue(r.isEmpty());
+        assertEquals(7, r.remoteRevision);
+
+        r = DeltaSync.merge(local, ours, base, remote, null);
+        assertTrue(r.isEmpty());
+    }
+
+    private static List<String> ids(List<Entry> entries) {
+        return entries.stream().map(e -> e.id).toList();
+    }
+}
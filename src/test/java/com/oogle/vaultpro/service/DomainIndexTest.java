@@ -0,0 +1,51 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DomainIndexTest {
+
+    private static Entry entry(String id, String url) {
+        Entry e = new Entry();
+        e.id = id;
+        e.url = url;
+        return e;
+    }
+
+    @Test
+    void registrableDomainFollowsThePublicSuffixList() {
+        assertEquals("example.com", DomainIndex.registrableDomain("login.foo.example.com"));
+        assertEquals("example.co.uk", DomainIndex.registrableDomain("a.example.co.uk"));
+        assertEquals("victim.web.app", DomainIndex.registrableDomain("victim.web.app"));
+        assertEquals("shop.myshopify.com", DomainIndex.registrableDomain("admin.shop.myshopify.com"));
+        assertEquals("web.app", DomainIndex.registrableDomain("web.app")); // a suffix itself
+        assertEquals("b.example.bd", DomainIndex.registrableDomain("a.b.example.bd")); // *.bd
+        assertEquals("www.ck", DomainIndex.registrableDomain("www.ck")); // !www.ck
+        assertEquals("192.168.1.10", DomainIndex.registrableDomain("192.168.1.10"));
+    }
+
+    @Test
+    void unknownSuffixKeepsTheHostOnItsOwn() {
+        assertEquals("a.b.not-a-real-tld", DomainIndex.registrableDomain("a.b.not-a-real-tld"));
+    }
+
+    @Test
+    void sharedHostingSitesDoNotSeeEachOther() {
+        Entry victim = entry("v", "https://victim.web.app/login");
+        DomainIndex d = DomainIndex.build(List.of(victim));
+        assertTrue(d.lookup("https://attacker.web.app").isEmpty());
+        assertEquals(List.of(victim), d.lookup("https://victim.web.app"));
+    }
+
+    @Test
+    void exactHostThenParentsThenSiblings() {
+        Entry exact = entry("exact", "https://login.example.com"), parent = entry("parent", "example.com"),
+                sibling = entry("sibling", "https://mail.example.com"), other = entry("other", "https://example.org");
+        DomainIndex d = DomainIndex.build(List.of(sibling, other, parent, exact));
+        assertEquals(List.of(exact, parent, sibling), d.lookup("https://www.login.example.com/x"));
+    }
+}
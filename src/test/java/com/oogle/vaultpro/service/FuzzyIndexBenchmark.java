@@ -0,0 +1,69 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ranked search at 100k entries must stay under 5 ms per query. Not part of {@code test}; run it with
+ * {@code gradlew benchmark}. Reports the best and median of repeated {@link FuzzyIndex#top} calls after a
+ * warm-up and asserts on the median.
+ */
+@Tag("benchmark")
+class FuzzyIndexBenchmark {
+
+    private static final int ENTRIES = 100_000, K = 500, WARMUP = 50, RUNS = 30;
+    private static final long BUDGET_NANOS = 5_000_000L;
+    private static final String[] QUERIES = { "gh", "github", "gthub", "netflx", "paypal 42", "zzzz", "bank acct", "mail" };
+    private static final String[] SITES = { "github", "gitlab", "netflix", "paypal", "amazon", "google", "bank", "mail",
+            "dropbox", "spotify", "steam", "twitter", "reddit", "stripe", "atlassian", "discord" };
+    private static final String[] TAGS = { "work", "personal", "finance", "dev", "shopping", "social", "old" };
+
+    @Test
+    void topStaysUnderFiveMillisecondsAt100kEntries() {
+        FuzzyIndex index = FuzzyIndex.build(entries(ENTRIES, 42));
+        assertEquals(ENTRIES, index.size());
+        for (int i = 0; i < WARMUP; i++) for (String q : QUERIES) index.top(q, K);
+
+        StringBuilder report = new StringBuilder("FuzzyIndex.top at " + ENTRIES + " entries, k=" + K + ":");
+        long worst = 0;
+        for (String q : QUERIES) {
+            long[] t = new long[RUNS];
+            int hits = 0;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                hits = index.top(q, K).length;
+                t[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(t);
+            report.append(String.format("%n  %-10s best %.2f ms, median %.2f ms, %d hits", '"' + q + '"', t[0] / 1e6, t[RUNS / 2] / 1e6, hits));
+            worst = Math.max(worst, t[RUNS / 2]);
+        }
+        System.out.println(report);
+        assertTrue(worst < BUDGET_NANOS, "slowest median was " + worst / 1e6 + " ms");
+    }
+
+    /** Synthetic vault: site names with numeric suffixes, e-mail usernames, URLs and a couple of tags each. */
+    static List<Entry> entries(int n, long seed) {
+        Random r = new Random(seed);
+        List<Entry> l = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String site = SITES[r.nextInt(SITES.length)];
+            Entry e = new Entry();
+            e.id = Integer.toString(i);
+            e.label = site + " " + (i % 1000) + (r.nextBoolean() ? " account" : "");
+            e.username = "user" + r.nextInt(10_000) + "@" + SITES[r.nextInt(SITES.length)] + ".com";
+            e.url = "https://" + (r.nextBoolean() ? "login." : "") + site + ".com/" + i;
+            e.tags = new ArrayList<>(List.of(TAGS[r.nextInt(TAGS.length)], TAGS[r.nextInt(TAGS.length)]));
+            l.add(e);
+        }
+        return l;
+    }
+}
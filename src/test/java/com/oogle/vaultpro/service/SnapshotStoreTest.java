@@ -0,0 +1,135 @@
+package com.oogle.vaultpro.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Content-defined chunk boundaries and the retention thinning, without touching the disk. */
+class SnapshotStoreTest {
+
+    private static final long HOUR = 3_600_000L, DAY = 24 * HOUR, WEEK = 7 * DAY;
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void chunksStayWithinSizeLimits() {
+        byte[] data = random(1 << 20, 1);
+        List<byte[]> chunks = cut(data);
+        int total = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            int n = chunks.get(i).length;
+            total += n;
+            assertTrue(n <= SnapshotStore.MAX_CHUNK, "chunk " + i + " is " + n + " bytes");
+            if (i < chunks.size() - 1) assertTrue(n > SnapshotStore.MIN_CHUNK, "chunk " + i + " is " + n + " bytes");
+        }
+        assertEquals(data.length, total);
+        int avg = data.length / chunks.size();
+        assertTrue(avg > SnapshotStore.AVG_CHUNK / 2 && avg < SnapshotStore.AVG_CHUNK * 2, "average chunk " + avg);
+    }
+
+    @Test
+    void shortInputIsOneChunk() {
+        byte[] data = random(SnapshotStore.MIN_CHUNK, 2);
+        assertEquals(data.length, SnapshotStore.boundary(data, 0, data.length));
+        assertEquals(data.length, SnapshotStore.boundary(data, 100, data.length));
+    }
+
+    @Test
+    void repetitiveInputIsCutAtTheMaximum() {
+        byte[] data = new byte[3 * SnapshotStore.MAX_CHUNK];
+        assertEquals(SnapshotStore.MAX_CHUNK, SnapshotStore.boundary(data, 0, data.length));
+    }
+
+    @Test
+    void boundariesAreDeterministic() {
+        byte[] data = random(300_000, 3);
+        assertEquals(keys(cut(data)), keys(cut(data.clone())));
+    }
+
+    @Test
+    void insertionOnlyChangesTheChunksAroundIt() {
+        byte[] data = random(1 << 20, 4);
+        byte[] insert = "a new entry somewhere in the middle".getBytes(StandardCharsets.US_ASCII);
+        byte[] edited = new byte[data.length + insert.length];
+        int at = data.length / 2;
+        System.arraycopy(data, 0, edited, 0, at);
+        System.arraycopy(insert, 0, edited, at, insert.length);
+        System.arraycopy(data, at, edited, at + insert.length, data.length - at);
+
+        List<String> before = keys(cut(data));
+        Set<String> after = new HashSet<>(keys(cut(edited)));
+        long lost = before.stream().filter(k -> !after.contains(k)).count();
+        assertTrue(lost <= 3, lost + " of " + before.size() + " chunks changed");
+    }
+
+    @Test
+    void keepLastKeepsTheNewest() {
+        List<SnapshotStore.Snapshot> all = every(10 * 60_000L, 20);
+        Set<SnapshotStore.Snapshot> kept = new SnapshotStore.Retention(5, 0, 0, 0, Integer.MAX_VALUE).keep(all, NOW);
+        assertEquals(new HashSet<>(all.subList(0, 5)), kept);
+    }
+
+    @Test
+    void olderSnapshotsAreThinnedToOnePerBucket() {
+        List<SnapshotStore.Snapshot> all = every(10 * 60_000L, 6 * 24 * 3); // every ten minutes for three days
+        Set<SnapshotStore.Snapshot> kept = new SnapshotStore.Retention(1, 48, 0, 0, Integer.MAX_VALUE).keep(all, NOW);
+        Set<Long> hours = new HashSet<>();
+        for (SnapshotStore.Snapshot s : kept) {
+            assertTrue(s.at() >= NOW - 48 * HOUR);
+            if (s != all.get(0)) assertTrue(hours.add(s.at() / HOUR), "two kept in one hour");
+        }
+        assertTrue(kept.size() >= 48 && kept.size() <= 50, kept.size() + " kept");
+    }
+
+    @Test
+    void defaultRetentionBoundsCountAndAge() {
+        List<SnapshotStore.Snapshot> all = every(DAY, 2 * 365); // daily for two years
+        Set<SnapshotStore.Snapshot> kept = SnapshotStore.Retention.DEFAULT.keep(all, NOW);
+        assertTrue(kept.contains(all.get(0)));
+        assertTrue(kept.size() <= 10 + 48 + 30 + 52, kept.size() + " kept");
+        for (SnapshotStore.Snapshot s : kept) assertTrue(s.at() >= NOW - 52 * WEEK);
+        assertTrue(kept.stream().anyMatch(s -> s.at() < NOW - 40 * WEEK), "weekly snapshots reach back");
+    }
+
+    @Test
+    void maxAgeDropsOldSnapshotsButNotTheNewest() {
+        List<SnapshotStore.Snapshot> all = every(DAY, 2 * 365);
+        SnapshotStore.Retention r = SnapshotStore.Retention.DEFAULT.withMaxAge(30);
+        for (SnapshotStore.Snapshot s : r.keep(all, NOW)) assertTrue(s.at() >= NOW - 30 * DAY);
+
+        List<SnapshotStore.Snapshot> stale = List.of(new SnapshotStore.Snapshot(NOW - 400 * DAY, 1));
+        assertEquals(Set.copyOf(stale), r.keep(stale, NOW));
+    }
+
+    /* ---- helpers ---- */
+
+    /** {@code count} snapshots {@code step} apart, newest (at {@link #NOW}) first. */
+    private static List<SnapshotStore.Snapshot> every(long step, int count) {
+        List<SnapshotStore.Snapshot> l = new ArrayList<>();
+        for (int i = 0; i < count; i++) l.add(new SnapshotStore.Snapshot(NOW - i * step, count - i));
+        return l;
+    }
+
+    private static List<byte[]> cut(byte[] b) {
+        List<byte[]> chunks = new ArrayList<>();
+        for (int at = 0; at < b.length; ) {
+            int end = SnapshotStore.boundary(b, at, b.length);
+            assertTrue(end > at && end <= b.length);
+            chunks.add(Arrays.copyOfRange(b, at, end));
+            at = end;
+        }
+        return chunks;
+    }
+
+    private static List<String> keys(List<byte[]> chunks) {
+        return chunks.stream().map(c -> HexFormat.of().formatHex(c)).toList();
+    }
+
+    private static byte[] random(int n, long seed) {
+        byte[] b = new byte[n];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+}
@@ -0,0 +1,86 @@
+package com.oogle.vaultpro.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** RFC 6238 appendix B vectors (8 digits, 30 s steps) and the plain Base32 defaults. */
+class TotpEngineTest {
+
+    private static final long[] TIMES = { 59L, 1111111109L, 1111111111L, 1234567890L, 2000000000L, 20000000000L };
+    private static final String SEED_SHA1 = "12345678901234567890";
+    private static final String SEED_SHA256 = "12345678901234567890123456789012";
+    private static final String SEED_SHA512 = "1234567890123456789012345678901234567890123456789012345678901234";
+
+    @Test
+    void sha1Vectors() {
+        check("SHA1", SEED_SHA1, "94287082", "07081804", "14050471", "89005924", "69279037", "65353130");
+    }
+
+    @Test
+    void sha256Vectors() {
+        check("SHA256", SEED_SHA256, "46119246", "68084774", "67062674", "91819424", "90698825", "77737706");
+    }
+
+    @Test
+    void sha512Vectors() {
+        check("SHA512", SEED_SHA512, "90693936", "25091201", "99943326", "93441116", "38618901", "47863826");
+    }
+
+    @Test
+    void plainBase32IsSha1SixDigitsThirtySeconds() {
+        TotpEngine totp = new TotpEngine();
+        TotpEngine.Code c = totp.code(base32(SEED_SHA1), 59_000L);
+        assertEquals("287082", c.code());
+        assertEquals(30, c.period());
+        assertEquals(1, c.secondsLeft());
+        assertEquals("081804", totp.code(base32(SEED_SHA1).toLowerCase(), 1111111109_000L).code());
+    }
+
+    @Test
+    void cachedCodeFollowsTheTimeStep() {
+        TotpEngine totp = new TotpEngine();
+        String secret = base32(SEED_SHA1);
+        assertEquals("287082", totp.code(secret, 59_000L).code());
+        assertEquals("287082", totp.code(secret, 31_000L).code()); // same step, cached
+        assertNotEquals("287082", totp.code(secret, 60_000L).code());
+        assertEquals("287082", totp.code(secret, 59_999L).code()); // and back
+    }
+
+    @Test
+    void malformedSecretsAreRejected() {
+        TotpEngine totp = new TotpEngine();
+        assertThrows(IllegalArgumentException.class, () -> totp.code(" ", 0));
+        assertThrows(IllegalArgumentException.class, () -> totp.code("not base32!", 0));
+        assertThrows(IllegalArgumentException.class, () -> totp.code("otpauth://hotp/x?secret=GEZDGNBV", 0));
+        assertThrows(IllegalArgumentException.class, () -> totp.code("otpauth://totp/x?secret=GEZDGNBV&digits=9", 0));
+        assertThrows(IllegalArgumentException.class, () -> totp.code("otpauth://totp/x?secret=GEZDGNBV&algorithm=MD5", 0));
+    }
+
+    private static void check(String algorithm, String seed, String... expected) {
+        TotpEngine totp = new TotpEngine();
+        String uri = "otpauth://totp/Example:alice?secret=" + base32(seed) + "&algorithm=" + algorithm + "&digits=8&period=30";
+        for (int i = 0; i < TIMES.length; i++) {
+            assertEquals(expected[i], totp.code(uri, TIMES[i] * 1000).code(), algorithm + " at " + TIMES[i]);
+        }
+    }
+
+    /** RFC 4648 Base32 of an ASCII seed, without padding. */
+    private static String base32(String seed) {
+        byte[] b = seed.getBytes(StandardCharsets.US_ASCII);
+        StringBuilder sb = new StringBuilder();
+        int buf = 0, bits = 0;
+        for (byte x : b) {
+            buf = buf << 8 | (x & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                sb.append("ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".charAt(buf >> bits & 31));
+            }
+        }
+        if (bits > 0) sb.append("ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".charAt(buf << (5 - bits) & 31));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.oogle.vaultpro.service;
+
+import com.oogle.vaultpro.model.Entry;
+import com.oogle.vaultpro.model.VaultData;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VaultMergerTest {
+
+    private static Entry entry(String id, long updatedAt) {
+        Entry e = new Entry();
+        e.id = id;
+        e.label = id;
+        e.createdAt = 1;
+        e.updatedAt = updatedAt;
+        return e;
+    }
+
+    private static VaultData vault(Entry... entries) {
+        VaultData d = new VaultData();
+        d.entries.addAll(List.of(entries));
+        return d;
+    }
+
+    @Test
+    void remoteAddIsAdded() {
+        VaultData local = vault(entry("a", 100));
+        VaultData remote = vault(entry("a", 100), entry("b", 150));
+        VaultMerger.Result r = VaultMerger.merge(local, VaultMerger.snapshot(local), remote);
+        assertEquals(List.of("b"), ids(r.added));
+        assertTrue(r.changed.isEmpty());
+        assertTrue(r.removed.isEmpty());
+    }
+
+    @Test
+    void newerRemoteEditWinsAndOlderOneIsIgnored() {
+        VaultData local = vault(entry("a", 100), entry("b", 300));
+        Map<String, Long> base = Map.of("a", 100L, "b", 100L);
+        VaultMerger.Result r = VaultMerger.merge(local, base, vault(entry("a", 200), entry("b", 200)));
+        assertEquals(List.of("a"), ids(r.changed));
+        assertTrue(r.added.isEmpty());
+        assertTrue(r.removed.isEmpty());
+    }
+
+    @Test
+    void remoteDeleteOfUneditedEntryRemovesIt() {
+        VaultData local = vault(entry("a", 100), entry("b", 100));
+        VaultMerger.Result r = VaultMerger.merge(local, VaultMerger.snapshot(local), vault(entry("a", 100)));
+        assertEquals(List.of("b"), ids(r.removed));
+    }
+
+    @Test
+    void localEditBeatsConcurrentRemoteDelete() {
+        Map<String, Long> base = Map.of("a", 100L);
+        VaultMerger.Result r = VaultMerger.merge(vault(entry("a", 200)), base, vault());
+        assertTrue(r.isEmpty());
+    }
+
+    @Test
+    void remoteEditBeatsConcurrentLocalDelete() {
+        Map<String, Long> base = Map.of("a", 100L);
+        VaultMerger.Result r = VaultMerger.merge(vault(), base, vault(entry("a", 200)));
+        assertEquals(List.of("a"), ids(r.added));
+    }
+
+    @Test
+    void localDeleteStaysDeletedWhenRemoteDidNotEdit() {
+        Map<String, Long> base = Map.of("a", 100L);
+        VaultMerger.Result r = VaultMerger.merge(vault(), base, vault(entry("a", 100)));
+        assertTrue(r.isEmpty());
+    }
+
+    @Test
+    void unsavedLocalAddSurvivesRepeatedMerges() {
+        VaultData onDisk = vault(entry("a", 100));
+        Map<String, Long> base = VaultMerger.snapshot(onDisk);
+        VaultData local = vault(entry("a", 100), entry("new", 500)); // added here, not saved yet
+
+        VaultData remote = vault(entry("a", 100), entry("c", 300)); // another device added c
+        VaultMerger.Result r = VaultMerger.merge(local, base, remote);
+        assertEquals(List.of("c"), ids(r.added));
+        assertTrue(r.removed.isEmpty());
+        local.entries.addAll(r.added);
+
+        // the next base is the remote copy as read, not the merged local one
+        base = VaultMerger.snapshot(remote);
+        r = VaultMerger.merge(local, base, vault(entry("a", 100), entry("c", 300)));
+        assertTrue(r.isEmpty());
+    }
+
+    @Test
+    void missingBaseNeverDeletes() {
+        VaultMerger.Result r = VaultMerger.merge(vault(entry("a", 100)), null, vault(entry("b", 100)));
+        assertEquals(List.of("b"), ids(r.added));
+        assertTrue(r.removed.isEmpty());
+    }
+
+    @Test
+    void resultCarriesRemoteRevision() {
+        VaultData remote = vault();
+        remote.vaultRevision = 42;
+        assertEquals(42, VaultMerger.merge(vault(), Map.of(), remote).remoteRevision);
+    }
+
+    private static List<String> ids(List<Entry> entries) {
+        return entries.stream().map(e -> e.id).toList();
+    }
+}